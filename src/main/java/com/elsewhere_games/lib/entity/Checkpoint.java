@@ -0,0 +1,24 @@
+package com.elsewhere_games.lib.entity;
+
+/**
+ * <p>A point in the history of a manager to which its entities and components
+ * can be rolled back. Checkpoints are created by
+ * {@link EntityManager#checkpoint()}, and remain valid until they are
+ * released, or until the manager is rolled back to an earlier checkpoint.</p>
+ */
+public final class Checkpoint {
+
+	//// Life-Cycle ////
+
+	/**
+	 * <p>Class constructor. Checkpoints can only be created by a manager.</p>
+	 */
+	Checkpoint(EntityManager manager, long position) {
+		this.manager = manager;
+		this.position = position;
+	}
+
+	final EntityManager manager;
+	final long position;				// Length of the journal of the manager when created.
+
+}
@@ -0,0 +1,20 @@
+package com.elsewhere_games.lib.entity;
+
+/**
+ * <p>Creates the components of entities instantiated from a {@link Prefab},
+ * by copying the default component held by the prefab.</p>
+ */
+public interface ComponentCopier<C extends Component> {
+
+	/**
+	 * <p>Called once for every entity instantiated from a prefab holding the
+	 * <code>template</code> component.</p>
+	 *
+	 * @param template The default component held by the prefab, which must
+	 * not be modified.
+	 *
+	 * @return A new component, of the same class as the template.
+	 */
+	public C copy(C template);
+
+}
@@ -0,0 +1,87 @@
+package com.elsewhere_games.lib.entity;
+
+// Java Utilities
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Assigns every component class a small, permanent identifier, so that
+ * entities can hold their components in an array indexed by type rather than
+ * in a map. Identifiers are only assigned to classes of which a component is
+ * stored in an entity; looking up a class which never was does not assign it
+ * one. Looking up an identifier does not allocate once the class has been
+ * looked up before.</p>
+ */
+final class ComponentTypes {
+
+	private ComponentTypes() {
+	}
+
+	private static final AtomicInteger nextId = new AtomicInteger();
+
+	// The identifier of a class, which stays unassigned until it is stored:
+	private static final class TypeId {
+		private volatile int id = -1;
+	}
+
+	private static final ClassValue<TypeId> ids = new ClassValue<TypeId>() {
+
+		@Override
+		protected TypeId computeValue(Class<?> type) {
+			return new TypeId();
+		}
+	};
+
+	/**
+	 * <p>Gets the identifier of a component type, assigning one if it has
+	 * none yet. Only to be used when storing a component.</p>
+	 *
+	 * @param type The class signature of a component.
+	 * @return The identifier of the component type.
+	 */
+	static int idOf(Class<?> type) {
+		TypeId typeId = ids.get(type);
+		int id = typeId.id;
+		if (id < 0) {
+			synchronized (typeId) {
+				id = typeId.id;
+				if (id < 0) {
+					id = nextId.getAndIncrement();
+					typeId.id = id;
+				}
+			}
+		}
+
+		return id;
+	}
+
+	/**
+	 * @param type The class signature of a component.
+	 * @return The identifier of the component type, or <code>-1</code> if no
+	 * component of that type was ever stored.
+	 */
+	static int peekIdOf(Class<?> type) {
+		return ids.get(type).id;
+	}
+
+	/**
+	 * <p>Copies a component, checking that the copier kept to its contract,
+	 * since a copy of another class would end up in the wrong storage.</p>
+	 *
+	 * @param copier The copier to use.
+	 * @param template The component to copy.
+	 *
+	 * @return The copy of the component.
+	 *
+	 * @throws IllegalStateException If the copier returned <code>null</code>
+	 * or a component of another class.
+	 */
+	static <C extends Component> C copy(ComponentCopier<C> copier, C template) {
+		C copy = copier.copy(template);
+		if (copy == null || copy.getClass() != template.getClass()) {
+			throw new IllegalStateException("The copier of " + template.getClass().getName() + " did not return a component of the same class.");
+		}
+
+		return copy;
+	}
+
+}
@@ -3,9 +3,8 @@ package com.elsewhere_games.lib.entity;
 // Utility Containers
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 
 // Events Elsewhere
@@ -35,10 +34,44 @@ public class Entity {
 	 */
 	Entity() {
 		this.id = UUID.randomUUID();
-		this.components = new HashMap<Class<?>, Component>();
+		this.components = NO_COMPONENTS;
 		this.listeners = new ArrayList<ComponentChangeListener>();
+		this.index = -1;
 	}
 
+	/**
+	 * <p>Class constructor. Creates a new entity with a random id, which
+	 * already holds the specified <code>components</code>. Used by a manager
+	 * to instantiate prefabs without firing a change for every component.</p>
+	 */
+	Entity(Component[] components) {
+		this.id = UUID.randomUUID();
+		this.listeners = new ArrayList<ComponentChangeListener>();
+		this.index = -1;
+
+		// Size the array once, to the highest type held:
+		int maxTypeId = -1;
+		for (Component component : components) {
+			maxTypeId = Math.max(maxTypeId, ComponentTypes.idOf(component.getClass()));
+		}
+
+		this.components = maxTypeId < 0 ? NO_COMPONENTS : new Component[maxTypeId + 1];
+		for (Component component : components) {
+			this.putComponent(ComponentTypes.idOf(component.getClass()), component);
+		}
+	}
+
+	//// Management ////
+
+	/*
+	 * While an entity is held by a manager, the manager is notified of every
+	 * change to its components before any registered listener is, and the
+	 * entity occupies a slot in the component storages of that manager.
+	 */
+
+	EntityManager manager;
+	int index;
+
 	//// Identity ////
 
 	/*
@@ -59,8 +92,18 @@ public class Entity {
 	}
 	
 	//// Components ////
+
+	/*
+	 * Components are held in an array indexed by the identifier of their type,
+	 * so that looking up, adding and removing components of a type the entity
+	 * held before does not allocate. The array starts empty, and only grows to
+	 * cover the highest type the entity holds.
+	 */
+
+	private static final Component[] NO_COMPONENTS = new Component[0];
 	
-	private final Map<Class<?>, Component> components;
+	private Component[] components;
+	private int componentCount;
 	
 	/**
 	 * <p>Check to see if this entity contains a component of the specified
@@ -71,7 +114,8 @@ public class Entity {
 	 * signature, <code>false</code> otherwise.
 	 */
 	public boolean hasComponent(Class<?> signature) {
-		return this.components.containsKey(signature);
+		int typeId = ComponentTypes.peekIdOf(signature);
+		return typeId >= 0 && typeId < this.components.length && this.components[typeId] != null;
 	}
 	
 	/**
@@ -84,12 +128,19 @@ public class Entity {
 	 * the specified <code>signatures</code>, <code>false</code> otherwise.
 	 */
 	public boolean hasComponents(Class<?>... signatures) {
-		return this.hasComponents(Arrays.asList(signatures));
+		for (int position = 0; position < signatures.length; position++) {
+			if (!this.hasComponent(signatures[position])) {
+				return false;
+			}
+		}
+
+		return true;
 	}
 
 	/**
 	 * <p>Check to see if this entity contains all components of the specified
-	 * <code>signatures</code> classes.</p>
+	 * <code>signatures</code> classes. Unlike the variable argument version,
+	 * this does not need an array to be allocated on every call.</p>
 	 *
 	 * @param signatures The class signatures of the components to check for.
 	 *
@@ -97,18 +148,14 @@ public class Entity {
 	 * the specified <code>signatures</code>, <code>false</code> otherwise.
 	 */
 	public boolean hasComponents(List<Class<?>> signatures) {
-		boolean hasAll = true;
-
-		// Check for absence of any of the signatures:
-		for (Class<?> signature : signatures) {
-			// Fast fail:
-			if (!this.components.containsKey(signature)) {
-				hasAll = false;
-				break;
+		// Indexed, so that no iterator is allocated:
+		for (int position = 0; position < signatures.size(); position++) {
+			if (!this.hasComponent(signatures.get(position))) {
+				return false;
 			}
 		}
 
-		return hasAll;
+		return true;
 	}
 	
 	/**
@@ -121,9 +168,72 @@ public class Entity {
 	 */
 	@SuppressWarnings("unchecked")
 	public <C extends Component> C getComponent(Class<C> signature) {
-		return (C)this.components.get(signature);
+		int typeId = ComponentTypes.peekIdOf(signature);
+		return typeId >= 0 && typeId < this.components.length ? (C)this.components[typeId] : null;
+	}
+
+	// Swap a component for another of the same type, without firing a change:
+	void replaceComponent(Component component) {
+		this.components[ComponentTypes.idOf(component.getClass())] = component;
+	}
+
+	// Add or replace a component for a manager which notifies the listeners itself:
+	void attachComponent(Component component) {
+		int typeId = ComponentTypes.idOf(component.getClass());
+		if (typeId < this.components.length && this.components[typeId] != null) {
+			this.components[typeId] = component;
+		}
+		else {
+			this.putComponent(typeId, component);
+		}
+	}
+
+	// Remove a component for a manager which notifies the listeners itself:
+	Component detachComponent(Class<?> signature) {
+		int typeId = ComponentTypes.peekIdOf(signature);
+		if (typeId < 0 || typeId >= this.components.length || this.components[typeId] == null) {
+			return null;
+		}
+
+		Component removed = this.components[typeId];
+		this.components[typeId] = null;
+		this.componentCount--;
+
+		return removed;
 	}
 	
+	// All components of this entity, for the manager to store:
+	Collection<Component> getComponents() {
+		List<Component> components = new ArrayList<Component>(this.componentCount);
+		for (int typeId = 0; typeId < this.components.length; typeId++) {
+			if (this.components[typeId] != null) {
+				components.add(this.components[typeId]);
+			}
+		}
+
+		return components;
+	}
+
+	// The number of type identifiers the component array covers:
+	int getComponentTypeCapacity() {
+		return this.components.length;
+	}
+
+	// The component with the specified type identifier, if any:
+	Component getComponentByType(int typeId) {
+		return this.components[typeId];
+	}
+
+	// Store a component, growing the array if its type is new to this entity:
+	private void putComponent(int typeId, Component component) {
+		if (typeId >= this.components.length) {
+			this.components = Arrays.copyOf(this.components, typeId + 1);
+		}
+
+		this.components[typeId] = component;
+		this.componentCount++;
+	}
+
 	/**
 	 * <p>Adds a new <code>component</code> to this entity.</p>
 	 * 
@@ -138,7 +248,7 @@ public class Entity {
 			throw new IllegalArgumentException("This entity already contains a component of the type specified.");
 		}
 		
-		this.components.put(component.getClass(), component);
+		this.putComponent(ComponentTypes.idOf(component.getClass()), component);
 
 		/*
 		 * If we get past putting the component into the map, it should be
@@ -154,7 +264,7 @@ public class Entity {
 	 * @param signature The class signature of the component to remove.
 	 */
 	public void removeComponent(Class<?> signature) {
-		Component removed = this.components.remove(signature);
+		Component removed = this.detachComponent(signature);
 		if (removed != null) {
 			this.fireComponentChange(ComponentChangeType.COMPONENT_REMOVED, removed);
 		}
@@ -192,8 +302,18 @@ public class Entity {
 
 	// Trigger the call-back of all listeners registered with this class.
 	private void fireComponentChange(ComponentChangeType type, Component context) {
-		for (ComponentChangeListener listener : this.listeners) {
-			listener.onComponentChange(type, context);
+		if (this.manager != null) {
+			this.manager.onComponentChange(this, type, context);
+		}
+
+		this.notifyListeners(type, context);
+	}
+
+	// Call back the listeners only, once the manager has handled a change:
+	void notifyListeners(ComponentChangeType type, Component context) {
+		// Indexed, so that no iterator is allocated:
+		for (int position = 0; position < this.listeners.size(); position++) {
+			this.listeners.get(position).onComponentChange(type, context);
 		}
 	}
 	
@@ -4,23 +4,54 @@ package com.elsewhere_games.lib.entity;
 import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 
 // Java Utilities
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 // Events Elsewhere
-import com.elsewhere_games.lib.entity.event.ComponentChangeListener;
+import com.elsewhere_games.lib.entity.event.ComponentChangeEvent;
+import com.elsewhere_games.lib.entity.event.ComponentChangePublisher;
 import com.elsewhere_games.lib.entity.event.ComponentChangeType;
+import com.elsewhere_games.lib.entity.event.OverflowPolicy;
+import com.elsewhere_games.lib.entity.event.QueryObserver;
+import com.elsewhere_games.lib.entity.event.StructuralChangeListener;
+
+// Flight Recorder Elsewhere
+import com.elsewhere_games.lib.entity.jfr.QueryRebuildEvent;
+import com.elsewhere_games.lib.entity.jfr.StructuralChangeEvent;
+
+// Memory Elsewhere
+import com.elsewhere_games.lib.entity.memory.MemoryEstimator;
+import com.elsewhere_games.lib.entity.memory.MemoryUsage;
+
+// Storage Elsewhere
+import com.elsewhere_games.lib.entity.storage.ComponentStorage;
+import com.elsewhere_games.lib.entity.storage.StorageStrategy;
+
+// Time Elsewhere
+import com.elsewhere_games.lib.entity.time.TimingWheel;
 
 /**
  *<p>The entity manager can maintain a collection of entities. More-over, a set
  * of queries to those entities can be created, making finding the right set of
  * entities for a particular task quick and easy.</p>
  *
+ * <p>The components of all managed entities are also kept in one storage per
+ * component type, which queries scan instead of the full set of entities. The
+ * layout of each storage can be chosen per component type using
+ * {@link #setStorageStrategy(Class, StorageStrategy)}.</p>
+ *
+ * <p>Each manager keeps a clock, advanced by calling {@link #tick(long)},
+ * against which entities and components can be given a time to live.</p>
+ *
  * <p>The backing collections used in this manager are not thread-safe, and
  * therefore any access must be synchronized externally.</p>
  */
@@ -33,15 +64,54 @@ public class EntityManager {
 	 */
 	public EntityManager() {
 		this.entities = new HashSet<Entity>();
+		this.slots = new Entity[16];
+		this.freeIndices = new int[16];
+		this.freeIndexCount = 0;
+		this.nextIndex = 0;
+
+		// Component storage:
+		this.storages = new HashMap<Class<?>, ComponentStorage>();
+
+		// Prefabs:
+		this.prefabs = new HashMap<UUID, Prefab>();
+
+		// Rollback:
+		this.checkpoints = new ArrayList<Checkpoint>();
+		this.journal = new ArrayList<Change>();
+		this.copiers = new HashMap<Class<?>, ComponentCopier<?>>();
+		this.editedComponents = Collections.newSetFromMap(new IdentityHashMap<Component, Boolean>());
 		
 		// Query system:
-		this.queries = new HashMap<UUID, List<Class<?>>>();
-		this.cachedQueryResults = new HashMap<UUID, List<Entity>>();
+		this.queries = new HashMap<UUID, Query>();
+		this.internedQueries = new HashMap<Set<Class<?>>, Query>();
+		this.sharedQueries = new ArrayList<Query>();
+		this.queryCacheCapacity = Integer.MAX_VALUE;
+		this.observations = new HashMap<UUID, Observation>();
+
+		// Change streams:
+		this.changeStreams = new ArrayList<ComponentChangePublisher>();
+
+		// Structural change listeners:
+		this.structuralChangeListeners = new ArrayList<StructuralChangeListener>();
+
+		// Expiry:
+		this.expiries = new TimingWheel<Expiry>(1);
+		this.entityExpiries = new HashMap<Entity, TimingWheel.Timeout<Expiry>>();
+		this.componentExpiries = new IdentityHashMap<Component, TimingWheel.Timeout<Expiry>>();
+		this.expiryHandler = new TimingWheel.ExpiryHandler<Expiry>() {
+
+			@Override
+			public void onExpiry(Expiry expiry) {
+				expire(expiry);
+			}
+		};
 	}
 	
 	//// Entities ////
 	
-	private final Set<Entity> entities;
+	private Set<Entity> entities;			// Replaced when compacted.
+	private int peakEntityCount;
+	private int peakEntitySetSize;			// Sizes the table of the entity set, which never shrinks.
 	
 	/**
 	 * <p>Creates a new entity.</p>
@@ -51,11 +121,11 @@ public class EntityManager {
 	public Entity createEntity() {
 		Entity entity = new Entity();
 		this.addEntityAndObserve(entity);
+		this.observeEntered(entity);
+		this.record(ChangeKind.ENTITY_ADDED, entity, null);
 
-		// Mark all queries as dirty by clearing the cache:
-		for (UUID queryId : this.queries.keySet()) {
-			this.cachedQueryResults.remove(queryId);
-		}
+		// Only queries without signatures can match an entity without components:
+		this.markCacheDirtyFor(entity);
 		
 		return entity;
 	}
@@ -76,29 +146,84 @@ public class EntityManager {
 		}
 
 		this.addEntityAndObserve(entity);
+		this.observeEntered(entity);
+		this.record(ChangeKind.ENTITY_ADDED, entity, null);
 
-		// Mark any cached query as dirty if there is a match:
-		for (UUID queryId : this.queries.keySet()) {
-			if (entity.hasComponents(this.queries.get(queryId))) {
-				this.cachedQueryResults.remove(queryId); 			// May not be cached, but no need to check.
-			}
+		if (!this.changeStreams.isEmpty()) {
+			this.publishComponents(entity, ComponentChangeType.COMPONENT_ADDED);
 		}
+
+		// Mark any cached query as dirty if there is a match:
+		this.markCacheDirtyFor(entity);
 	}
 
 	// Adds the entity to this manager and observes it for changes.
 	private void addEntityAndObserve(Entity entity) {
+		if (entity.manager != null) {
+			throw new IllegalArgumentException("The specified entity is already contained in another manager.");
+		}
+
 		this.entities.add(entity);
+		this.peakEntityCount = Math.max(this.peakEntityCount, this.entities.size());
+		this.peakEntitySetSize = Math.max(this.peakEntitySetSize, this.entities.size());
 
-		entity.addComponentChangeListener
-		(
-			new ComponentChangeListener() {
+		entity.manager = this;
+		entity.index = this.acquireIndex(entity);
 
-				@Override
-				public void onComponentChange(ComponentChangeType type, Component component) {
-					markCacheDirtyFor(component);
-				}
+		for (int typeId = 0; typeId < entity.getComponentTypeCapacity(); typeId++) {
+			Component component = entity.getComponentByType(typeId);
+			if (component != null) {
+				this.getOrCreateStorage(component.getClass()).put(entity.index, entity, component);
+			}
+		}
+	}
+
+	// Stops observing the entity and releases its slot in the storages.
+	private void removeEntityAndIgnore(Entity entity) {
+		for (int typeId = 0; typeId < entity.getComponentTypeCapacity(); typeId++) {
+			Component component = entity.getComponentByType(typeId);
+			if (component != null) {
+				this.storages.get(component.getClass()).remove(entity.index);
 			}
-		);
+		}
+
+		this.releaseIndex(entity.index);
+
+		entity.manager = null;
+		entity.index = -1;
+	}
+
+	// Called by managed entities before their listeners are notified.
+	void onComponentChange(Entity entity, ComponentChangeType type, Component component) {
+		switch (type) {
+			case COMPONENT_ADDED:
+				this.getOrCreateStorage(component.getClass()).put(entity.index, entity, component);
+				break;
+
+			case COMPONENT_REMOVED:
+				this.storages.get(component.getClass()).remove(entity.index);
+				if (!this.componentExpiries.isEmpty()) {
+					this.cancelExpiry(this.componentExpiries.remove(component));
+				}
+				break;
+		}
+
+		this.markCacheDirtyFor(component);
+
+		if (type == ComponentChangeType.COMPONENT_ADDED) {
+			this.record(ChangeKind.COMPONENT_ADDED, entity, component);
+		}
+		else {
+			this.record(ChangeKind.COMPONENT_REMOVED, entity, component);
+		}
+
+		if (!this.observations.isEmpty()) {
+			this.observeChanged(entity, type, component);
+		}
+
+		if (!this.changeStreams.isEmpty()) {
+			this.publishChange(entity, type, component);
+		}
 	}
 
 	/**
@@ -113,6 +238,13 @@ public class EntityManager {
 		return this.entities.contains(entity);
 	}
 	
+	/**
+	 * @return The number of entities in this manager.
+	 */
+	public int getEntityCount() {
+		return this.entities.size();
+	}
+
 	/**
 	 * <p>Destroys an existing entity.</p>
 	 * 
@@ -126,8 +258,18 @@ public class EntityManager {
 			throw new IllegalArgumentException("This manager does not contain the specified entity.");
 		}
 
+		this.cancelExpiries(entity);
+		this.observeExited(entity);
+		this.record(ChangeKind.ENTITY_DESTROYED, entity, null);
+
+		// Streams see a destroyed entity lose all of its components:
+		if (!this.changeStreams.isEmpty()) {
+			this.publishComponents(entity, ComponentChangeType.COMPONENT_REMOVED);
+		}
+
 		// Mark queries which should return the specified entity as dirty:
 		if (this.entities.remove(entity)) {
+			this.removeEntityAndIgnore(entity);
 			this.markCacheDirtyFor(entity);
 		}
 	}
@@ -141,7 +283,7 @@ public class EntityManager {
 	 */
 	public Entity getEntity(UUID id) {
 		for (Entity entity : this.entities) {
-			if (entity.getId() == id) {
+			if (entity.getId().equals(id)) {
 				return entity;
 			}
 		}
@@ -149,116 +291,2119 @@ public class EntityManager {
 		return null;
 	}
 
-	//// Queries ////
+	//// Prefabs ////
 
 	/*
-	 * Since most queries for entities will be repeated quite often,
-	 * the query system allows for common queries to be cached. This
-	 * will provide a great speed in accessing the desired entities.
+	 * Entities instantiated from a prefab are placed into the storages of
+	 * their components directly, and the caches, observers and change streams
+	 * of this manager are updated once for the whole batch, rather than once
+	 * for every component added.
 	 */
-	
-	private final Map<UUID, List<Class<?>>> queries;
-	
+
+	private final Map<UUID, Prefab> prefabs;
+
 	/**
-	 * <p>Creates a query into the entity system which, when executed, will
-	 * return all entities which hold all components with the specified
-	 * <code>signatures</code>. To use generated query, call the executeQuery
-	 * method of this manager.</p>
-	 * 
-	 * @param signatures When the query is executed, all included entities will
-	 * all components specified here.
-	 * 
-	 * @return An identifier with which the query can be executed against this
-	 * manager.
+	 * <p>Registers a prefab with this manager, so that entities can be
+	 * instantiated from it. The manager takes a copy of the prefab, so later
+	 * changes to the prefab are not reflected in the registered template.</p>
+	 *
+	 * @param prefab The prefab to register.
+	 *
+	 * @return An identifier with which the prefab can be instantiated.
 	 */
-	public UUID createQuery(Class<?>... signatures) {
-		UUID queryId = UUID.randomUUID();
-		List<Class<?>> signatureList = new ArrayList<Class<?>>();
-		signatureList.addAll(Arrays.asList(signatures));
+	public UUID registerPrefab(Prefab prefab) {
+		UUID prefabId = UUID.randomUUID();
+		this.prefabs.put(prefabId, new Prefab(prefab));
 
-		this.queries.put(queryId, signatureList);
-		
-		return queryId;
+		return prefabId;
 	}
-	
+
 	/**
-	 * <p>Updates a query by replacing the original list of components is uses
-	 * to query the entities with the list of <code>signatures</code>.</p>
-	 * 
-	 * @param queryId The id of the query to update.
-	 * @param signatures The new components to query the entity list for.
+	 * <p>Removes a prefab from this manager. Entities instantiated from the
+	 * prefab are not affected.</p>
+	 *
+	 * @param prefabId The identifier of the prefab to remove.
 	 */
-	public void updateQuery(UUID queryId, Class<?>... signatures) {
-		List<Class<?>> signatureList = new ArrayList<Class<?>>();
-		signatureList.addAll(Arrays.asList(signatures));
+	public void unregisterPrefab(UUID prefabId) {
+		this.prefabs.remove(prefabId);
+	}
 
-		this.queries.put(queryId, signatureList);
-		this.cachedQueryResults.remove(queryId);
-		
+	/**
+	 * <p>Creates a new entity holding a copy of every component of the prefab
+	 * with <code>prefabId</code>.</p>
+	 *
+	 * @param prefabId The identifier of the prefab to instantiate.
+	 *
+	 * @return The newly created entity.
+	 *
+	 * @throws IllegalArgumentException If no prefab with the specified
+	 * identifier is registered with this manager.
+	 * @throws IllegalStateException If a copier of the prefab does not return
+	 * a component of the same class as its template.
+	 */
+	public Entity instantiatePrefab(UUID prefabId) {
+		return this.instantiatePrefab(prefabId, 1).get(0);
 	}
-	
-	private final Map<UUID, List<Entity>> cachedQueryResults;
-	
+
 	/**
-	 * <p>Executes the query with <code>queryId</code> generated from this
-	 * manager using the createQuery method to generate a collection of
-	 * entities with components specified at the time the query was created.</p>
+	 * <p>Creates <code>count</code> new entities, each holding a copy of every
+	 * component of the prefab with <code>prefabId</code>. This is considerably
+	 * cheaper than creating the entities and adding their components one at a
+	 * time.</p>
 	 *
-	 * <p>The order in which the entities are stored in the resulting list
-	 * is unspecified.</p>
-	 * 
-	 * @param queryId The identifier of the query to execute.
-	 * 
-	 * @return A list of all entities which meets the specifications of the
-	 * query provided when it was created.
+	 * @param prefabId The identifier of the prefab to instantiate.
+	 * @param count The number of entities to create.
+	 *
+	 * @return The newly created entities.
+	 *
+	 * @throws IllegalArgumentException If no prefab with the specified
+	 * identifier is registered with this manager, or the count is negative.
+	 * @throws IllegalStateException If a copier of the prefab does not return
+	 * a component of the same class as its template.
 	 */
-	public List<Entity> executeQuery(UUID queryId) {
-		// Check to see if a query has been made:
-		boolean isQueryCached = this.cachedQueryResults.containsKey(queryId);
-		
-		if (!isQueryCached) {
-			this.cachedQueryResults.put(queryId, this.findQueryMatches(queryId));
+	public List<Entity> instantiatePrefab(UUID prefabId, int count) {
+		Prefab prefab = this.prefabs.get(prefabId);
+		if (prefab == null) {
+			throw new IllegalArgumentException("This manager has no prefab with the specified identifier.");
 		}
-		
-		return this.cachedQueryResults.get(queryId);
-	}
 
-	// Build a list of all entities matching the query:
-	private List<Entity> findQueryMatches(UUID queryId) {
-		List<Entity> matchingEntities = new ArrayList<Entity>();
-		List<Class<?>> signatures = this.queries.get(queryId);
- 		
-		for (Entity entity : this.entities) {
-			if (entity.hasComponents(signatures)) {
-				matchingEntities.add(entity);
+		if (count < 0) {
+			throw new IllegalArgumentException("The number of entities to instantiate cannot be negative.");
+		}
+
+		List<Entity> instantiated = new ArrayList<Entity>(count);
+		if (count == 0) {
+			return instantiated;
+		}
+
+		StructuralChangeEvent event = new StructuralChangeEvent();
+		event.begin();
+
+		// Copy every component first, so that a failing copier leaves this
+		// manager untouched:
+		List<Class<?>> signatures = prefab.getSignatures();
+		int componentCount = signatures.size();
+		Component[][] copies = new Component[count][componentCount];
+		for (int created = 0; created < count; created++) {
+			for (int position = 0; position < componentCount; position++) {
+				copies[created][position] = prefab.copyComponent(position);
 			}
 		}
-		
-		return matchingEntities;
+
+		// Grow the slots and storages once for the whole batch:
+		int maxIndex = this.nextIndex + Math.max(0, count - this.freeIndexCount) - 1;
+
+		if (maxIndex >= this.slots.length) {
+			this.slots = Arrays.copyOf(this.slots, Math.max(maxIndex + 1, this.slots.length * 2));
+		}
+
+		ComponentStorage[] storages = new ComponentStorage[componentCount];
+		for (int position = 0; position < componentCount; position++) {
+			storages[position] = this.getOrCreateStorage(signatures.get(position));
+			storages[position].ensureCapacity(storages[position].size() + count, maxIndex);
+		}
+
+		for (int created = 0; created < count; created++) {
+			Component[] components = copies[created];
+			Entity entity = new Entity(components);
+			entity.manager = this;
+			entity.index = this.acquireIndex(entity);
+
+			for (int position = 0; position < componentCount; position++) {
+				storages[position].put(entity.index, entity, components[position]);
+			}
+
+			this.entities.add(entity);
+			instantiated.add(entity);
+			this.record(ChangeKind.ENTITY_ADDED, entity, null);
+		}
+
+		this.peakEntityCount = Math.max(this.peakEntityCount, this.entities.size());
+		this.peakEntitySetSize = Math.max(this.peakEntitySetSize, this.entities.size());
+
+		// All instantiated entities match the same queries:
+		Entity first = instantiated.get(0);
+		this.markCacheDirtyFor(first);
+
+		for (Observation observation : this.observations.values()) {
+			if (first.hasComponents(observation.signatures)) {
+				for (Entity entity : instantiated) {
+					observation.enter(entity);
+				}
+			}
+		}
+
+		if (!this.changeStreams.isEmpty()) {
+			for (Entity entity : instantiated) {
+				for (Component component : entity.getComponents()) {
+					this.publishChange(entity, ComponentChangeType.COMPONENT_ADDED, component);
+				}
+			}
+		}
+
+		if (event.shouldCommit()) {
+			event.setOperation("instantiatePrefab");
+			event.setEntities(count);
+			event.setChanges(count * componentCount);
+			event.commit();
+		}
+
+		return instantiated;
 	}
 
-	// Remove any cached entries containing the specified entity:
-	private void markCacheDirtyFor(Entity entity) {
-		List<UUID> dirtyQueries = new ArrayList<UUID>();
-		for (UUID cachedQueryId : this.cachedQueryResults.keySet()) {
-			if (this.cachedQueryResults.get(cachedQueryId).contains(entity)) {
-				dirtyQueries.add(cachedQueryId);
+	//// Bulk Changes ////
+
+	/*
+	 * Changing a component type on many entities at once first updates the
+	 * storages of all of them, then the query caches once, and only then
+	 * notifies the listeners of the entities, so that no listener observes a
+	 * batch which was only partly applied.
+	 */
+
+	/**
+	 * <p>Adds a copy of the <code>template</code> component to every entity
+	 * matching the query with <code>queryId</code> which does not hold a
+	 * component of that type yet.</p>
+	 *
+	 * @param queryId The identifier of the query selecting the entities.
+	 * @param template The component to add a copy of.
+	 * @param copier Creates the component of each entity from the template.
+	 *
+	 * @return The number of entities a component was added to.
+	 *
+	 * @throws IllegalArgumentException If no query with the specified
+	 * identifier was created by this manager.
+	 * @throws IllegalStateException If the copier does not return a
+	 * component of the same class as the template, in which case no entity
+	 * is changed.
+	 */
+	public <C extends Component> int addComponents(UUID queryId, C template, ComponentCopier<C> copier) {
+		return this.setComponents(queryId, template, copier, false);
+	}
+
+	/**
+	 * <p>Gives every entity matching the query with <code>queryId</code> a
+	 * copy of the <code>template</code> component, replacing any component of
+	 * the same type the entity holds, and adding it otherwise.</p>
+	 *
+	 * @param queryId The identifier of the query selecting the entities.
+	 * @param template The component to set a copy of.
+	 * @param copier Creates the component of each entity from the template.
+	 *
+	 * @return The number of entities whose component was replaced or added.
+	 *
+	 * @throws IllegalArgumentException If no query with the specified
+	 * identifier was created by this manager.
+	 * @throws IllegalStateException If the copier does not return a
+	 * component of the same class as the template, in which case no entity
+	 * is changed.
+	 */
+	public <C extends Component> int replaceComponents(UUID queryId, C template, ComponentCopier<C> copier) {
+		return this.setComponents(queryId, template, copier, true);
+	}
+
+	/**
+	 * <p>Removes the component with the specified <code>signature</code> from
+	 * every entity matching the query with <code>queryId</code>.</p>
+	 *
+	 * @param queryId The identifier of the query selecting the entities.
+	 * @param signature The class signature of the component to remove.
+	 *
+	 * @return The number of entities a component was removed from.
+	 *
+	 * @throws IllegalArgumentException If no query with the specified
+	 * identifier was created by this manager.
+	 */
+	public int removeComponents(UUID queryId, Class<? extends Component> signature) {
+		List<Entity> matches = this.executeQuery(queryId);
+		ComponentStorage storage = this.storages.get(signature);
+		if (storage == null) {
+			return 0;
+		}
+
+		StructuralChangeEvent event = new StructuralChangeEvent();
+		event.begin();
+
+		List<Entity> changedEntities = new ArrayList<Entity>();
+		List<Component> removedComponents = new ArrayList<Component>();
+
+		for (int position = 0; position < matches.size(); position++) {
+			Entity entity = matches.get(position);
+			Component removed = entity.detachComponent(signature);
+			if (removed == null) {
+				continue;
+			}
+
+			storage.remove(entity.index);
+			if (!this.componentExpiries.isEmpty()) {
+				this.cancelExpiry(this.componentExpiries.remove(removed));
 			}
+
+			this.onBulkChange(entity, ComponentChangeType.COMPONENT_REMOVED, removed);
+
+			changedEntities.add(entity);
+			removedComponents.add(removed);
+		}
+
+		if (!changedEntities.isEmpty()) {
+			this.markCacheDirtyFor(signature);
+		}
+
+		for (int position = 0; position < changedEntities.size(); position++) {
+			changedEntities.get(position).notifyListeners(ComponentChangeType.COMPONENT_REMOVED, removedComponents.get(position));
 		}
 
-		for (UUID dirtyQueryId : dirtyQueries) {
-			this.cachedQueryResults.remove(dirtyQueryId);
+		if (event.shouldCommit()) {
+			event.setOperation("removeComponents");
+			event.setEntities(changedEntities.size());
+			event.setChanges(changedEntities.size());
+			event.commit();
 		}
+
+		return changedEntities.size();
 	}
 
-	// Remove any cached entries containing the specified component:
-	private void markCacheDirtyFor(Component component) {
-		for (UUID queryId : this.queries.keySet()) {
-			List<Class<?>> signatures = this.queries.get(queryId);
-			if (signatures.contains(component.getClass())) {
-				this.cachedQueryResults.remove(queryId);
+	// Add or replace a component type on all entities matching a query:
+	private <C extends Component> int setComponents(UUID queryId, C template, ComponentCopier<C> copier, boolean replace) {
+		List<Entity> matches = this.executeQuery(queryId);
+		Class<? extends Component> signature = template.getClass();
+
+		StructuralChangeEvent event = new StructuralChangeEvent();
+		event.begin();
+
+		ComponentStorage storage = this.getOrCreateStorage(signature);
+		storage.ensureCapacity(storage.size() + matches.size(), this.nextIndex - 1);
+
+		List<Entity> changedEntities = new ArrayList<Entity>();
+		List<Component> addedComponents = new ArrayList<Component>();
+		List<Component> replacedComponents = new ArrayList<Component>();
+		boolean structural = false;
+
+		// Copy all components first, so that a failing copier changes nothing:
+		for (int position = 0; position < matches.size(); position++) {
+			Entity entity = matches.get(position);
+			Component previous = entity.getComponent(signature);
+			if (previous != null && !replace) {
+				continue;
+			}
+
+			changedEntities.add(entity);
+			addedComponents.add(ComponentTypes.copy(copier, template));
+			replacedComponents.add(previous);
+		}
+
+		for (int position = 0; position < changedEntities.size(); position++) {
+			Entity entity = changedEntities.get(position);
+			Component component = addedComponents.get(position);
+			Component previous = replacedComponents.get(position);
+
+			entity.attachComponent(component);
+			storage.put(entity.index, entity, component);
+
+			if (previous != null) {
+				if (!this.componentExpiries.isEmpty()) {
+					this.cancelExpiry(this.componentExpiries.remove(previous));
+				}
+
+				// Replacing does not change which queries the entity matches:
+				this.record(ChangeKind.COMPONENT_REMOVED, entity, previous);
+				this.record(ChangeKind.COMPONENT_ADDED, entity, component);
+
+				if (!this.changeStreams.isEmpty()) {
+					this.publishChange(entity, ComponentChangeType.COMPONENT_REMOVED, previous);
+					this.publishChange(entity, ComponentChangeType.COMPONENT_ADDED, component);
+				}
+			}
+			else {
+				this.onBulkChange(entity, ComponentChangeType.COMPONENT_ADDED, component);
+				structural = true;
+			}
+		}
+
+		if (structural) {
+			this.markCacheDirtyFor(signature);
+		}
+
+		for (int position = 0; position < changedEntities.size(); position++) {
+			Entity entity = changedEntities.get(position);
+			if (replacedComponents.get(position) != null) {
+				entity.notifyListeners(ComponentChangeType.COMPONENT_REMOVED, replacedComponents.get(position));
 			}
+
+			entity.notifyListeners(ComponentChangeType.COMPONENT_ADDED, addedComponents.get(position));
+		}
+
+		if (event.shouldCommit()) {
+			event.setOperation(replace ? "replaceComponents" : "addComponents");
+			event.setEntities(changedEntities.size());
+			event.setChanges(changedEntities.size());
+			event.commit();
+		}
+
+		return changedEntities.size();
+	}
+
+	// Everything but the storages and caches a single change has to update:
+	private void onBulkChange(Entity entity, ComponentChangeType type, Component component) {
+		this.record(type == ComponentChangeType.COMPONENT_ADDED ? ChangeKind.COMPONENT_ADDED : ChangeKind.COMPONENT_REMOVED, entity, component);
+
+		if (!this.observations.isEmpty()) {
+			this.observeChanged(entity, type, component);
+		}
+
+		if (!this.changeStreams.isEmpty()) {
+			this.publishChange(entity, type, component);
+		}
+	}
+
+	//// Clock ////
+
+	/**
+	 * <p>Advances the clock of this manager, destroying every entity and
+	 * removing every component whose time to live has run out, and then
+	 * notifies query observers and change streams of all changes since the
+	 * previous tick. If a compaction is in progress, it is continued. This is
+	 * meant to be called once per tick of the simulation, for instance by a
+	 * {@link com.elsewhere_games.lib.entity.system.ClockSystem}.</p>
+	 *
+	 * <p>The cost of a tick is proportional to the number of expiring entities
+	 * and components, not to the number of entities with a time to live.</p>
+	 *
+	 * @param elapsed The time elapsed since the previous tick, in milliseconds.
+	 */
+	public void tick(long elapsed) {
+		this.expiries.advance(elapsed, this.expiryHandler);
+
+		for (int index = 0; index < this.structuralChangeListeners.size(); index++) {
+			this.structuralChangeListeners.get(index).onTick(elapsed);
+		}
+
+		this.dispatchQueryEvents();
+		this.flushChangeStreams();
+
+		if (this.compaction != null || this.compactionStepsPerTick > 0) {
+			this.updateCompaction();
+		}
+	}
+
+	/**
+	 * @return The time this manager has been ticked for, in milliseconds.
+	 */
+	public long getTime() {
+		return this.expiries.getTime();
+	}
+
+	//// Expiry ////
+
+	/*
+	 * Entities and components with a time to live are scheduled in a timing
+	 * wheel. The timeouts are also kept per entity and per component, so that
+	 * they can be replaced or cancelled when what they refer to goes away
+	 * before they expire.
+	 */
+
+	private final TimingWheel<Expiry> expiries;
+	private final TimingWheel.ExpiryHandler<Expiry> expiryHandler;
+	private final Map<Entity, TimingWheel.Timeout<Expiry>> entityExpiries;
+	private final Map<Component, TimingWheel.Timeout<Expiry>> componentExpiries;
+
+	/**
+	 * <p>Destroys the <code>entity</code> once the clock of this manager has
+	 * advanced by <code>timeToLive</code> milliseconds. Replaces any time to
+	 * live set before. The time to live does not carry over if the entity is
+	 * moved to another manager.</p>
+	 *
+	 * @param entity The entity to destroy.
+	 * @param timeToLive The time after which to destroy it, in milliseconds.
+	 *
+	 * @throws IllegalArgumentException If this manager does not contain the
+	 * specified entity.
+	 */
+	public void setTimeToLive(Entity entity, long timeToLive) {
+		if (!this.entities.contains(entity)) {
+			throw new IllegalArgumentException("This manager does not contain the specified entity.");
+		}
+
+		TimingWheel.Timeout<Expiry> timeout = this.expiries.schedule(new Expiry(entity, null), timeToLive);
+		this.cancelExpiry(this.entityExpiries.put(entity, timeout));
+	}
+
+	/**
+	 * <p>Removes the component with the specified <code>signature</code> from
+	 * the <code>entity</code> once the clock of this manager has advanced by
+	 * <code>timeToLive</code> milliseconds. Replaces any time to live set
+	 * before for the component. If the component is removed in the mean time,
+	 * its time to live is cancelled.</p>
+	 *
+	 * @param entity The entity holding the component.
+	 * @param signature The class signature of the component to remove.
+	 * @param timeToLive The time after which to remove it, in milliseconds.
+	 *
+	 * @throws IllegalArgumentException If this manager does not contain the
+	 * specified entity, or the entity has no component with the signature.
+	 */
+	public void setTimeToLive(Entity entity, Class<? extends Component> signature, long timeToLive) {
+		if (!this.entities.contains(entity)) {
+			throw new IllegalArgumentException("This manager does not contain the specified entity.");
+		}
+
+		Component component = entity.getComponent(signature);
+		if (component == null) {
+			throw new IllegalArgumentException("The specified entity has no component of the type specified.");
 		}
+
+		TimingWheel.Timeout<Expiry> timeout = this.expiries.schedule(new Expiry(entity, component), timeToLive);
+		this.cancelExpiry(this.componentExpiries.put(component, timeout));
+	}
+
+	/**
+	 * <p>Cancels the time to live of the <code>entity</code>, if it has any.</p>
+	 *
+	 * @param entity The entity which should no longer be destroyed.
+	 */
+	public void clearTimeToLive(Entity entity) {
+		this.cancelExpiry(this.entityExpiries.remove(entity));
+	}
+
+	/**
+	 * <p>Cancels the time to live of the component with the specified
+	 * <code>signature</code> of the <code>entity</code>, if it has any.</p>
+	 *
+	 * @param entity The entity holding the component.
+	 * @param signature The class signature of the component which should no
+	 * longer be removed.
+	 */
+	public void clearTimeToLive(Entity entity, Class<? extends Component> signature) {
+		Component component = entity.getComponent(signature);
+		if (component != null) {
+			this.cancelExpiry(this.componentExpiries.remove(component));
+		}
+	}
+
+	// Called by the timing wheel when a time to live runs out:
+	private void expire(Expiry expiry) {
+		Entity entity = expiry.entity;
+
+		if (expiry.component == null) {
+			this.entityExpiries.remove(entity);
+			this.destroyEntity(entity);
+		}
+		else {
+			this.componentExpiries.remove(expiry.component);
+			entity.removeComponent(expiry.component.getClass());
+		}
+	}
+
+	// Cancel the time to live of an entity and all of its components:
+	private void cancelExpiries(Entity entity) {
+		if (!this.entityExpiries.isEmpty()) {
+			this.cancelExpiry(this.entityExpiries.remove(entity));
+		}
+
+		if (!this.componentExpiries.isEmpty()) {
+			for (Component component : entity.getComponents()) {
+				this.cancelExpiry(this.componentExpiries.remove(component));
+			}
+		}
+	}
+
+	// Cancel a timeout, if there is one:
+	private void cancelExpiry(TimingWheel.Timeout<Expiry> timeout) {
+		if (timeout != null) {
+			timeout.cancel();
+		}
+	}
+
+	// What to destroy or remove once a time to live runs out:
+	private static class Expiry {
+
+		public Expiry(Entity entity, Component component) {
+			this.entity = entity;
+			this.component = component;
+		}
+
+		private final Entity entity;
+		private Component component;		// Null if the entity expires; moved to a copy restored by a rollback.
+
+	}
+
+	//// Slots ////
+
+	/*
+	 * Every managed entity occupies a slot, a small integer which indexes the
+	 * component storages. Slots of destroyed entities are reused, so that
+	 * the range of slots stays close to the number of entities.
+	 */
+
+	private Entity[] slots;
+	private int[] freeIndices;
+	private int freeIndexCount;
+	private int nextIndex;
+
+	/**
+	 * <p>Gets the number of slots in use, free or occupied. Together with
+	 * {@link #getEntityInSlot(int)} this reads every entity of this manager
+	 * without executing a query, so that no structural change listener is
+	 * notified and the query cache is left as it was.</p>
+	 *
+	 * @return The number of slots in use.
+	 */
+	public int getSlotCount() {
+		return this.nextIndex;
+	}
+
+	/**
+	 * <p>Gets the entity occupying a slot.</p>
+	 *
+	 * @param slot The slot, from zero up to the {@link #getSlotCount() slot
+	 *             count}.
+	 * @return The entity in the slot, or null if the slot is free.
+	 */
+	public Entity getEntityInSlot(int slot) {
+		if (slot < 0 || slot >= this.nextIndex) {
+			throw new IllegalArgumentException("There is no slot " + slot + ".");
+		}
+
+		return this.slots[slot];
+	}
+
+	// Take a free slot, or a new one if none are free:
+	private int acquireIndex(Entity entity) {
+		int index = -1;
+
+		// Compaction can leave free slots behind which are no longer free:
+		while (this.freeIndexCount > 0 && index == -1) {
+			int candidate = this.freeIndices[--this.freeIndexCount];
+			if (candidate < this.nextIndex && this.slots[candidate] == null) {
+				index = candidate;
+			}
+		}
+
+		if (index == -1) {
+			index = this.nextIndex++;
+			if (index == this.slots.length) {
+				this.slots = Arrays.copyOf(this.slots, index * 2);
+			}
+		}
+
+		this.slots[index] = entity;
+		return index;
+	}
+
+	// Return a slot to the free list:
+	private void releaseIndex(int index) {
+		this.slots[index] = null;
+
+		if (this.freeIndexCount == this.freeIndices.length) {
+			this.freeIndices = Arrays.copyOf(this.freeIndices, this.freeIndexCount * 2);
+		}
+
+		this.freeIndices[this.freeIndexCount++] = index;
+	}
+
+	//// Rollback ////
+
+	/*
+	 * While any checkpoint exists, every structural change to this manager is
+	 * written to a journal, and a component is copied the first time it is
+	 * edited after the latest checkpoint. Rolling back undoes the journal in
+	 * reverse, so its cost is proportional to what changed since the
+	 * checkpoint rather than to the size of the world. Without checkpoints,
+	 * nothing is recorded.
+	 */
+
+	private final List<Checkpoint> checkpoints;		// Oldest first.
+	private final List<Change> journal;
+	private int peakJournalSize;					// The capacity the journal retains.
+	private long journalOffset;						// Position of the first change in the journal.
+	private boolean rollingBack;
+
+	private final Map<Class<?>, ComponentCopier<?>> copiers;
+	private final Set<Component> editedComponents;	// Copied or added since the latest checkpoint.
+
+	/**
+	 * <p>Registers the copier used to save components with the specified
+	 * <code>signature</code> before they are edited, so that edits can be
+	 * undone by a rollback.</p>
+	 *
+	 * @param signature The class signature of the components to copy.
+	 * @param copier Creates an independent copy of a component, which must be
+	 * of the same class.
+	 */
+	public <C extends Component> void setComponentCopier(Class<C> signature, ComponentCopier<C> copier) {
+		this.copiers.put(signature, copier);
+	}
+
+	/**
+	 * <p>Creates a checkpoint to which the entities and components of this
+	 * manager can later be rolled back, for instance to resimulate a number
+	 * of ticks, or to explore several outcomes speculatively.</p>
+	 *
+	 * <p>Rollback covers entities being created and destroyed, components
+	 * being added and removed, and components being edited through
+	 * {@link #editComponent(Entity, Class)}. It does not cover the clock,
+	 * times to live, queries or listeners of this manager. Fields of a
+	 * component changed directly, rather than through editComponent, are
+	 * silently not rolled back.</p>
+	 *
+	 * <p>A rollback undoes changes in place: a checkpoint does not fork a
+	 * world which runs alongside this one. To explore an outcome
+	 * speculatively, simulate it on this manager and roll back afterwards.</p>
+	 *
+	 * @return The new checkpoint.
+	 */
+	public Checkpoint checkpoint() {
+		Checkpoint checkpoint = new Checkpoint(this, this.journalOffset + this.journal.size());
+		this.checkpoints.add(checkpoint);
+		this.editedComponents.clear();
+
+		return checkpoint;
+	}
+
+	/**
+	 * <p>Gets the component with the specified <code>signature</code> of an
+	 * entity in order to modify it. If the component was not edited since the
+	 * latest checkpoint, a copy of it is saved first, which a rollback
+	 * restores in its place.</p>
+	 *
+	 * <p>Components modified without calling this method are not restored
+	 * by a rollback.</p>
+	 *
+	 * @param entity The entity holding the component.
+	 * @param signature The class signature of the component to edit.
+	 *
+	 * @return The component, or <code>null</code> if the entity holds no such
+	 * component.
+	 *
+	 * @throws IllegalArgumentException If a checkpoint exists and no copier
+	 * is registered for the component type.
+	 * @throws IllegalStateException If the copier of the component type does
+	 * not return a component of the same class.
+	 */
+	public <C extends Component> C editComponent(Entity entity, Class<C> signature) {
+		C component = entity.getComponent(signature);
+
+		if (component != null && this.isRecording() && !this.editedComponents.contains(component)) {
+			@SuppressWarnings("unchecked")
+			ComponentCopier<C> copier = (ComponentCopier<C>)this.copiers.get(signature);
+			if (copier == null) {
+				throw new IllegalArgumentException("No copier is registered for components of the type specified.");
+			}
+
+			this.journal.add(new Change(ChangeKind.COMPONENT_EDITED, entity, ComponentTypes.copy(copier, component)));
+			this.peakJournalSize = Math.max(this.peakJournalSize, this.journal.size());
+			this.editedComponents.add(component);
+		}
+
+		return component;
+	}
+
+	/**
+	 * <p>Undoes every change recorded since the specified checkpoint. The
+	 * checkpoint remains valid, so that the manager can be rolled back to it
+	 * again, while all later checkpoints are released.</p>
+	 *
+	 * <p>Entities and components removed since the checkpoint are restored
+	 * as the same objects, while edited components are replaced by their
+	 * saved copies, which keep the time to live of the component they
+	 * replace. Observers and listeners are notified of the restored changes
+	 * as if they had been made directly.</p>
+	 *
+	 * @param checkpoint The checkpoint to roll back to.
+	 *
+	 * @throws IllegalArgumentException If the checkpoint was not created by
+	 * this manager or was already released.
+	 */
+	public void rollback(Checkpoint checkpoint) {
+		int checkpointIndex = this.checkpoints.indexOf(checkpoint);
+		if (checkpointIndex == -1) {
+			throw new IllegalArgumentException("The specified checkpoint is not held by this manager.");
+		}
+
+		StructuralChangeEvent event = new StructuralChangeEvent();
+		event.begin();
+
+		int first = (int)(checkpoint.position - this.journalOffset);
+		int undone = this.journal.size() - first;
+
+		this.rollingBack = true;
+		try {
+			for (int position = this.journal.size() - 1; position >= first; position--) {
+				this.journal.remove(position).undo(this);
+			}
+		} finally {
+			this.rollingBack = false;
+		}
+
+		if (event.shouldCommit()) {
+			event.setOperation("rollback");
+			event.setEntities(this.entities.size());
+			event.setChanges(undone);
+			event.commit();
+		}
+
+		this.checkpoints.subList(checkpointIndex + 1, this.checkpoints.size()).clear();
+		this.editedComponents.clear();
+	}
+
+	/**
+	 * <p>Releases the specified checkpoint, together with all checkpoints
+	 * created before it, discarding the changes recorded for them. Once no
+	 * checkpoints remain, changes are no longer recorded.</p>
+	 *
+	 * @param checkpoint The checkpoint to release.
+	 */
+	public void releaseCheckpoint(Checkpoint checkpoint) {
+		int checkpointIndex = this.checkpoints.indexOf(checkpoint);
+		if (checkpointIndex == -1) {
+			return;
+		}
+
+		this.checkpoints.subList(0, checkpointIndex + 1).clear();
+
+		if (this.checkpoints.isEmpty()) {
+			this.journalOffset += this.journal.size();
+			this.journal.clear();
+			this.editedComponents.clear();
+		}
+		else {
+			int discarded = (int)(this.checkpoints.get(0).position - this.journalOffset);
+			this.journal.subList(0, discarded).clear();
+			this.journalOffset += discarded;
+		}
+	}
+
+	/**
+	 * @return The number of changes recorded for the checkpoints of this
+	 * manager.
+	 */
+	public int getJournalSize() {
+		return this.journal.size();
+	}
+
+	// Whether changes have to be recorded:
+	private boolean isRecording() {
+		return !this.checkpoints.isEmpty() && !this.rollingBack;
+	}
+
+	// Record a change, if any checkpoint may have to undo it:
+	private void record(ChangeKind kind, Entity entity, Component component) {
+		if (!this.structuralChangeListeners.isEmpty()) {
+			this.notifyStructuralChange(kind, entity, component);
+		}
+
+		if (this.isRecording()) {
+			this.journal.add(new Change(kind, entity, component));
+			this.peakJournalSize = Math.max(this.peakJournalSize, this.journal.size());
+
+			// Components added since the checkpoint need no copy to be undone:
+			if (kind == ChangeKind.COMPONENT_ADDED) {
+				this.editedComponents.add(component);
+			}
+		}
+	}
+
+	// Put back a saved copy of an edited component, which takes over the time
+	// to live of the component it replaces:
+	private void restoreComponent(Entity entity, Component component) {
+		Component replaced = entity.getComponent(component.getClass());
+		entity.replaceComponent(component);
+		this.storages.get(component.getClass()).put(entity.index, entity, component);
+
+		if (!this.componentExpiries.isEmpty()) {
+			TimingWheel.Timeout<Expiry> timeout = this.componentExpiries.remove(replaced);
+			if (timeout != null) {
+				timeout.getPayload().component = component;
+				this.componentExpiries.put(component, timeout);
+			}
+		}
+	}
+
+	// The kinds of changes which can be undone:
+	private enum ChangeKind {
+		ENTITY_ADDED,
+		ENTITY_DESTROYED,
+		COMPONENT_ADDED,
+		COMPONENT_REMOVED,
+		COMPONENT_EDITED
+	}
+
+	// A single change recorded in the journal:
+	private static class Change {
+
+		public Change(ChangeKind kind, Entity entity, Component component) {
+			this.kind = kind;
+			this.entity = entity;
+			this.component = component;
+		}
+
+		private final ChangeKind kind;
+		private final Entity entity;
+		private final Component component;		// The saved copy, for edits.
+
+		public void undo(EntityManager manager) {
+			switch (this.kind) {
+				case ENTITY_ADDED:
+					manager.destroyEntity(this.entity);
+					break;
+
+				case ENTITY_DESTROYED:
+					manager.addEntity(this.entity);
+					break;
+
+				case COMPONENT_ADDED:
+					this.entity.removeComponent(this.component.getClass());
+					break;
+
+				case COMPONENT_REMOVED:
+					this.entity.addComponent(this.component);
+					break;
+
+				case COMPONENT_EDITED:
+					manager.restoreComponent(this.entity, this.component);
+					break;
+			}
+		}
+
+	}
+
+	//// Compaction ////
+
+	/*
+	 * The collections of a manager grow to fit its peak number of entities,
+	 * and keep that capacity when the entities are destroyed. Destroyed
+	 * entities also leave holes in the range of slots, which scatters the
+	 * storages over more memory than needed. Compaction moves the entities
+	 * with the highest slots into the holes, puts the storages back in slot
+	 * order, and shrinks the backing collections to fit.
+	 *
+	 * Compaction is done in small steps, so that it can be spread over
+	 * several ticks: moving a batch of entities, compacting a single storage,
+	 * rebuilding the entity set, or trimming the cached query results.
+	 */
+
+	private static final int ENTITIES_MOVED_PER_STEP = 64;
+
+	private Compaction compaction;			// Null unless compacting.
+	private int compactionStepsPerTick;		// Zero unless automatic.
+
+	/**
+	 * <p>Compacts the backing collections of this manager in one go. This
+	 * takes time proportional to the number of entities and components, so
+	 * it is best done while a pause is acceptable, for instance after a level
+	 * is unloaded.</p>
+	 */
+	public void compact() {
+		this.startCompaction();
+
+		while (this.compaction != null) {
+			this.stepCompaction();
+		}
+	}
+
+	/**
+	 * <p>Starts compacting the backing collections of this manager over the
+	 * coming ticks, doing the number of steps set by
+	 * {@link #setAutoCompaction(int)} on each tick, or one if automatic
+	 * compaction is disabled. Has no effect if a compaction is already in
+	 * progress.</p>
+	 */
+	public void startCompaction() {
+		if (this.compaction == null) {
+			this.compaction = new Compaction();
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if a compaction is in progress,
+	 * <code>false</code> otherwise.
+	 */
+	public boolean isCompacting() {
+		return this.compaction != null;
+	}
+
+	/**
+	 * <p>Enables automatic compaction, which starts whenever the number of
+	 * entities drops below half of its peak since the last compaction, and
+	 * is spread over as many ticks as needed.</p>
+	 *
+	 * @param stepsPerTick The number of compaction steps done each tick, or
+	 * zero to disable automatic compaction.
+	 */
+	public void setAutoCompaction(int stepsPerTick) {
+		this.compactionStepsPerTick = Math.max(stepsPerTick, 0);
+	}
+
+	// Called on each tick to start or continue an incremental compaction:
+	private void updateCompaction() {
+		if (this.compaction == null && this.compactionStepsPerTick > 0 && this.entities.size() < this.peakEntityCount / 2) {
+			this.startCompaction();
+		}
+
+		for (int step = 0; step < Math.max(this.compactionStepsPerTick, 1) && this.compaction != null; step++) {
+			this.stepCompaction();
+		}
+	}
+
+	// Do a single step of the compaction in progress:
+	private void stepCompaction() {
+		Compaction compaction = this.compaction;
+
+		switch (compaction.phase) {
+			case SLOTS:
+				if (this.moveHighestEntities()) {
+					compaction.phase = CompactionPhase.STORAGES;
+					compaction.storages = new ArrayList<ComponentStorage>(this.storages.values());
+				}
+				break;
+
+			case STORAGES:
+				if (compaction.nextStorage < compaction.storages.size()) {
+					compaction.storages.get(compaction.nextStorage++).compact();
+				}
+				else {
+					compaction.phase = CompactionPhase.ENTITY_SET;
+				}
+				break;
+
+			case ENTITY_SET:
+				if (this.peakEntityCount > 2 * this.entities.size()) {
+					this.entities = new HashSet<Entity>(this.entities);
+					this.peakEntitySetSize = this.entities.size();
+				}
+
+				compaction.phase = CompactionPhase.QUERY_CACHES;
+				break;
+
+			case QUERY_CACHES:
+				for (Query query : this.sharedQueries) {
+					if (query.results instanceof ArrayList) {
+						((ArrayList<Entity>)query.results).trimToSize();
+						query.resultCapacity = query.results.size();
+					}
+				}
+
+				this.peakEntityCount = this.entities.size();
+				this.compaction = null;
+				break;
+		}
+	}
+
+	// Move a batch of entities from the highest slots into free ones below:
+	private boolean moveHighestEntities() {
+		StructuralChangeEvent event = new StructuralChangeEvent();
+		event.begin();
+
+		int moved = 0;
+		int movedComponents = 0;
+
+		while (this.nextIndex > this.entities.size() && moved < ENTITIES_MOVED_PER_STEP) {
+			int fromIndex = this.nextIndex - 1;
+			Entity entity = this.slots[fromIndex];
+
+			if (entity != null) {
+				int toIndex = this.acquireIndex(entity);
+				for (Component component : entity.getComponents()) {
+					this.storages.get(component.getClass()).move(fromIndex, toIndex);
+					movedComponents++;
+				}
+
+				entity.index = toIndex;
+				this.slots[fromIndex] = null;
+				moved++;
+			}
+
+			this.nextIndex--;
+		}
+
+		if (moved > 0 && event.shouldCommit()) {
+			event.setOperation("compact");
+			event.setEntities(moved);
+			event.setChanges(movedComponents);
+			event.commit();
+		}
+
+		// All slots are in use, so nothing is left on the free list:
+		if (this.nextIndex == this.entities.size()) {
+			this.freeIndexCount = 0;
+			this.freeIndices = new int[16];
+			this.slots = Arrays.copyOf(this.slots, Math.max(16, this.nextIndex));
+			return true;
+		}
+
+		return false;
+	}
+
+	// The parts of a manager compacted, in order:
+	private enum CompactionPhase {
+		SLOTS,
+		STORAGES,
+		ENTITY_SET,
+		QUERY_CACHES
+	}
+
+	// The progress of an incremental compaction:
+	private static class Compaction {
+
+		private CompactionPhase phase = CompactionPhase.SLOTS;
+		private List<ComponentStorage> storages;
+		private int nextStorage;
+
+	}
+
+	//// Storage ////
+
+	private final Map<Class<?>, ComponentStorage> storages;
+
+	private static final StorageStrategy DEFAULT_STORAGE_STRATEGY = StorageStrategy.SPARSE_SET;
+
+	/**
+	 * <p>Selects how the components with the specified <code>signature</code>
+	 * are stored. Components already held by entities of this manager are
+	 * moved into a storage of the new strategy.</p>
+	 *
+	 * <p>By default, components are stored in a
+	 * {@link StorageStrategy#SPARSE_SET}.</p>
+	 *
+	 * @param signature The class signature of the components to store.
+	 * @param strategy The layout to store the components in.
+	 */
+	public void setStorageStrategy(Class<? extends Component> signature, StorageStrategy strategy) {
+		ComponentStorage current = this.storages.get(signature);
+		if (current != null && current.getStrategy() == strategy) {
+			return;
+		}
+
+		ComponentStorage replacement = strategy.createStorage();
+		if (current != null) {
+			for (int position = 0; position < current.size(); position++) {
+				Entity entity = current.getEntity(position);
+				replacement.put(entity.index, entity, current.getComponent(position));
+			}
+		}
+
+		this.storages.put(signature, replacement);
+	}
+
+	/**
+	 * <p>Gets the layout in which components with the specified
+	 * <code>signature</code> are stored.</p>
+	 *
+	 * @param signature The class signature of the components.
+	 * @return The strategy used to store the components.
+	 */
+	public StorageStrategy getStorageStrategy(Class<? extends Component> signature) {
+		ComponentStorage storage = this.storages.get(signature);
+		return storage != null ? storage.getStrategy() : DEFAULT_STORAGE_STRATEGY;
+	}
+
+	// Get the storage of a component type, if any component was ever stored:
+	ComponentStorage getStorage(Class<?> signature) {
+		return this.storages.get(signature);
+	}
+
+	// Get the storage of a component type, creating it on first use:
+	private ComponentStorage getOrCreateStorage(Class<?> signature) {
+		ComponentStorage storage = this.storages.get(signature);
+		if (storage == null) {
+			storage = DEFAULT_STORAGE_STRATEGY.createStorage();
+			this.storages.put(signature, storage);
+		}
+
+		return storage;
+	}
+
+	//// Queries ////
+
+	/*
+	 * Since most queries for entities will be repeated quite often,
+	 * the query system allows for common queries to be cached. This
+	 * will provide a great speed in accessing the desired entities.
+	 *
+	 * Queries are interned by their set of signatures: every identifier
+	 * handed out refers to a shared query, so that systems asking for the
+	 * same components share a single cached result. A shared query is
+	 * discarded once all identifiers referring to it have been disposed.
+	 */
+	
+	private final Map<UUID, Query> queries;
+	private final Map<Set<Class<?>>, Query> internedQueries;
+	private final List<Query> sharedQueries;		// The interned queries, to iterate by index.
+	
+	/**
+	 * <p>Creates a query into the entity system which, when executed, will
+	 * return all entities which hold all components with the specified
+	 * <code>signatures</code>. To use generated query, call the executeQuery
+	 * method of this manager.</p>
+	 *
+	 * <p>Queries with the same set of signatures, in any order, share their
+	 * cached results. Queries which are no longer needed should be disposed
+	 * using the disposeQuery method of this manager.</p>
+	 * 
+	 * @param signatures When the query is executed, all included entities will
+	 * all components specified here.
+	 * 
+	 * @return An identifier with which the query can be executed against this
+	 * manager.
+	 */
+	public UUID createQuery(Class<?>... signatures) {
+		UUID queryId = UUID.randomUUID();
+		Query query = this.internQuery(signatures);
+		this.queries.put(queryId, query);
+
+		for (int index = 0; index < this.structuralChangeListeners.size(); index++) {
+			this.structuralChangeListeners.get(index).onQueryCreated(queryId, query.signatures);
+		}
+		
+		return queryId;
+	}
+	
+	/**
+	 * <p>Updates a query by replacing the original list of components is uses
+	 * to query the entities with the list of <code>signatures</code>. Other
+	 * queries which had the same signatures are not affected.</p>
+	 * 
+	 * @param queryId The id of the query to update.
+	 * @param signatures The new components to query the entity list for.
+	 */
+	public void updateQuery(UUID queryId, Class<?>... signatures) {
+		Observation observation = this.observations.get(queryId);
+		List<Entity> previousMatches = observation != null ? this.executeQuery(queryId) : null;
+
+		Query query = this.internQuery(signatures);
+		Query previousQuery = this.queries.put(queryId, query);
+		if (previousQuery != null) {
+			this.releaseQuery(previousQuery);
+		}
+
+		for (int index = 0; index < this.structuralChangeListeners.size(); index++) {
+			this.structuralChangeListeners.get(index).onQueryUpdated(queryId, query.signatures);
+		}
+
+		// Report the difference between the old and new matches:
+		if (observation != null) {
+			observation.signatures = query.signatures;
+
+			Set<Entity> matches = new HashSet<Entity>(this.executeQuery(queryId));
+			for (Entity entity : previousMatches) {
+				if (!matches.remove(entity)) {
+					observation.exit(entity);
+				}
+			}
+
+			for (Entity entity : matches) {
+				observation.enter(entity);
+			}
+		}
+	}
+
+	/**
+	 * <p>Disposes of a query created by this manager. The identifier can no
+	 * longer be executed or observed afterwards, and its observers are
+	 * removed. Has no effect if the query was already disposed.</p>
+	 *
+	 * @param queryId The identifier of the query to dispose.
+	 */
+	public void disposeQuery(UUID queryId) {
+		Query query = this.queries.remove(queryId);
+		if (query != null) {
+			this.observations.remove(queryId);
+			this.releaseQuery(query);
+
+			for (int index = 0; index < this.structuralChangeListeners.size(); index++) {
+				this.structuralChangeListeners.get(index).onQueryDisposed(queryId);
+			}
+		}
+	}
+
+	// Find the shared query with the same signatures, or create it:
+	private Query internQuery(Class<?>... signatures) {
+		Set<Class<?>> key = new LinkedHashSet<Class<?>>(Arrays.asList(signatures));
+
+		Query query = this.internedQueries.get(key);
+		if (query == null) {
+			query = new Query(key);
+			this.internedQueries.put(key, query);
+			this.sharedQueries.add(query);
+		}
+
+		query.handleCount++;
+		return query;
+	}
+
+	// Drop an identifier of a shared query, discarding it if it was the last:
+	private void releaseQuery(Query query) {
+		if (--query.handleCount == 0) {
+			this.internedQueries.remove(query.key);
+			this.sharedQueries.remove(query);
+			this.uncacheQuery(query);
+		}
+	}
+
+	// A query shared by all identifiers with the same signatures:
+	private static class Query {
+
+		public Query(Set<Class<?>> key) {
+			this.key = key;
+			this.signatures = new ArrayList<Class<?>>(key);
+		}
+
+		private final Set<Class<?>> key;
+		private final List<Class<?>> signatures;
+		private int handleCount;
+
+		private boolean cached;
+		private List<Entity> results;		// Kept when not cached if results are reused.
+		private int resultCapacity;			// The most results the list has held, which its array retains.
+		private long lastExecuted;
+
+	}
+
+	//// Query Cache ////
+
+	/*
+	 * Each shared query holds its own cached result, and remembers when it
+	 * was last executed, so that when the number of cached results is
+	 * bounded, the least recently executed query is the first to lose its
+	 * result.
+	 */
+	
+	private int cachedQueryCount;
+	private int queryCacheCapacity;
+	private long queryExecutionCount;
+	private boolean reuseQueryResults;
+
+	/**
+	 * <p>Limits the number of query results this manager caches. When the
+	 * limit is exceeded, the result of the least recently executed query is
+	 * discarded, and will be rebuilt the next time it is executed. By
+	 * default, the number of cached results is not limited. At least one
+	 * result is always cached, since the query being executed keeps its
+	 * result.</p>
+	 *
+	 * @param capacity The maximum number of cached results.
+	 *
+	 * @throws IllegalArgumentException If the capacity is less than one.
+	 */
+	public void setQueryCacheCapacity(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The query cache capacity has to be at least one.");
+		}
+
+		this.queryCacheCapacity = capacity;
+		this.evictQueryResults();
+	}
+
+	/**
+	 * @return The maximum number of query results this manager caches.
+	 */
+	public int getQueryCacheCapacity() {
+		return this.queryCacheCapacity;
+	}
+
+	/**
+	 * <p>Selects whether rebuilding the result of a query refills the list
+	 * which held its previous result, instead of allocating a new one.</p>
+	 *
+	 * <p>With results reused, a steady-state tick does not allocate, as long
+	 * as it only executes existing queries, iterates their results by index,
+	 * accesses components, and adds or removes components of types the
+	 * entities held before, without observers or change streams. In return,
+	 * a list returned by executeQuery is only valid until the same query is
+	 * executed again after a change, and must not be iterated while
+	 * executing it again. By default, results are not reused.</p>
+	 *
+	 * @param reuse <code>true</code> to reuse result lists,
+	 * <code>false</code> to allocate a new list for every rebuild.
+	 */
+	public void setReuseQueryResults(boolean reuse) {
+		this.reuseQueryResults = reuse;
+	}
+
+	/**
+	 * @return <code>true</code> if rebuilding a query result reuses the list
+	 * of its previous result, <code>false</code> otherwise.
+	 */
+	public boolean isReuseQueryResults() {
+		return this.reuseQueryResults;
+	}
+	
+	/**
+	 * <p>Executes the query with <code>queryId</code> generated from this
+	 * manager using the createQuery method to generate a collection of
+	 * entities with components specified at the time the query was created.</p>
+	 *
+	 * <p>The order in which the entities are stored in the resulting list
+	 * is unspecified.</p>
+	 * 
+	 * @param queryId The identifier of the query to execute.
+	 * 
+	 * @return A list of all entities which meets the specifications of the
+	 * query provided when it was created.
+	 *
+	 * @throws IllegalArgumentException If no query with the specified
+	 * identifier was created by this manager, or it has been disposed.
+	 */
+	public List<Entity> executeQuery(UUID queryId) {
+		Query query = this.queries.get(queryId);
+		if (query == null) {
+			throw new IllegalArgumentException("This manager has no query with the specified identifier.");
+		}
+
+		query.lastExecuted = ++this.queryExecutionCount;
+
+		for (int index = 0; index < this.structuralChangeListeners.size(); index++) {
+			this.structuralChangeListeners.get(index).onQueryExecuted(queryId);
+		}
+
+		// Check to see if a query has been made:
+		if (!query.cached) {
+			List<Entity> reused = this.reuseQueryResults ? query.results : null;
+			query.results = this.findQueryMatches(query.signatures, reused);
+			query.resultCapacity = reused != null ? Math.max(query.resultCapacity, query.results.size()) : query.results.size();
+			query.cached = true;
+			this.cachedQueryCount++;
+
+			this.evictQueryResults();
+		}
+		
+		return query.results;
+	}
+
+	// Discard the cached result of a query:
+	private void uncacheQuery(Query query) {
+		if (query.cached) {
+			query.cached = false;
+			this.cachedQueryCount--;
+
+			if (!this.reuseQueryResults) {
+				query.results = null;
+			}
+		}
+	}
+
+	// Discard the least recently executed results until within capacity:
+	private void evictQueryResults() {
+		while (this.cachedQueryCount > this.queryCacheCapacity) {
+			Query eldest = null;
+			for (int position = 0; position < this.sharedQueries.size(); position++) {
+				Query query = this.sharedQueries.get(position);
+				if (query.cached && (eldest == null || query.lastExecuted < eldest.lastExecuted)) {
+					eldest = query;
+				}
+			}
+
+			this.uncacheQuery(eldest);
+		}
+	}
+
+	// Build a list of all entities matching the query:
+	private List<Entity> findQueryMatches(List<Class<?>> signatures, List<Entity> reusedList) {
+		QueryRebuildEvent event = null;
+		if (QUERY_REBUILD_EVENTS.isEnabled()) {
+			event = new QueryRebuildEvent();
+			event.begin();
+		}
+
+		List<Entity> matchingEntities = reusedList;
+		if (matchingEntities == null) {
+			matchingEntities = new ArrayList<Entity>();
+		}
+		else {
+			matchingEntities.clear();
+		}
+
+		int scanned = 0;
+
+		// Without any signatures, every entity matches:
+		if (signatures.isEmpty()) {
+			for (int index = 0; index < this.nextIndex; index++) {
+				if (this.slots[index] != null) {
+					matchingEntities.add(this.slots[index]);
+				}
+			}
+
+			scanned = this.entities.size();
+		}
+		else {
+			// Scan the smallest storage, probing the others by slot:
+			ComponentStorage smallest = this.findSmallestStorage(signatures);
+			if (smallest != null) {
+				for (int position = 0; position < smallest.size(); position++) {
+					Entity entity = smallest.getEntity(position);
+					if (this.hasComponentsInStorage(entity.index, signatures)) {
+						matchingEntities.add(entity);
+					}
+				}
+
+				scanned = smallest.size();
+			}
+		}
+
+		if (event != null && event.shouldCommit()) {
+			event.setSignatures(signatures.toString());
+			event.setScanned(scanned);
+			event.setResults(matchingEntities.size());
+			event.commit();
+		}
+		
+		return matchingEntities;
+	}
+
+	// Only used to check whether rebuild events are enabled, without allocating:
+	private static final QueryRebuildEvent QUERY_REBUILD_EVENTS = new QueryRebuildEvent();
+
+	// Find the smallest storage of the signatures, or null if one has none:
+	private ComponentStorage findSmallestStorage(List<Class<?>> signatures) {
+		ComponentStorage smallest = null;
+		for (int position = 0; position < signatures.size(); position++) {
+			ComponentStorage storage = this.storages.get(signatures.get(position));
+			if (storage == null) {
+				return null;
+			}
+
+			if (smallest == null || storage.size() < smallest.size()) {
+				smallest = storage;
+			}
+		}
+
+		return smallest;
+	}
+
+	// Check the storages of all signatures for a component in the slot:
+	private boolean hasComponentsInStorage(int index, List<Class<?>> signatures) {
+		for (int position = 0; position < signatures.size(); position++) {
+			if (!this.storages.get(signatures.get(position)).contains(index)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	// Remove any cached entries which the specified entity matches:
+	private void markCacheDirtyFor(Entity entity) {
+		for (int position = 0; position < this.sharedQueries.size(); position++) {
+			Query query = this.sharedQueries.get(position);
+			if (query.cached && entity.hasComponents(query.signatures)) {
+				this.uncacheQuery(query);
+			}
+		}
+	}
+
+	// Remove any cached entries containing the specified component:
+	private void markCacheDirtyFor(Component component) {
+		this.markCacheDirtyFor(component.getClass());
+	}
+
+	// Remove any cached entries containing the specified component type:
+	private void markCacheDirtyFor(Class<?> signature) {
+		for (int position = 0; position < this.sharedQueries.size(); position++) {
+			Query query = this.sharedQueries.get(position);
+			if (query.cached && query.signatures.contains(signature)) {
+				this.uncacheQuery(query);
+			}
+		}
+	}
+
+	//// Observers ////
+
+	/*
+	 * Rather than comparing query results between ticks, observed queries are
+	 * updated as entities and components come and go. Changes are collected
+	 * per observer, with an entity leaving and entering again cancelling out,
+	 * and are delivered once per tick. Keeping them per observer lets an
+	 * observer which joins late start from the entities matching the query at
+	 * that time, without reporting them again to the others.
+	 */
+
+	private final Map<UUID, Observation> observations;
+
+	/**
+	 * <p>Registers an observer which is notified when entities start or stop
+	 * matching the query with <code>queryId</code>. All entities matching the
+	 * query at the time of registration are reported as entering it in the
+	 * next batch of notifications.</p>
+	 *
+	 * <p>Notifications are delivered by {@link #tick(long)}, or by calling
+	 * {@link #dispatchQueryEvents()} directly, in the thread context of that
+	 * call.</p>
+	 *
+	 * @param queryId The identifier of the query to observe.
+	 * @param observer Will receive notifications about the query.
+	 *
+	 * @throws IllegalArgumentException If no query with the specified
+	 * identifier was created by this manager.
+	 */
+	public void addQueryObserver(UUID queryId, QueryObserver observer) {
+		if (!this.queries.containsKey(queryId)) {
+			throw new IllegalArgumentException("This manager has no query with the specified identifier.");
+		}
+
+		Observation observation = this.observations.get(queryId);
+		if (observation == null) {
+			observation = new Observation(this.queries.get(queryId).signatures);
+			this.observations.put(queryId, observation);
+		}
+
+		Subscription subscription = new Subscription(observer);
+		for (Entity entity : this.executeQuery(queryId)) {
+			subscription.enter(entity);
+		}
+
+		observation.subscriptions.add(subscription);
+	}
+
+	/**
+	 * <p>Removes an observer from the query with <code>queryId</code>. The
+	 * observer will no longer receive notifications about the query.</p>
+	 *
+	 * @param queryId The identifier of the observed query.
+	 * @param observer Will no longer receive notifications about the query.
+	 */
+	public void removeQueryObserver(UUID queryId, QueryObserver observer) {
+		Observation observation = this.observations.get(queryId);
+		if (observation == null) {
+			return;
+		}
+
+		for (int index = 0; index < observation.subscriptions.size(); index++) {
+			if (observation.subscriptions.get(index).observer == observer) {
+				observation.subscriptions.remove(index);
+				break;
+			}
+		}
+
+		if (observation.subscriptions.isEmpty()) {
+			this.observations.remove(queryId);
+		}
+	}
+
+	/**
+	 * <p>Delivers all pending notifications to the query observers of this
+	 * manager. Changes made by the observers are delivered in the next
+	 * batch.</p>
+	 */
+	public void dispatchQueryEvents() {
+		if (this.observations.isEmpty()) {
+			return;
+		}
+
+		// Observers may add or remove observers while being notified:
+		List<Observation> pending = new ArrayList<Observation>();
+		for (Observation observation : this.observations.values()) {
+			if (observation.isPending()) {
+				pending.add(observation);
+			}
+		}
+
+		for (Observation observation : pending) {
+			observation.dispatch();
+		}
+	}
+
+	/**
+	 * <p>Delivers the pending notifications of the query with
+	 * <code>queryId</code> only, for observers which cannot wait for the next
+	 * tick. The notifications of other queries are left pending.</p>
+	 *
+	 * @param queryId The identifier of the observed query.
+	 */
+	public void dispatchQueryEvents(UUID queryId) {
+		Observation observation = this.observations.get(queryId);
+		if (observation != null && observation.isPending()) {
+			observation.dispatch();
+		}
+	}
+
+	// Report a new entity to the queries it matches:
+	private void observeEntered(Entity entity) {
+		for (Observation observation : this.observations.values()) {
+			if (entity.hasComponents(observation.signatures)) {
+				observation.enter(entity);
+			}
+		}
+	}
+
+	// Report a destroyed entity to the queries it matched:
+	private void observeExited(Entity entity) {
+		for (Observation observation : this.observations.values()) {
+			if (entity.hasComponents(observation.signatures)) {
+				observation.exit(entity);
+			}
+		}
+	}
+
+	// Report a component change to the queries including its type:
+	private void observeChanged(Entity entity, ComponentChangeType type, Component component) {
+		Class<?> changed = component.getClass();
+
+		for (Observation observation : this.observations.values()) {
+			if (!observation.signatures.contains(changed)) {
+				continue;
+			}
+
+			// The entity matches if it holds all other components of the query:
+			boolean matchesOthers = true;
+			for (Class<?> signature : observation.signatures) {
+				if (signature != changed && !entity.hasComponent(signature)) {
+					matchesOthers = false;
+					break;
+				}
+			}
+
+			if (!matchesOthers) {
+				continue;
+			}
+
+			if (type == ComponentChangeType.COMPONENT_ADDED) {
+				observation.enter(entity);
+			}
+			else {
+				observation.exit(entity);
+			}
+		}
+	}
+
+	// The observers of a single query:
+	private static class Observation {
+
+		public Observation(List<Class<?>> signatures) {
+			this.signatures = signatures;
+			this.subscriptions = new ArrayList<Subscription>();
+		}
+
+		private List<Class<?>> signatures;
+		private final List<Subscription> subscriptions;
+
+		public void enter(Entity entity) {
+			for (int index = 0; index < this.subscriptions.size(); index++) {
+				this.subscriptions.get(index).enter(entity);
+			}
+		}
+
+		public void exit(Entity entity) {
+			for (int index = 0; index < this.subscriptions.size(); index++) {
+				this.subscriptions.get(index).exit(entity);
+			}
+		}
+
+		public boolean isPending() {
+			for (int index = 0; index < this.subscriptions.size(); index++) {
+				if (this.subscriptions.get(index).isPending()) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		public void dispatch() {
+			List<Subscription> notified = new ArrayList<Subscription>(this.subscriptions);
+			for (Subscription subscription : notified) {
+				subscription.dispatch();
+			}
+		}
+
+	}
+
+	// A single observer of a query, with its pending notifications:
+	private static class Subscription {
+
+		public Subscription(QueryObserver observer) {
+			this.observer = observer;
+			this.entered = new LinkedHashSet<Entity>();
+			this.exited = new LinkedHashSet<Entity>();
+		}
+
+		private final QueryObserver observer;
+		private final Set<Entity> entered;
+		private final Set<Entity> exited;
+
+		// An entity which exited this tick and enters again was never gone:
+		public void enter(Entity entity) {
+			if (!this.exited.remove(entity)) {
+				this.entered.add(entity);
+			}
+		}
+
+		// An entity which entered this tick and exits again was never there:
+		public void exit(Entity entity) {
+			if (!this.entered.remove(entity)) {
+				this.exited.add(entity);
+			}
+		}
+
+		public boolean isPending() {
+			return !this.entered.isEmpty() || !this.exited.isEmpty();
+		}
+
+		public void dispatch() {
+			if (!this.isPending()) {
+				return;
+			}
+
+			List<Entity> exits = Collections.unmodifiableList(new ArrayList<Entity>(this.exited));
+			List<Entity> enters = Collections.unmodifiableList(new ArrayList<Entity>(this.entered));
+			this.exited.clear();
+			this.entered.clear();
+
+			if (!exits.isEmpty()) {
+				this.observer.onExit(exits);
+			}
+
+			if (!enters.isEmpty()) {
+				this.observer.onEnter(enters);
+			}
+		}
+
+	}
+
+	//// Change Streams ////
+
+	/*
+	 * Component change listeners are notified on the thread changing the
+	 * entity, so a slow listener stalls the simulation. Change streams instead
+	 * buffer the changes and deliver them to their subscribers on another
+	 * thread.
+	 */
+
+	private final List<ComponentChangePublisher> changeStreams;
+
+	/**
+	 * <p>Opens a stream of all component changes of the entities in this
+	 * manager, to which subscribers can be attached which are notified
+	 * asynchronously. Changes are handed to the subscribers on every tick of
+	 * this manager, or whenever a full batch has been collected.</p>
+	 *
+	 * @param bufferCapacity The number of changes buffered per subscriber.
+	 * @param maxBatchSize The maximum number of changes delivered at once.
+	 * @param policy What to do with new changes when a buffer is full.
+	 * @param executor Runs the delivery of changes to the subscribers.
+	 *
+	 * @return A publisher of the changes to this manager.
+	 */
+	public ComponentChangePublisher openChangeStream(int bufferCapacity, int maxBatchSize, OverflowPolicy policy, Executor executor) {
+		ComponentChangePublisher changeStream = new ComponentChangePublisher(bufferCapacity, maxBatchSize, policy, executor);
+		this.changeStreams.add(changeStream);
+
+		return changeStream;
+	}
+
+	/**
+	 * <p>Closes a stream opened by this manager. Its subscribers receive all
+	 * changes buffered so far, and are then completed. A stream closed
+	 * directly is dropped by this manager on its next change or tick.</p>
+	 *
+	 * @param changeStream The stream to close.
+	 */
+	public void closeChangeStream(ComponentChangePublisher changeStream) {
+		if (this.changeStreams.remove(changeStream)) {
+			changeStream.close();
+		}
+	}
+
+	// Hand all collected changes to the subscribers:
+	private void flushChangeStreams() {
+		for (int index = 0; index < this.changeStreams.size(); index++) {
+			ComponentChangePublisher changeStream = this.changeStreams.get(index);
+			if (changeStream.isClosed()) {
+				this.changeStreams.remove(index--);
+			}
+			else {
+				changeStream.flush();
+			}
+		}
+	}
+
+	// Collect a change for all streams with subscribers:
+	private void publishChange(Entity entity, ComponentChangeType type, Component component) {
+		ComponentChangeEvent event = null;
+
+		for (int index = 0; index < this.changeStreams.size(); index++) {
+			ComponentChangePublisher changeStream = this.changeStreams.get(index);
+
+			// Streams can also be closed directly, rather than by this manager:
+			if (changeStream.isClosed()) {
+				this.changeStreams.remove(index--);
+			}
+			else if (changeStream.hasSubscribers()) {
+				if (event == null) {
+					event = new ComponentChangeEvent(entity, type, component, this.getTime());
+				}
+
+				changeStream.publish(event);
+			}
+		}
+	}
+
+	// Publish a change for every component an entity holds:
+	private void publishComponents(Entity entity, ComponentChangeType type) {
+		for (int typeId = 0; typeId < entity.getComponentTypeCapacity(); typeId++) {
+			Component component = entity.getComponentByType(typeId);
+			if (component != null) {
+				this.publishChange(entity, type, component);
+			}
+		}
+	}
+
+	//// Structural Change Listeners ////
+
+	/*
+	 * Structural change listeners are told about every change as it is made,
+	 * in the thread which makes it, which is what a recording of the changes
+	 * of this manager needs to be able to replay them in the same order.
+	 */
+
+	private final List<StructuralChangeListener> structuralChangeListeners;
+
+	/**
+	 * <p>Registers a listener for the structural changes of this manager. The
+	 * listener is first told about the entities, components and queries this
+	 * manager already holds, as if they were added right then.</p>
+	 *
+	 * @param listener Will receive notification of every structural change.
+	 */
+	public void addStructuralChangeListener(StructuralChangeListener listener) {
+		this.structuralChangeListeners.add(listener);
+
+		for (Entity entity : this.entities) {
+			listener.onEntityAdded(entity);
+			this.reportComponents(listener, entity);
+		}
+
+		for (Map.Entry<UUID, Query> query : this.queries.entrySet()) {
+			listener.onQueryCreated(query.getKey(), query.getValue().signatures);
+		}
+	}
+
+	/**
+	 * <p>Removes a structural change listener from this manager. The listener
+	 * will no longer receive notifications.</p>
+	 *
+	 * @param listener Will no longer receive notification of changes.
+	 */
+	public void removeStructuralChangeListener(StructuralChangeListener listener) {
+		this.structuralChangeListeners.remove(listener);
+	}
+
+	// Tell all structural change listeners about a change:
+	private void notifyStructuralChange(ChangeKind kind, Entity entity, Component component) {
+		for (int index = 0; index < this.structuralChangeListeners.size(); index++) {
+			StructuralChangeListener listener = this.structuralChangeListeners.get(index);
+			switch (kind) {
+				case ENTITY_ADDED:
+					listener.onEntityAdded(entity);
+					this.reportComponents(listener, entity);
+					break;
+
+				case ENTITY_DESTROYED:
+					listener.onEntityDestroyed(entity);
+					break;
+
+				case COMPONENT_ADDED:
+					listener.onComponentAdded(entity, component);
+					break;
+
+				case COMPONENT_REMOVED:
+					listener.onComponentRemoved(entity, component);
+					break;
+			}
+		}
+	}
+
+	// Report the components an entity already holds, as if each was added:
+	private void reportComponents(StructuralChangeListener listener, Entity entity) {
+		for (int typeId = 0; typeId < entity.getComponentTypeCapacity(); typeId++) {
+			Component component = entity.getComponentByType(typeId);
+			if (component != null) {
+				listener.onComponentAdded(entity, component);
+			}
+		}
+	}
+
+	//// Memory ////
+
+	/**
+	 * <p>Estimates the memory held by this manager, broken down by entities,
+	 * component types, cached query results, the rollback journal, change
+	 * streams and prefabs. The estimate is computed from the capacities the
+	 * backing collections retain, so that memory still held after a peak
+	 * shows up, in time proportional to the number of component types,
+	 * queries, prefabs and recorded changes, so it is cheap enough to
+	 * poll.</p>
+	 *
+	 * <p>The component array of every entity is assumed to reach up to the
+	 * highest component type stored in this manager, and entities are
+	 * assumed to have no listeners other than this manager. Not included are
+	 * the objects referred to by components, the observers, listeners and
+	 * subscribers registered with this manager, and change events not yet
+	 * flushed to the buffers of the change streams.</p>
+	 *
+	 * @return The estimated memory usage of this manager.
+	 */
+	public MemoryUsage estimateMemoryUsage() {
+		int entityCount = this.entities.size();
+
+		// Component arrays only grow to the highest type an entity holds:
+		int componentTypeCapacity = 0;
+		for (Class<?> signature : this.storages.keySet()) {
+			componentTypeCapacity = Math.max(componentTypeCapacity, ComponentTypes.peekIdOf(signature) + 1);
+		}
+
+		// Every entity has an identifier, an empty listener list and an array
+		// of its components:
+		long bytesPerEntity = MemoryEstimator.shallowSizeOf(Entity.class)
+			+ MemoryEstimator.shallowSizeOf(UUID.class)
+			+ MemoryEstimator.arrayListSizeOf(0)
+			+ MemoryEstimator.arraySizeOf(Object.class, componentTypeCapacity);
+
+		// The entities are held in the entity set and slots of this manager:
+		long entityBytes = entityCount * bytesPerEntity
+			+ MemoryEstimator.shallowSizeOf(HashSet.class)
+			+ MemoryEstimator.hashMapSizeOf(entityCount, this.peakEntitySetSize)
+			+ MemoryEstimator.arraySizeOf(Object.class, this.slots.length)
+			+ MemoryEstimator.arraySizeOf(int.class, this.freeIndices.length);
+
+		// Components and their storage:
+		Map<Class<?>, Long> componentBytes = new HashMap<Class<?>, Long>();
+		for (Map.Entry<Class<?>, ComponentStorage> entry : this.storages.entrySet()) {
+			ComponentStorage storage = entry.getValue();
+
+			long bytes = storage.size() * MemoryEstimator.shallowSizeOf(entry.getKey())
+				+ MemoryEstimator.shallowSizeOf(storage.getClass())
+				+ MemoryEstimator.arraySizeOf(int.class, storage.sparseCapacity())
+				+ MemoryEstimator.arraySizeOf(int.class, storage.capacity())
+				+ 2 * MemoryEstimator.arraySizeOf(Object.class, storage.capacity());
+
+			componentBytes.put(entry.getKey(), bytes);
+		}
+
+		// Cached results:
+		Map<List<Class<?>>, Long> queryCacheBytes = new HashMap<List<Class<?>>, Long>();
+		for (Query query : this.sharedQueries) {
+			if (query.cached) {
+				queryCacheBytes.put(query.signatures, MemoryEstimator.arrayListSizeOf(query.resultCapacity));
+			}
+		}
+
+		// Query definitions, the maps of this manager, and times to live:
+		long otherBytes = MemoryEstimator.shallowSizeOf(EntityManager.class)
+			+ MemoryEstimator.hashMapSizeOf(this.storages.size())
+			+ MemoryEstimator.hashMapSizeOf(this.queries.size())
+			+ MemoryEstimator.hashMapSizeOf(this.internedQueries.size())
+			+ MemoryEstimator.arrayListSizeOf(this.sharedQueries.size())
+			+ MemoryEstimator.hashMapSizeOf(this.observations.size())
+			+ this.queries.size() * MemoryEstimator.shallowSizeOf(UUID.class)
+			+ MemoryEstimator.hashMapSizeOf(this.entityExpiries.size())
+			+ MemoryEstimator.hashMapSizeOf(this.componentExpiries.size())
+			+ this.expiries.size() * (MemoryEstimator.shallowSizeOf(TimingWheel.Timeout.class) + MemoryEstimator.shallowSizeOf(Expiry.class));
+
+		// Each shared query holds its signatures in a set and a list:
+		for (Query query : this.internedQueries.values()) {
+			otherBytes += MemoryEstimator.shallowSizeOf(Query.class)
+				+ MemoryEstimator.hashMapSizeOf(query.signatures.size())
+				+ MemoryEstimator.arrayListSizeOf(query.signatures.size());
+		}
+
+		// The journal, with the saved copies of edited components:
+		long journalBytes = MemoryEstimator.arrayListSizeOf(this.peakJournalSize)
+			+ this.journal.size() * MemoryEstimator.shallowSizeOf(Change.class)
+			+ MemoryEstimator.hashMapSizeOf(this.editedComponents.size())
+			+ this.checkpoints.size() * MemoryEstimator.shallowSizeOf(Checkpoint.class);
+
+		for (int position = 0; position < this.journal.size(); position++) {
+			Change change = this.journal.get(position);
+			if (change.kind == ChangeKind.COMPONENT_EDITED) {
+				journalBytes += MemoryEstimator.shallowSizeOf(change.component.getClass());
+			}
+		}
+
+		// The staging array of each change stream, and the ring buffer and
+		// buffered events of each of its subscribers:
+		long changeStreamBytes = 0;
+		for (ComponentChangePublisher changeStream : this.changeStreams) {
+			changeStreamBytes += MemoryEstimator.shallowSizeOf(ComponentChangePublisher.class)
+				+ MemoryEstimator.arraySizeOf(Object.class, changeStream.getMaxBatchSize());
+
+			for (ComponentChangePublisher.SubscriberMetrics metrics : changeStream.getSubscriberMetrics()) {
+				changeStreamBytes += MemoryEstimator.arraySizeOf(Object.class, changeStream.getBufferCapacity())
+					+ metrics.getLag() * MemoryEstimator.shallowSizeOf(ComponentChangeEvent.class);
+			}
+		}
+
+		// Each prefab holds its templates, with their classes and copiers in lists:
+		long prefabBytes = MemoryEstimator.hashMapSizeOf(this.prefabs.size())
+			+ this.prefabs.size() * MemoryEstimator.shallowSizeOf(UUID.class);
+
+		for (Prefab prefab : this.prefabs.values()) {
+			prefabBytes += MemoryEstimator.shallowSizeOf(Prefab.class)
+				+ 3 * MemoryEstimator.arrayListSizeOf(prefab.getComponentCount());
+
+			for (Class<?> signature : prefab.getSignatures()) {
+				prefabBytes += MemoryEstimator.shallowSizeOf(signature);
+			}
+		}
+
+		return new MemoryUsage(entityCount, entityBytes, componentBytes, queryCacheBytes, journalBytes, changeStreamBytes, prefabBytes, otherBytes);
+	}
+
+	//// Views ////
+
+	/*
+	 * Views are typed queries which are not cached; rather, each iteration
+	 * reads the components straight from the storages, so that systems do not
+	 * have to look them up on every entity they process.
+	 */
+
+	/**
+	 * <p>Creates a typed view of all entities holding a component with the
+	 * specified <code>signature</code>.</p>
+	 *
+	 * @param signatureA The class signature of the component.
+	 * @return A view which can iterate the matching entities.
+	 */
+	public <A extends Component> QueryView1<A> createView(Class<A> signatureA) {
+		return new QueryView1<A>(this, signatureA);
+	}
+
+	/**
+	 * <p>Creates a typed view of all entities holding components with both of
+	 * the specified signatures.</p>
+	 *
+	 * @param signatureA The class signature of the first component.
+	 * @param signatureB The class signature of the second component.
+	 * @return A view which can iterate the matching entities.
+	 */
+	public <A extends Component, B extends Component> QueryView2<A, B> createView(Class<A> signatureA, Class<B> signatureB) {
+		return new QueryView2<A, B>(this, signatureA, signatureB);
+	}
+
+	/**
+	 * <p>Creates a typed view of all entities holding components with all
+	 * three of the specified signatures.</p>
+	 *
+	 * @param signatureA The class signature of the first component.
+	 * @param signatureB The class signature of the second component.
+	 * @param signatureC The class signature of the third component.
+	 * @return A view which can iterate the matching entities.
+	 */
+	public <A extends Component, B extends Component, C extends Component> QueryView3<A, B, C> createView(Class<A> signatureA, Class<B> signatureB, Class<C> signatureC) {
+		return new QueryView3<A, B, C>(this, signatureA, signatureB, signatureC);
+	}
+
+	/**
+	 * <p>Creates a typed view of all entities holding components with all
+	 * four of the specified signatures.</p>
+	 *
+	 * @param signatureA The class signature of the first component.
+	 * @param signatureB The class signature of the second component.
+	 * @param signatureC The class signature of the third component.
+	 * @param signatureD The class signature of the fourth component.
+	 * @return A view which can iterate the matching entities.
+	 */
+	public <A extends Component, B extends Component, C extends Component, D extends Component> QueryView4<A, B, C, D> createView(Class<A> signatureA, Class<B> signatureB, Class<C> signatureC, Class<D> signatureD) {
+		return new QueryView4<A, B, C, D>(this, signatureA, signatureB, signatureC, signatureD);
 	}
 
 }
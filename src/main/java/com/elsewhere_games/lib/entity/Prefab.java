@@ -0,0 +1,90 @@
+package com.elsewhere_games.lib.entity;
+
+// Java Containers
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>A template for entities holding a fixed set of components. For each
+ * component, the prefab holds a default component and a copier which creates
+ * the component of every instantiated entity from that default.</p>
+ *
+ * <p>Prefabs are registered with a manager using
+ * {@link EntityManager#registerPrefab(Prefab)}, which takes a copy of the
+ * prefab, so that changing the prefab afterwards does not affect the
+ * registered template.</p>
+ */
+public class Prefab {
+
+	//// Life-Cycle ////
+
+	/**
+	 * <p>Class constructor. Creates a prefab without any components.</p>
+	 */
+	public Prefab() {
+		this.signatures = new ArrayList<Class<?>>();
+		this.templates = new ArrayList<Component>();
+		this.copiers = new ArrayList<ComponentCopier<?>>();
+	}
+
+	// Copy the components of another prefab:
+	Prefab(Prefab prefab) {
+		this.signatures = new ArrayList<Class<?>>(prefab.signatures);
+		this.templates = new ArrayList<Component>(prefab.templates);
+		this.copiers = new ArrayList<ComponentCopier<?>>(prefab.copiers);
+	}
+
+	//// Components ////
+
+	private final List<Class<?>> signatures;
+	private final List<Component> templates;
+	private final List<ComponentCopier<?>> copiers;
+
+	/**
+	 * <p>Adds a component to the entities instantiated from this prefab.</p>
+	 *
+	 * @param template The default component.
+	 * @param copier Creates the component of each instantiated entity from
+	 * the default component.
+	 *
+	 * @return This prefab, so that components can be added in succession.
+	 *
+	 * @throws IllegalArgumentException If this prefab already contains a
+	 * component of the same type.
+	 */
+	public <C extends Component> Prefab addComponent(C template, ComponentCopier<C> copier) {
+		if (this.signatures.contains(template.getClass())) {
+			throw new IllegalArgumentException("This prefab already contains a component of the type specified.");
+		}
+
+		this.signatures.add(template.getClass());
+		this.templates.add(template);
+		this.copiers.add(copier);
+
+		return this;
+	}
+
+	/**
+	 * @return The class signatures of the components of this prefab, in the
+	 * order in which they were added.
+	 */
+	public List<Class<?>> getSignatures() {
+		return Collections.unmodifiableList(this.signatures);
+	}
+
+	/**
+	 * @return The number of components of this prefab.
+	 */
+	public int getComponentCount() {
+		return this.signatures.size();
+	}
+
+	// Create the component at the specified position for a new entity:
+	@SuppressWarnings("unchecked")
+	Component copyComponent(int position) {
+		ComponentCopier<Component> copier = (ComponentCopier<Component>)this.copiers.get(position);
+		return ComponentTypes.copy(copier, this.templates.get(position));
+	}
+
+}
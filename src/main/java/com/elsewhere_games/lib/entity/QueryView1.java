@@ -0,0 +1,70 @@
+package com.elsewhere_games.lib.entity;
+
+// Storage Elsewhere
+import com.elsewhere_games.lib.entity.storage.ComponentStorage;
+
+/**
+ * <p>A typed view of all entities in a manager holding one component, which
+ * hands those components to a visitor straight from the component storages of
+ * the manager, without looking them up on each entity.</p>
+ *
+ * <p>Views are created by the {@link EntityManager#createView} methods and
+ * always reflect the current contents of the manager. The order in which
+ * entities are visited is unspecified.</p>
+ *
+ * <p>While a view is being iterated, no components of the viewed types may be
+ * added or removed and no entities may be destroyed; such changes have to be
+ * deferred until the iteration has completed.</p>
+ */
+public class QueryView1<A extends Component> {
+
+	//// Life-Cycle ////
+
+	/**
+	 * <p>Class constructor. Views can only be created by a manager.</p>
+	 */
+	QueryView1(EntityManager manager, Class<A> signatureA) {
+		this.manager = manager;
+		this.signatureA = signatureA;
+	}
+
+	private final EntityManager manager;
+	private final Class<A> signatureA;
+
+	//// Iteration ////
+
+	/**
+	 * <p>A call-back which receives every entity matched by a view, together
+	 * with its components.</p>
+	 */
+	public interface Visitor<A> {
+
+		/**
+		 * <p>Called once for each entity matched by the view.</p>
+		 *
+		 * @param entity The matched entity.
+		 * @param a The component of type <code>A</code> of the entity.
+		 */
+		public void visit(Entity entity, A a);
+
+	}
+
+	/**
+	 * <p>Calls the <code>visitor</code> once for every entity of the manager
+	 * holding all components of this view.</p>
+	 *
+	 * @param visitor Receives each matched entity and its components.
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(Visitor<A> visitor) {
+		ComponentStorage storageA = this.manager.getStorage(this.signatureA);
+		if (storageA == null) {
+			return;
+		}
+
+		for (int position = 0; position < storageA.size(); position++) {
+			visitor.visit(storageA.getEntity(position), (A)storageA.getComponent(position));
+		}
+	}
+
+}
@@ -0,0 +1,104 @@
+package com.elsewhere_games.lib.entity;
+
+// Storage Elsewhere
+import com.elsewhere_games.lib.entity.storage.ComponentStorage;
+
+/**
+ * <p>A typed view of all entities in a manager holding three components, which
+ * hands those components to a visitor straight from the component storages of
+ * the manager, without looking them up on each entity.</p>
+ *
+ * <p>Views are created by the {@link EntityManager#createView} methods and
+ * always reflect the current contents of the manager. The order in which
+ * entities are visited is unspecified.</p>
+ *
+ * <p>While a view is being iterated, no components of the viewed types may be
+ * added or removed and no entities may be destroyed; such changes have to be
+ * deferred until the iteration has completed.</p>
+ */
+public class QueryView3<A extends Component, B extends Component, C extends Component> {
+
+	//// Life-Cycle ////
+
+	/**
+	 * <p>Class constructor. Views can only be created by a manager.</p>
+	 */
+	QueryView3(EntityManager manager, Class<A> signatureA, Class<B> signatureB, Class<C> signatureC) {
+		this.manager = manager;
+		this.signatureA = signatureA;
+		this.signatureB = signatureB;
+		this.signatureC = signatureC;
+	}
+
+	private final EntityManager manager;
+	private final Class<A> signatureA;
+	private final Class<B> signatureB;
+	private final Class<C> signatureC;
+
+	//// Iteration ////
+
+	/**
+	 * <p>A call-back which receives every entity matched by a view, together
+	 * with its components.</p>
+	 */
+	public interface Visitor<A, B, C> {
+
+		/**
+		 * <p>Called once for each entity matched by the view.</p>
+		 *
+		 * @param entity The matched entity.
+		 * @param a The component of type <code>A</code> of the entity.
+		 * @param b The component of type <code>B</code> of the entity.
+		 * @param c The component of type <code>C</code> of the entity.
+		 */
+		public void visit(Entity entity, A a, B b, C c);
+
+	}
+
+	/**
+	 * <p>Calls the <code>visitor</code> once for every entity of the manager
+	 * holding all components of this view.</p>
+	 *
+	 * @param visitor Receives each matched entity and its components.
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(Visitor<A, B, C> visitor) {
+		ComponentStorage storageA = this.manager.getStorage(this.signatureA);
+		ComponentStorage storageB = this.manager.getStorage(this.signatureB);
+		ComponentStorage storageC = this.manager.getStorage(this.signatureC);
+		if (storageA == null || storageB == null || storageC == null) {
+			return;
+		}
+
+		// Scan the smallest storage, probing the others by slot:
+		ComponentStorage smallest = storageA;
+		if (storageB.size() < smallest.size()) {
+			smallest = storageB;
+		}
+		if (storageC.size() < smallest.size()) {
+			smallest = storageC;
+		}
+
+		for (int position = 0; position < smallest.size(); position++) {
+			Entity entity = smallest.getEntity(position);
+
+			Component a = storageA.get(entity.index);
+			if (a == null) {
+				continue;
+			}
+
+			Component b = storageB.get(entity.index);
+			if (b == null) {
+				continue;
+			}
+
+			Component c = storageC.get(entity.index);
+			if (c == null) {
+				continue;
+			}
+
+			visitor.visit(entity, (A)a, (B)b, (C)c);
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.elsewhere_games.lib.entity.event;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.Component;
+import com.elsewhere_games.lib.entity.Entity;
+
+/**
+ * <p>Records a single change to the component collection of an entity, as
+ * published by a {@link ComponentChangePublisher}. Events are immutable, but
+ * the entity and component they refer to are live objects which may have
+ * changed again by the time the event is received.</p>
+ */
+public final class ComponentChangeEvent {
+
+	/**
+	 * <p>Class constructor.</p>
+	 *
+	 * @param entity The entity whose components changed.
+	 * @param type The type of change that occurred.
+	 * @param component The context of the change.
+	 * @param time The time of the manager at the change, in milliseconds.
+	 */
+	public ComponentChangeEvent(Entity entity, ComponentChangeType type, Component component, long time) {
+		this.entity = entity;
+		this.type = type;
+		this.component = component;
+		this.time = time;
+	}
+
+	private final Entity entity;
+
+	/**
+	 * @return The entity whose components changed.
+	 */
+	public Entity getEntity() {
+		return this.entity;
+	}
+
+	private final ComponentChangeType type;
+
+	/**
+	 * @return The type of change that occurred.
+	 */
+	public ComponentChangeType getType() {
+		return this.type;
+	}
+
+	private final Component component;
+
+	/**
+	 * @return The component which was added or removed.
+	 */
+	public Component getComponent() {
+		return this.component;
+	}
+
+	private final long time;
+
+	/**
+	 * @return The time of the manager at the change, in milliseconds.
+	 */
+	public long getTime() {
+		return this.time;
+	}
+
+	@Override
+	public String toString() {
+		return this.type + " " + this.component.getClass().getSimpleName() + " on " + this.entity + " at " + this.time;
+	}
+
+}
@@ -0,0 +1,601 @@
+package com.elsewhere_games.lib.entity.event;
+
+// Java Containers
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Java Concurrency
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Publishes the component changes of an
+ * {@link com.elsewhere_games.lib.entity.EntityManager} to subscribers which
+ * process them on another thread, so that slow subscribers do not stall the
+ * thread changing the entities.</p>
+ *
+ * <p>Changes are collected on the publishing thread and handed to the
+ * subscribers in batches, once per tick or whenever a full batch has been
+ * collected. Each subscriber has its own bounded ring buffer of events, from
+ * which batches are delivered on the executor of this publisher as the
+ * subscriber requests them. What happens when the buffer of a subscriber is
+ * full is decided by the {@link OverflowPolicy} of this publisher.</p>
+ *
+ * <p>Each item received by a subscriber is a list of at most the maximum batch
+ * size of events, in the order in which the changes occurred.</p>
+ *
+ * <p>The publishing methods, {@link #publish(ComponentChangeEvent)},
+ * {@link #flush()} and {@link #close()}, must only be called from the thread
+ * changing the entities. Subscribing and requesting is safe from any
+ * thread.</p>
+ *
+ * <p>A subscriber which throws from one of its call-backs has its
+ * subscription cancelled, and receives the exception through
+ * <code>onError</code>.</p>
+ */
+public class ComponentChangePublisher implements Flow.Publisher<List<ComponentChangeEvent>> {
+
+	//// Life-Cycle ////
+
+	/**
+	 * <p>Class constructor.</p>
+	 *
+	 * @param bufferCapacity The number of events buffered per subscriber.
+	 * @param maxBatchSize The maximum number of events in a single item.
+	 * @param policy What to do with new events when a buffer is full.
+	 * @param executor Runs the delivery of events to the subscribers. When
+	 * using {@link OverflowPolicy#BLOCK}, this must not run tasks on the
+	 * calling thread.
+	 *
+	 * @throws IllegalArgumentException If the capacity or batch size is not
+	 * positive.
+	 */
+	public ComponentChangePublisher(int bufferCapacity, int maxBatchSize, OverflowPolicy policy, Executor executor) {
+		if (bufferCapacity <= 0 || maxBatchSize <= 0) {
+			throw new IllegalArgumentException("The buffer capacity and batch size must be positive.");
+		}
+
+		this.bufferCapacity = bufferCapacity;
+		this.maxBatchSize = maxBatchSize;
+		this.policy = policy;
+		this.executor = executor;
+
+		this.subscriptions = new CopyOnWriteArrayList<ChangeSubscription>();
+		this.staged = new ComponentChangeEvent[maxBatchSize];
+		this.stagedCount = 0;
+		this.blockTimeout = DEFAULT_BLOCK_TIMEOUT;
+	}
+
+	private final int bufferCapacity;
+	private final int maxBatchSize;
+	private final OverflowPolicy policy;
+	private final Executor executor;
+
+	/**
+	 * @return The number of events buffered per subscriber.
+	 */
+	public int getBufferCapacity() {
+		return this.bufferCapacity;
+	}
+
+	/**
+	 * @return The maximum number of events in a single item.
+	 */
+	public int getMaxBatchSize() {
+		return this.maxBatchSize;
+	}
+
+	/** <p>How long a blocked publisher waits for room by default, in milliseconds.</p> */
+	public static final long DEFAULT_BLOCK_TIMEOUT = 1000;
+
+	private long blockTimeout;
+
+	/**
+	 * <p>Limits how long publishing waits for a subscriber to make room in
+	 * its buffer under {@link OverflowPolicy#BLOCK}. A subscriber which does
+	 * not make room in time fails as under {@link OverflowPolicy#FAIL}, so
+	 * that a subscriber which stopped requesting cannot hang the thread
+	 * changing the entities. Must be called from the publishing thread.</p>
+	 *
+	 * @param timeout The longest wait for room, in milliseconds.
+	 *
+	 * @throws IllegalArgumentException If the timeout is negative.
+	 */
+	public void setBlockTimeout(long timeout) {
+		if (timeout < 0) {
+			throw new IllegalArgumentException("The block timeout cannot be negative.");
+		}
+
+		this.blockTimeout = timeout;
+	}
+
+	/**
+	 * @return The longest wait for room in the buffer of a subscriber, in
+	 * milliseconds.
+	 */
+	public long getBlockTimeout() {
+		return this.blockTimeout;
+	}
+
+	private boolean closed;
+
+	/**
+	 * <p>Flushes all collected events, and completes every subscription once
+	 * its buffer has been delivered. Subscribers arriving afterwards are
+	 * completed immediately.</p>
+	 */
+	public void close() {
+		this.flush();
+
+		synchronized (this) {
+			this.closed = true;
+		}
+
+		for (ChangeSubscription subscription : this.subscriptions) {
+			subscription.complete();
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if this publisher has been closed,
+	 * <code>false</code> otherwise.
+	 */
+	public synchronized boolean isClosed() {
+		return this.closed;
+	}
+
+	//// Subscribers ////
+
+	private final List<ChangeSubscription> subscriptions;
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super List<ComponentChangeEvent>> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("Subscriber cannot be null.");
+		}
+
+		ChangeSubscription subscription = new ChangeSubscription(subscriber);
+
+		synchronized (this) {
+			if (this.closed) {
+				subscription.complete();
+			}
+			else {
+				this.subscriptions.add(subscription);
+			}
+		}
+
+		subscription.signal();
+	}
+
+	/**
+	 * @return <code>true</code> if any subscriber is receiving events from
+	 * this publisher, <code>false</code> otherwise.
+	 */
+	public boolean hasSubscribers() {
+		return !this.subscriptions.isEmpty();
+	}
+
+	/**
+	 * <p>Gets a snapshot of the progress of each current subscriber.</p>
+	 *
+	 * @return The metrics of each subscriber, in order of subscription.
+	 */
+	public List<SubscriberMetrics> getSubscriberMetrics() {
+		List<SubscriberMetrics> metrics = new ArrayList<SubscriberMetrics>();
+		for (ChangeSubscription subscription : this.subscriptions) {
+			metrics.add(subscription.getMetrics());
+		}
+
+		return metrics;
+	}
+
+	//// Publishing ////
+
+	private final ComponentChangeEvent[] staged;
+	private int stagedCount;
+
+	/**
+	 * <p>Collects an event for the subscribers. Events are handed to the
+	 * subscribers once a full batch has been collected, or on the next flush.
+	 * Without any subscribers, the event is discarded.</p>
+	 *
+	 * @param event The event to publish.
+	 *
+	 * @throws IllegalStateException If this publisher has been closed.
+	 */
+	public void publish(ComponentChangeEvent event) {
+		if (this.isClosed()) {
+			throw new IllegalStateException("Cannot publish to a closed publisher.");
+		}
+
+		if (this.subscriptions.isEmpty()) {
+			return;
+		}
+
+		this.staged[this.stagedCount++] = event;
+		if (this.stagedCount == this.maxBatchSize) {
+			this.flush();
+		}
+	}
+
+	/**
+	 * <p>Hands all collected events to the buffers of the subscribers.</p>
+	 */
+	public void flush() {
+		if (this.stagedCount == 0) {
+			return;
+		}
+
+		for (ChangeSubscription subscription : this.subscriptions) {
+			subscription.offer(this.staged, this.stagedCount);
+		}
+
+		for (int index = 0; index < this.stagedCount; index++) {
+			this.staged[index] = null;
+		}
+
+		this.stagedCount = 0;
+	}
+
+	//// Metrics ////
+
+	/**
+	 * <p>A snapshot of the progress of a single subscriber.</p>
+	 */
+	public static final class SubscriberMetrics {
+
+		// Metrics can only be created by a publisher:
+		private SubscriberMetrics(long lag, long published, long delivered, long dropped, long demand) {
+			this.lag = lag;
+			this.published = published;
+			this.delivered = delivered;
+			this.dropped = dropped;
+			this.demand = demand;
+		}
+
+		private final long lag;
+		private final long published;
+		private final long delivered;
+		private final long dropped;
+		private final long demand;
+
+		/**
+		 * @return The number of events buffered, but not yet delivered.
+		 */
+		public long getLag() {
+			return this.lag;
+		}
+
+		/**
+		 * @return The number of events which entered the buffer.
+		 */
+		public long getPublishedCount() {
+			return this.published;
+		}
+
+		/**
+		 * @return The number of events delivered to the subscriber.
+		 */
+		public long getDeliveredCount() {
+			return this.delivered;
+		}
+
+		/**
+		 * @return The number of events discarded because the buffer was full.
+		 */
+		public long getDroppedCount() {
+			return this.dropped;
+		}
+
+		/**
+		 * @return The number of batches requested, but not yet delivered.
+		 */
+		public long getDemand() {
+			return this.demand;
+		}
+
+	}
+
+	//// Subscriptions ////
+
+	/*
+	 * Delivery to a subscriber is done by a drain task on the executor. Any
+	 * change to the state of a subscription signals the task, which keeps
+	 * running until it has seen all signals, so that there is never more than
+	 * one drain task per subscriber and its call-backs are never concurrent.
+	 */
+
+	private class ChangeSubscription implements Flow.Subscription {
+
+		public ChangeSubscription(Flow.Subscriber<? super List<ComponentChangeEvent>> subscriber) {
+			this.subscriber = subscriber;
+			this.buffer = new ComponentChangeEvent[bufferCapacity];
+			this.signals = new AtomicInteger();
+		}
+
+		private final Flow.Subscriber<? super List<ComponentChangeEvent>> subscriber;
+
+		// Guarded by this subscription:
+		private final ComponentChangeEvent[] buffer;
+		private int head;
+		private int count;
+		private long demand;
+		private boolean cancelled;
+		private boolean completing;
+		private boolean done;
+		private Throwable error;
+
+		private long published;
+		private long delivered;
+		private long dropped;
+
+		// Accessed by the drain task only:
+		private final AtomicInteger signals;
+		private boolean started;
+
+		//// Flow ////
+
+		@Override
+		public void request(long n) {
+			synchronized (this) {
+				if (n <= 0) {
+					this.error = new IllegalArgumentException("The number of items requested must be positive.");
+				}
+				else {
+					this.demand = this.demand + n < 0 ? Long.MAX_VALUE : this.demand + n;
+				}
+			}
+
+			this.signal();
+		}
+
+		@Override
+		public void cancel() {
+			synchronized (this) {
+				this.cancelled = true;
+				this.clear();
+				this.notifyAll();
+			}
+
+			subscriptions.remove(this);
+		}
+
+		//// Publishing ////
+
+		// Add events to the buffer, applying the overflow policy:
+		public void offer(ComponentChangeEvent[] events, int eventCount) {
+			synchronized (this) {
+				nextEvent:
+				for (int index = 0; index < eventCount; index++) {
+					while (this.count == this.buffer.length && this.isOpen()) {
+						switch (policy) {
+							case DROP_OLDEST:
+								this.buffer[this.head] = null;
+								this.head = (this.head + 1) % this.buffer.length;
+								this.count--;
+								this.dropped++;
+								break;
+
+							case DROP_NEWEST:
+								this.dropped++;
+								continue nextEvent;
+
+							case BLOCK:
+								if (!this.awaitRoom()) {
+									this.error = new IllegalStateException("The subscriber did not make room within " + blockTimeout + " ms.");
+									this.clear();
+								}
+								break;
+
+							case FAIL:
+								this.error = new IllegalStateException("The buffer of the subscriber overflowed.");
+								this.clear();
+								break;
+						}
+					}
+
+					if (!this.isOpen()) {
+						break;
+					}
+
+					this.buffer[(this.head + this.count) % this.buffer.length] = events[index];
+					this.count++;
+					this.published++;
+				}
+			}
+
+			this.signal();
+		}
+
+		// Wait for the subscriber to make room, for no longer than the block
+		// timeout. Guarded by this subscription:
+		private boolean awaitRoom() {
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockTimeout);
+			this.signal();
+
+			while (this.count == this.buffer.length && this.isOpen()) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					return false;
+				}
+
+				try {
+					TimeUnit.NANOSECONDS.timedWait(this, remaining);
+				}
+
+				catch (InterruptedException interruptedException) {
+					Thread.currentThread().interrupt();
+					this.error = interruptedException;
+				}
+			}
+
+			return true;
+		}
+
+		// Guarded by this subscription:
+		private boolean isOpen() {
+			return !this.cancelled && !this.done && this.error == null;
+		}
+
+		// Deliver the buffer, then complete the subscriber:
+		public void complete() {
+			synchronized (this) {
+				this.completing = true;
+			}
+
+			this.signal();
+		}
+
+		public synchronized SubscriberMetrics getMetrics() {
+			return new SubscriberMetrics(this.count, this.published, this.delivered, this.dropped, this.demand);
+		}
+
+		// Guarded by this subscription:
+		private void clear() {
+			for (int index = 0; index < this.count; index++) {
+				this.buffer[(this.head + index) % this.buffer.length] = null;
+			}
+
+			this.head = 0;
+			this.count = 0;
+		}
+
+		//// Delivery ////
+
+		// Make sure a drain task is running, or will run again:
+		public void signal() {
+			if (this.signals.getAndIncrement() == 0) {
+				executor.execute
+				(
+					new Runnable() {
+
+						@Override
+						public void run() {
+							drain();
+						}
+					}
+				);
+			}
+		}
+
+		private void drain() {
+			int missed = 1;
+
+			while (true) {
+				try {
+					if (!this.started) {
+						this.started = true;
+						this.subscriber.onSubscribe(this);
+					}
+
+					while (this.deliverNext()) {
+						// Keep delivering until there is nothing left to do.
+					}
+				}
+
+				// The signals still have to be counted down, or no drain task would run again:
+				catch (RuntimeException exception) {
+					this.fail(exception);
+				}
+
+				missed = this.signals.addAndGet(-missed);
+				if (missed == 0) {
+					break;
+				}
+			}
+		}
+
+		// Deliver a single batch or terminal signal, if possible:
+		private boolean deliverNext() {
+			List<ComponentChangeEvent> batch = null;
+			Throwable failure = null;
+
+			synchronized (this) {
+				if (this.done) {
+					return false;
+				}
+
+				if (this.cancelled) {
+					this.done = true;
+					return false;
+				}
+
+				if (this.error != null) {
+					failure = this.error;
+					this.done = true;
+				}
+				else if (this.demand > 0 && this.count > 0) {
+					int batchSize = Math.min(this.count, maxBatchSize);
+					batch = new ArrayList<ComponentChangeEvent>(batchSize);
+
+					for (int index = 0; index < batchSize; index++) {
+						batch.add(this.buffer[this.head]);
+						this.buffer[this.head] = null;
+						this.head = (this.head + 1) % this.buffer.length;
+					}
+
+					this.count -= batchSize;
+					this.delivered += batchSize;
+					this.demand--;
+
+					// Wake up a publisher waiting for room:
+					this.notifyAll();
+				}
+				else if (this.completing && this.count == 0) {
+					this.done = true;
+				}
+				else {
+					return false;
+				}
+			}
+
+			if (batch != null) {
+				this.subscriber.onNext(Collections.unmodifiableList(batch));
+				return true;
+			}
+
+			subscriptions.remove(this);
+
+			if (failure != null) {
+				this.subscriber.onError(failure);
+			}
+			else {
+				this.subscriber.onComplete();
+			}
+
+			return false;
+		}
+
+		// Cancel the subscription of a subscriber which threw, and tell it why:
+		private void fail(RuntimeException exception) {
+			boolean terminated;
+			synchronized (this) {
+				terminated = this.done;
+				this.cancelled = true;
+				this.done = true;
+				this.clear();
+				this.notifyAll();
+			}
+
+			subscriptions.remove(this);
+
+			// A subscriber which threw from a terminal signal is not signalled again:
+			if (!terminated) {
+				try {
+					this.subscriber.onError(exception);
+				}
+
+				catch (RuntimeException ignored) {
+					// There is nothing left to tell the subscriber.
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,34 @@
+package com.elsewhere_games.lib.entity.event;
+
+/**
+ * <p>Describes what a {@link ComponentChangePublisher} does with a new event
+ * when the buffer of a subscriber is full.</p>
+ */
+public enum OverflowPolicy {
+
+	/**
+	 * <p>Indicates the oldest buffered event is discarded to make room.</p>
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * <p>Indicates the new event is discarded.</p>
+	 */
+	DROP_NEWEST,
+
+	/**
+	 * <p>Indicates the publishing thread waits until the subscriber has made
+	 * room. This stalls the thread changing the entities, and should only be
+	 * used for subscribers which must not miss any event. A subscriber which
+	 * does not make room within the block timeout of the publisher fails as
+	 * under {@link #FAIL}.</p>
+	 */
+	BLOCK,
+
+	/**
+	 * <p>Indicates the subscription is cancelled, and the subscriber receives
+	 * an error.</p>
+	 */
+	FAIL
+
+}
@@ -0,0 +1,38 @@
+package com.elsewhere_games.lib.entity.event;
+
+// Java Containers
+import java.util.List;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.Entity;
+
+/**
+ * <p>A call-back interface for objects who want to be notified when entities
+ * start or stop matching a query of an
+ * {@link com.elsewhere_games.lib.entity.EntityManager}, provided an instance
+ * of this observer is registered with the manager for that query.</p>
+ *
+ * <p>Notifications are collected as the entities change, and delivered in one
+ * batch per tick of the manager. An entity which leaves and re-enters the
+ * query within a single tick, or the other way around, is not reported.</p>
+ */
+public interface QueryObserver {
+
+	/**
+	 * <p>Called with the entities which started matching the query since the
+	 * last batch of notifications. Never called with an empty list.</p>
+	 *
+	 * @param entities The entities which now match the query.
+	 */
+	public void onEnter(List<Entity> entities);
+
+	/**
+	 * <p>Called with the entities which stopped matching the query since the
+	 * last batch of notifications, including those which were destroyed.
+	 * Never called with an empty list. Exits are delivered before enters.</p>
+	 *
+	 * @param entities The entities which no longer match the query.
+	 */
+	public void onExit(List<Entity> entities);
+
+}
@@ -0,0 +1,98 @@
+package com.elsewhere_games.lib.entity.event;
+
+// Java Containers
+import java.util.List;
+
+// Java Utilities
+import java.util.UUID;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.Component;
+import com.elsewhere_games.lib.entity.Entity;
+
+/**
+ * <p>A call-back interface for objects who want to follow every structural
+ * change of an {@link com.elsewhere_games.lib.entity.EntityManager}, provided
+ * an instance of this listener is registered with the manager. Structural
+ * changes are those which change which entities a query matches, as well as
+ * the queries themselves and the ticks of the manager.</p>
+ *
+ * <p>Listeners are notified synchronously, in the order in which the changes
+ * are made, including the changes made when expiring entities and components
+ * or when rolling back to a checkpoint.</p>
+ */
+public interface StructuralChangeListener {
+
+	/**
+	 * <p>Called when an entity is added to the manager. The components the
+	 * entity already holds are reported right after, one at a time.</p>
+	 *
+	 * @param entity The entity which was added.
+	 */
+	public void onEntityAdded(Entity entity);
+
+	/**
+	 * <p>Called when an entity is destroyed, together with all of its
+	 * components, which are not reported separately.</p>
+	 *
+	 * @param entity The entity which is destroyed.
+	 */
+	public void onEntityDestroyed(Entity entity);
+
+	/**
+	 * <p>Called when a component is added to a managed entity.</p>
+	 *
+	 * @param entity The entity the component was added to.
+	 * @param component The component which was added.
+	 */
+	public void onComponentAdded(Entity entity, Component component);
+
+	/**
+	 * <p>Called when a component is removed from a managed entity.</p>
+	 *
+	 * @param entity The entity the component was removed from.
+	 * @param component The component which was removed.
+	 */
+	public void onComponentRemoved(Entity entity, Component component);
+
+	/**
+	 * <p>Called when a query is created.</p>
+	 *
+	 * @param queryId The identifier of the new query.
+	 * @param signatures The signatures the query matches, without duplicates.
+	 */
+	public void onQueryCreated(UUID queryId, List<Class<?>> signatures);
+
+	/**
+	 * <p>Called when the signatures of a query are replaced.</p>
+	 *
+	 * @param queryId The identifier of the updated query.
+	 * @param signatures The new signatures, without duplicates.
+	 */
+	public void onQueryUpdated(UUID queryId, List<Class<?>> signatures);
+
+	/**
+	 * <p>Called when a query is disposed.</p>
+	 *
+	 * @param queryId The identifier of the disposed query.
+	 */
+	public void onQueryDisposed(UUID queryId);
+
+	/**
+	 * <p>Called whenever a query is executed, whether or not its result was
+	 * cached.</p>
+	 *
+	 * @param queryId The identifier of the executed query.
+	 */
+	public void onQueryExecuted(UUID queryId);
+
+	/**
+	 * <p>Called on every tick of the manager, after the entities and
+	 * components whose time to live ran out have expired, and before query
+	 * observers and change streams are notified.</p>
+	 *
+	 * @param elapsed The time elapsed since the previous tick, in milliseconds.
+	 */
+	public void onTick(long elapsed);
+
+}
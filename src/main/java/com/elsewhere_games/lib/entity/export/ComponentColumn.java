@@ -0,0 +1,21 @@
+package com.elsewhere_games.lib.entity.export;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.Component;
+
+/**
+ * <p>Reads a primitive value out of a component, to be published as a column
+ * by a {@link WorldExporter}.</p>
+ */
+public interface ComponentColumn<C extends Component> {
+
+	/**
+	 * <p>Called once per export for every exported entity holding the
+	 * component, on the thread doing the export.</p>
+	 *
+	 * @param component The component to read the value of.
+	 * @return The value to publish.
+	 */
+	public double read(C component);
+
+}
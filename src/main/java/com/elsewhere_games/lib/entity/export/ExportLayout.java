@@ -0,0 +1,101 @@
+package com.elsewhere_games.lib.entity.export;
+
+// Java Utilities
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>The layout of an exported world, shared by the exporter and the reader.
+ * An export consists of a header, a table of component type names, a table
+ * of columns, and one fixed-size record per entity.</p>
+ *
+ * <p>The sequence number in the header is odd while the exporter is writing,
+ * and is incremented again once the export is complete, so that a reader can
+ * tell whether what it read was written in between.</p>
+ */
+final class ExportLayout {
+
+	private ExportLayout() {
+	}
+
+	//// Header ////
+
+	static final int MAGIC = 0x45435357;
+	static final int FORMAT_VERSION = 1;
+
+	static final int MAGIC_OFFSET = 0;
+	static final int FORMAT_VERSION_OFFSET = 4;
+	static final int SEQUENCE_OFFSET = 8;
+	static final int TIME_OFFSET = 16;
+	static final int ENTITY_COUNT_OFFSET = 24;
+	static final int TOTAL_ENTITY_COUNT_OFFSET = 28;
+	static final int TYPE_COUNT_OFFSET = 32;
+	static final int COLUMN_COUNT_OFFSET = 36;
+	static final int CAPACITY_OFFSET = 40;
+	static final int HEADER_SIZE = 64;
+
+	//// Tables ////
+
+	/** <p>The most component types which can be exported, one bit each.</p> */
+	static final int MAX_TYPES = 64;
+
+	/** <p>The most columns which can be exported.</p> */
+	static final int MAX_COLUMNS = 32;
+
+	static final int NAME_SIZE = 128;
+	static final int TYPES_OFFSET = HEADER_SIZE;
+	static final int COLUMN_ENTRY_SIZE = NAME_SIZE + 8;	// Name and exported type.
+	static final int COLUMNS_OFFSET = TYPES_OFFSET + MAX_TYPES * NAME_SIZE;
+
+	//// Records ////
+
+	/** <p>An identifier, a component mask and the value of every column.</p> */
+	static final int RECORD_SIZE = 3 * 8 + MAX_COLUMNS * 8;
+	static final int RECORDS_OFFSET = COLUMNS_OFFSET + MAX_COLUMNS * COLUMN_ENTRY_SIZE;
+
+	/** <p>The most entities a file can hold, as a buffer cannot be mapped beyond 2 GB.</p> */
+	static final int MAX_CAPACITY = (Integer.MAX_VALUE - RECORDS_OFFSET) / RECORD_SIZE;
+
+	static long fileSize(int capacity) {
+		return RECORDS_OFFSET + (long)capacity * RECORD_SIZE;
+	}
+
+	// Only ever called up to the capacity, so the offset fits the file:
+	static int recordOffset(int entity) {
+		return Math.toIntExact(RECORDS_OFFSET + (long)entity * RECORD_SIZE);
+	}
+
+	//// Sequence ////
+
+	// Gives the sequence number the memory ordering the seqlock relies on:
+	static final VarHandle SEQUENCE = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+	//// Names ////
+
+	// Write a name as a length followed by its UTF-8 bytes, truncated to fit:
+	static void putName(ByteBuffer buffer, int offset, String name) {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		int length = Math.min(bytes.length, NAME_SIZE - 2);
+
+		buffer.putShort(offset, (short)length);
+		for (int position = 0; position < length; position++) {
+			buffer.put(offset + 2 + position, bytes[position]);
+		}
+	}
+
+	// Read a name written by putName:
+	static String getName(ByteBuffer buffer, int offset) {
+		int length = Math.min(Math.max(buffer.getShort(offset), 0), NAME_SIZE - 2);
+
+		byte[] bytes = new byte[length];
+		for (int position = 0; position < length; position++) {
+			bytes[position] = buffer.get(offset + 2 + position);
+		}
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,229 @@
+package com.elsewhere_games.lib.entity.export;
+
+// Java Containers
+import java.util.ArrayList;
+import java.util.List;
+
+// Java Utilities
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.Component;
+import com.elsewhere_games.lib.entity.Entity;
+import com.elsewhere_games.lib.entity.EntityManager;
+
+/**
+ * <p>Publishes the entities of a manager into a memory-mapped file, so that
+ * tools in another process on the same machine can inspect the world using a
+ * {@link WorldReader}, without calling into the manager or coordinating with
+ * the thread simulating it.</p>
+ *
+ * <p>Each export writes the identifier of every entity, a mask of which of
+ * the exported component types it holds, and the values of the exported
+ * columns. Exports are meant to be made once per tick, on the thread ticking
+ * the manager, after the tick has completed. The file has room for a fixed
+ * number of entities; entities beyond that are left out of the export.</p>
+ */
+public class WorldExporter {
+
+	//// Life-Cycle ////
+
+	/**
+	 * <p>Class constructor. Creates, or overwrites, the export file.</p>
+	 *
+	 * @param manager The manager to export.
+	 * @param file The file to export to.
+	 * @param capacity The most entities the file can hold.
+	 *
+	 * @throws IOException If the file could not be created or mapped.
+	 * @throws IllegalArgumentException If the capacity is negative, or the
+	 * file would be larger than can be mapped.
+	 */
+	public WorldExporter(EntityManager manager, Path file, int capacity) throws IOException {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("The capacity cannot be negative.");
+		}
+
+		if (ExportLayout.fileSize(capacity) > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("The export file cannot be larger than " + Integer.MAX_VALUE + " bytes, which limits the capacity to " + ExportLayout.MAX_CAPACITY + " entities.");
+		}
+
+		this.manager = manager;
+		this.capacity = capacity;
+
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, ExportLayout.fileSize(capacity));
+		this.buffer.order(ByteOrder.nativeOrder());
+
+		this.types = new ArrayList<Class<? extends Component>>();
+		this.columns = new ArrayList<Column<?>>();
+
+		this.buffer.putInt(ExportLayout.MAGIC_OFFSET, ExportLayout.MAGIC);
+		this.buffer.putInt(ExportLayout.FORMAT_VERSION_OFFSET, ExportLayout.FORMAT_VERSION);
+		this.buffer.putInt(ExportLayout.CAPACITY_OFFSET, capacity);
+	}
+
+	private final EntityManager manager;
+	private final int capacity;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+
+	/**
+	 * <p>Stops exporting, and releases the export file. The file keeps its
+	 * last export.</p>
+	 *
+	 * @throws IOException If the file could not be closed.
+	 */
+	public void close() throws IOException {
+		this.buffer.force();
+		this.channel.close();
+	}
+
+	//// Contents ////
+
+	private final List<Class<? extends Component>> types;
+	private final List<Column<?>> columns;
+	private boolean tablesChanged;			// Types or columns were added since the last export.
+
+	/**
+	 * <p>Includes the component type with the specified <code>signature</code>
+	 * in the component mask of each exported entity. The type is identified by
+	 * its class name. Has no effect if the type was already exported.</p>
+	 *
+	 * @param signature The class signature of the component type to export.
+	 *
+	 * @throws IllegalArgumentException If the most types are already exported.
+	 */
+	public void exportComponentType(Class<? extends Component> signature) {
+		if (this.types.contains(signature)) {
+			return;
+		}
+
+		if (this.types.size() == ExportLayout.MAX_TYPES) {
+			throw new IllegalArgumentException("No more than " + ExportLayout.MAX_TYPES + " component types can be exported.");
+		}
+
+		this.types.add(signature);
+		this.tablesChanged = true;
+	}
+
+	/**
+	 * <p>Exports a value read from the component with the specified
+	 * <code>signature</code> of each entity, under the specified name.
+	 * Entities without the component export <code>NaN</code> in the column.
+	 * The component type is exported as well.</p>
+	 *
+	 * @param signature The class signature of the component to read.
+	 * @param name The name of the column.
+	 * @param column Reads the value from the component.
+	 *
+	 * @throws IllegalArgumentException If the most columns are already
+	 * exported.
+	 */
+	public <C extends Component> void exportColumn(Class<C> signature, String name, ComponentColumn<C> column) {
+		if (this.columns.size() == ExportLayout.MAX_COLUMNS) {
+			throw new IllegalArgumentException("No more than " + ExportLayout.MAX_COLUMNS + " columns can be exported.");
+		}
+
+		this.exportComponentType(signature);
+		this.columns.add(new Column<C>(signature, name, column));
+		this.tablesChanged = true;
+	}
+
+	// A column and the component it reads from:
+	private static class Column<C extends Component> {
+
+		public Column(Class<C> signature, String name, ComponentColumn<C> reader) {
+			this.signature = signature;
+			this.name = name;
+			this.reader = reader;
+		}
+
+		private final Class<C> signature;
+		private final String name;
+		private final ComponentColumn<C> reader;
+
+		public double read(Entity entity) {
+			C component = entity.getComponent(this.signature);
+			return component != null ? this.reader.read(component) : Double.NaN;
+		}
+
+	}
+
+	//// Export ////
+
+	private long sequence;
+
+	/**
+	 * <p>Writes the current state of the manager to the export file.</p>
+	 */
+	public void export() {
+		// An odd sequence number tells readers an export is in progress:
+		ExportLayout.SEQUENCE.setOpaque(this.buffer, ExportLayout.SEQUENCE_OFFSET, ++this.sequence);
+		VarHandle.storeStoreFence();
+
+		if (this.tablesChanged) {
+			this.writeTables();
+			this.tablesChanged = false;
+		}
+
+		// Read the slots rather than a query, which would notify listeners and refresh the query cache:
+		int entityCount = 0;
+		int slotCount = this.manager.getSlotCount();
+
+		for (int slot = 0; slot < slotCount && entityCount < this.capacity; slot++) {
+			Entity entity = this.manager.getEntityInSlot(slot);
+			if (entity != null) {
+				this.writeRecord(ExportLayout.recordOffset(entityCount++), entity);
+			}
+		}
+
+		this.buffer.putLong(ExportLayout.TIME_OFFSET, this.manager.getTime());
+		this.buffer.putInt(ExportLayout.ENTITY_COUNT_OFFSET, entityCount);
+		this.buffer.putInt(ExportLayout.TOTAL_ENTITY_COUNT_OFFSET, this.manager.getEntityCount());
+
+		ExportLayout.SEQUENCE.setRelease(this.buffer, ExportLayout.SEQUENCE_OFFSET, ++this.sequence);
+	}
+
+	// Write the names of the exported types and columns, which only change as they are added:
+	private void writeTables() {
+		for (int type = 0; type < this.types.size(); type++) {
+			ExportLayout.putName(this.buffer, ExportLayout.TYPES_OFFSET + type * ExportLayout.NAME_SIZE, this.types.get(type).getName());
+		}
+
+		for (int column = 0; column < this.columns.size(); column++) {
+			int offset = ExportLayout.COLUMNS_OFFSET + column * ExportLayout.COLUMN_ENTRY_SIZE;
+			ExportLayout.putName(this.buffer, offset, this.columns.get(column).name);
+			this.buffer.putInt(offset + ExportLayout.NAME_SIZE, this.types.indexOf(this.columns.get(column).signature));
+		}
+
+		this.buffer.putInt(ExportLayout.TYPE_COUNT_OFFSET, this.types.size());
+		this.buffer.putInt(ExportLayout.COLUMN_COUNT_OFFSET, this.columns.size());
+	}
+
+	// Write the identifier, component mask and columns of an entity:
+	private void writeRecord(int offset, Entity entity) {
+		long mask = 0;
+		for (int type = 0; type < this.types.size(); type++) {
+			if (entity.hasComponent(this.types.get(type))) {
+				mask |= 1L << type;
+			}
+		}
+
+		this.buffer.putLong(offset, entity.getId().getMostSignificantBits());
+		this.buffer.putLong(offset + 8, entity.getId().getLeastSignificantBits());
+		this.buffer.putLong(offset + 16, mask);
+
+		for (int column = 0; column < this.columns.size(); column++) {
+			this.buffer.putDouble(offset + 24 + column * 8, this.columns.get(column).read(entity));
+		}
+	}
+
+}
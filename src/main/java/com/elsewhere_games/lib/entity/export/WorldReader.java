@@ -0,0 +1,139 @@
+package com.elsewhere_games.lib.entity.export;
+
+// Java Utilities
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * <p>Reads a world exported by a {@link WorldExporter}, typically from another
+ * process. Reading never blocks the exporter: a snapshot is copied out of the
+ * file, and copied again if an export happened in the meantime.</p>
+ *
+ * <p>Readers are not thread-safe, but any number of readers can read the same
+ * file.</p>
+ */
+public class WorldReader {
+
+	//// Life-Cycle ////
+
+	/**
+	 * <p>Class constructor. Opens a file written by an exporter.</p>
+	 *
+	 * @param file The export file.
+	 *
+	 * @throws IOException If the file could not be opened or mapped.
+	 * @throws IllegalArgumentException If the file is not an export.
+	 */
+	public WorldReader(Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.channel.size());
+		this.buffer.order(ByteOrder.nativeOrder());
+
+		if (this.buffer.capacity() < ExportLayout.RECORDS_OFFSET
+				|| this.buffer.getInt(ExportLayout.MAGIC_OFFSET) != ExportLayout.MAGIC
+				|| this.buffer.getInt(ExportLayout.FORMAT_VERSION_OFFSET) != ExportLayout.FORMAT_VERSION) {
+			this.channel.close();
+			throw new IllegalArgumentException("The specified file is not a world export.");
+		}
+
+		// Never trust the header beyond the records the file actually holds:
+		int fileCapacity = (this.buffer.capacity() - ExportLayout.RECORDS_OFFSET) / ExportLayout.RECORD_SIZE;
+		this.capacity = Math.max(0, Math.min(this.buffer.getInt(ExportLayout.CAPACITY_OFFSET), fileCapacity));
+	}
+
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final int capacity;
+
+	/**
+	 * <p>Releases the export file.</p>
+	 *
+	 * @throws IOException If the file could not be closed.
+	 */
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	//// Reading ////
+
+	private static final int MAX_ATTEMPTS = 1000000;
+
+	/**
+	 * @return The sequence number of the latest complete export, which grows
+	 * with every export, or an odd number while an export is in progress.
+	 */
+	public long getSequence() {
+		return (long)ExportLayout.SEQUENCE.getAcquire(this.buffer, ExportLayout.SEQUENCE_OFFSET);
+	}
+
+	/**
+	 * <p>Reads the latest complete export.</p>
+	 *
+	 * @return A consistent snapshot of the exported world.
+	 *
+	 * @throws IllegalStateException If no complete export could be read,
+	 * for instance because the exporting process stopped during an export.
+	 */
+	public WorldSnapshot read() {
+		for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+			long before = this.getSequence();
+			if ((before & 1) != 0) {
+				Thread.onSpinWait();
+				continue;
+			}
+
+			// Copy first, and only make sense of the copy once it is known to be whole:
+			int entityCount = Math.max(0, Math.min(this.buffer.getInt(ExportLayout.ENTITY_COUNT_OFFSET), this.capacity));
+			byte[] copy = new byte[ExportLayout.recordOffset(entityCount)];
+			ByteBuffer source = this.buffer.duplicate();
+			source.position(0);
+			source.get(copy);
+
+			VarHandle.loadLoadFence();
+			if (this.getSequence() == before) {
+				return parse(ByteBuffer.wrap(copy).order(ByteOrder.nativeOrder()), before, entityCount);
+			}
+		}
+
+		throw new IllegalStateException("No complete export could be read.");
+	}
+
+	// Turn a consistent copy of the file into a snapshot:
+	private static WorldSnapshot parse(ByteBuffer copy, long sequence, int entityCount) {
+		int typeCount = Math.max(0, Math.min(copy.getInt(ExportLayout.TYPE_COUNT_OFFSET), ExportLayout.MAX_TYPES));
+		String[] types = new String[typeCount];
+		for (int type = 0; type < typeCount; type++) {
+			types[type] = ExportLayout.getName(copy, ExportLayout.TYPES_OFFSET + type * ExportLayout.NAME_SIZE);
+		}
+
+		int columnCount = Math.max(0, Math.min(copy.getInt(ExportLayout.COLUMN_COUNT_OFFSET), ExportLayout.MAX_COLUMNS));
+		String[] columns = new String[columnCount];
+		for (int column = 0; column < columnCount; column++) {
+			columns[column] = ExportLayout.getName(copy, ExportLayout.COLUMNS_OFFSET + column * ExportLayout.COLUMN_ENTRY_SIZE);
+		}
+
+		UUID[] ids = new UUID[entityCount];
+		long[] masks = new long[entityCount];
+		double[][] values = new double[columnCount][entityCount];
+
+		for (int entity = 0; entity < entityCount; entity++) {
+			int offset = ExportLayout.recordOffset(entity);
+			ids[entity] = new UUID(copy.getLong(offset), copy.getLong(offset + 8));
+			masks[entity] = copy.getLong(offset + 16);
+
+			for (int column = 0; column < columnCount; column++) {
+				values[column][entity] = copy.getDouble(offset + 24 + column * 8);
+			}
+		}
+
+		return new WorldSnapshot(sequence, copy.getLong(ExportLayout.TIME_OFFSET), copy.getInt(ExportLayout.TOTAL_ENTITY_COUNT_OFFSET), types, columns, ids, masks, values);
+	}
+
+}
@@ -0,0 +1,146 @@
+package com.elsewhere_games.lib.entity.export;
+
+// Java Containers
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Java Utilities
+import java.util.UUID;
+
+/**
+ * <p>A consistent copy of a single export, read by a {@link WorldReader}.
+ * Entities are referred to by their position in the snapshot, from zero up to
+ * the number of entities.</p>
+ */
+public final class WorldSnapshot {
+
+	/**
+	 * <p>Class constructor. Snapshots can only be created by a reader.</p>
+	 */
+	WorldSnapshot(long sequence, long time, int totalEntityCount, String[] types, String[] columns, UUID[] ids, long[] masks, double[][] values) {
+		this.sequence = sequence;
+		this.time = time;
+		this.totalEntityCount = totalEntityCount;
+		this.types = types;
+		this.columns = columns;
+		this.ids = ids;
+		this.masks = masks;
+		this.values = values;
+	}
+
+	//// Export ////
+
+	private final long sequence;
+	private final long time;
+
+	/**
+	 * @return The sequence number of the export, which grows with every
+	 * export.
+	 */
+	public long getSequence() {
+		return this.sequence;
+	}
+
+	/**
+	 * @return The time of the clock of the exported manager, in milliseconds.
+	 */
+	public long getTime() {
+		return this.time;
+	}
+
+	//// Entities ////
+
+	private final int totalEntityCount;
+	private final UUID[] ids;
+	private final long[] masks;
+
+	/**
+	 * @return The number of entities in this snapshot.
+	 */
+	public int getEntityCount() {
+		return this.ids.length;
+	}
+
+	/**
+	 * @return The number of entities in the exported manager, which is
+	 * larger than the number of entities in this snapshot if the export file
+	 * could not hold all of them.
+	 */
+	public int getTotalEntityCount() {
+		return this.totalEntityCount;
+	}
+
+	/**
+	 * @param entity The position of the entity in this snapshot.
+	 * @return The identifier of the entity.
+	 */
+	public UUID getEntityId(int entity) {
+		return this.ids[entity];
+	}
+
+	/**
+	 * <p>Gets the component mask of an entity, in which each bit tells whether
+	 * the entity holds the component type at the same position in the list of
+	 * component types.</p>
+	 *
+	 * @param entity The position of the entity in this snapshot.
+	 * @return The component mask of the entity.
+	 */
+	public long getComponentMask(int entity) {
+		return this.masks[entity];
+	}
+
+	/**
+	 * @param entity The position of the entity in this snapshot.
+	 * @param typeName The class name of the component type.
+	 *
+	 * @return <code>true</code> if the entity holds a component of the type,
+	 * <code>false</code> if it does not or the type was not exported.
+	 */
+	public boolean hasComponent(int entity, String typeName) {
+		int type = Arrays.asList(this.types).indexOf(typeName);
+		return type != -1 && (this.masks[entity] & (1L << type)) != 0;
+	}
+
+	//// Components ////
+
+	private final String[] types;
+	private final String[] columns;
+	private final double[][] values;
+
+	/**
+	 * @return The class names of the exported component types, in the order
+	 * of the bits of the component masks.
+	 */
+	public List<String> getComponentTypes() {
+		return Collections.unmodifiableList(Arrays.asList(this.types));
+	}
+
+	/**
+	 * @return The names of the exported columns.
+	 */
+	public List<String> getColumns() {
+		return Collections.unmodifiableList(Arrays.asList(this.columns));
+	}
+
+	/**
+	 * @param entity The position of the entity in this snapshot.
+	 * @param column The name of the column.
+	 *
+	 * @return The value of the column for the entity, or <code>NaN</code> if
+	 * the entity does not hold the component the column is read from.
+	 *
+	 * @throws IllegalArgumentException If no column with the name was
+	 * exported.
+	 */
+	public double getValue(int entity, String column) {
+		int position = Arrays.asList(this.columns).indexOf(column);
+		if (position == -1) {
+			throw new IllegalArgumentException("No column with the specified name was exported.");
+		}
+
+		return this.values[position][entity];
+	}
+
+}
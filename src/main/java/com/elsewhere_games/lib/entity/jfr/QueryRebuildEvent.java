@@ -0,0 +1,55 @@
+package com.elsewhere_games.lib.entity.jfr;
+
+// Flight Recorder
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * <p>A flight recorder event spanning the rebuild of the cached result of a
+ * query, which happens when a query is executed after a change invalidated
+ * its result. A burst of these events points at an invalidation storm.</p>
+ */
+@Name("com.elsewhere_games.entity.QueryRebuild")
+@Label("Query Rebuild")
+@Description("The result of a query being rebuilt from the component storages")
+@Category({"Elsewhere Games", "Entities"})
+@Enabled(false)
+@StackTrace(false)
+public class QueryRebuildEvent extends Event {
+
+	@Label("Signatures")
+	private String signatures;
+
+	@Label("Entities Scanned")
+	private int scanned;
+
+	@Label("Results")
+	private int results;
+
+	/**
+	 * @param signatures The class signatures of the query.
+	 */
+	public void setSignatures(String signatures) {
+		this.signatures = signatures;
+	}
+
+	/**
+	 * @param scanned The number of entities checked against the query.
+	 */
+	public void setScanned(int scanned) {
+		this.scanned = scanned;
+	}
+
+	/**
+	 * @param results The number of entities matching the query.
+	 */
+	public void setResults(int results) {
+		this.results = results;
+	}
+
+}
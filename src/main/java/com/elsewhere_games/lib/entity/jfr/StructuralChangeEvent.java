@@ -0,0 +1,56 @@
+package com.elsewhere_games.lib.entity.jfr;
+
+// Flight Recorder
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * <p>A flight recorder event spanning a batch of structural changes made to a
+ * manager at once, such as instantiating a prefab many times, rolling back to
+ * a checkpoint, or moving entities during a compaction.</p>
+ */
+@Name("com.elsewhere_games.entity.StructuralChange")
+@Label("Structural Change")
+@Description("A batch of entities and components added, removed or moved at once")
+@Category({"Elsewhere Games", "Entities"})
+@Enabled(false)
+@StackTrace(false)
+public class StructuralChangeEvent extends Event {
+
+	@Label("Operation")
+	private String operation;
+
+	@Label("Entities")
+	private int entities;
+
+	@Label("Changes")
+	private int changes;
+
+	/**
+	 * @param operation The name of the operation making the changes.
+	 */
+	public void setOperation(String operation) {
+		this.operation = operation;
+	}
+
+	/**
+	 * @param entities The number of entities affected.
+	 */
+	public void setEntities(int entities) {
+		this.entities = entities;
+	}
+
+	/**
+	 * @param changes The number of components added, removed, restored or
+	 * moved.
+	 */
+	public void setChanges(int changes) {
+		this.changes = changes;
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.elsewhere_games.lib.entity.jfr;
+
+// Flight Recorder
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * <p>A flight recorder event spanning a single update of a
+ * {@link com.elsewhere_games.lib.entity.system.AbstractCyclicalSystem}.</p>
+ *
+ * <p>Like all events of this library, it is disabled by default, and has to
+ * be enabled in the recording settings, for instance with
+ * <code>com.elsewhere_games.entity.SystemUpdate#enabled=true</code>.</p>
+ */
+@Name("com.elsewhere_games.entity.SystemUpdate")
+@Label("System Update")
+@Description("A single update of a cyclical system")
+@Category({"Elsewhere Games", "Entities"})
+@Enabled(false)
+@StackTrace(false)
+public class SystemUpdateEvent extends Event {
+
+	@Label("System")
+	private String system;
+
+	@Label("Delta")
+	@Timespan(Timespan.MILLISECONDS)
+	private long delta;
+
+	/**
+	 * @param system The class name of the updated system.
+	 */
+	public void setSystem(String system) {
+		this.system = system;
+	}
+
+	/**
+	 * @param delta The time passed to the update, in milliseconds.
+	 */
+	public void setDelta(long delta) {
+		this.delta = delta;
+	}
+
+}
@@ -0,0 +1,225 @@
+package com.elsewhere_games.lib.entity.load;
+
+// Java Utilities
+import java.util.Arrays;
+
+/**
+ * <p>Describes the workload simulated by a {@link LoadSimulation}: how many
+ * entities there are and which components they hold, how quickly they are
+ * replaced, and how many systems and queries run against them. Two runs of
+ * the same profile perform exactly the same work.</p>
+ */
+public class LoadProfile {
+
+	//// Life-Cycle ////
+
+	/**
+	 * <p>Class constructor. Creates a profile of a modest workload, which can
+	 * be adjusted with the setters of this class.</p>
+	 */
+	public LoadProfile() {
+		this.entityCount = 10000;
+		this.componentMix = new double[] { 1.0, 0.75, 0.5, 0.25 };
+		this.churnRate = 0.01;
+		this.queryCount = 4;
+		this.systemCount = 4;
+		this.tickDuration = 16;
+		this.duration = 60000;
+		this.warmupDuration = 5000;
+		this.seed = 1;
+	}
+
+	//// Entities ////
+
+	private int entityCount;
+	private double[] componentMix;
+	private double churnRate;
+
+	/**
+	 * @return The number of entities kept alive during the simulation.
+	 */
+	public int getEntityCount() {
+		return this.entityCount;
+	}
+
+	/**
+	 * @param entityCount The number of entities kept alive during the
+	 * simulation.
+	 */
+	public void setEntityCount(int entityCount) {
+		if (entityCount < 0) {
+			throw new IllegalArgumentException("The number of entities cannot be negative.");
+		}
+
+		this.entityCount = entityCount;
+	}
+
+	/**
+	 * @return The chance of an entity holding each simulated component type.
+	 */
+	public double[] getComponentMix() {
+		return Arrays.copyOf(this.componentMix, this.componentMix.length);
+	}
+
+	/**
+	 * <p>Sets the chance, between zero and one, of an entity holding each
+	 * simulated component type. The number of chances given is the number of
+	 * component types simulated.</p>
+	 *
+	 * @param componentMix The chance of holding each component type.
+	 *
+	 * @throws IllegalArgumentException If no chances, or more chances than
+	 * there are simulated component types, are given.
+	 */
+	public void setComponentMix(double... componentMix) {
+		if (componentMix.length == 0 || componentMix.length > LoadSimulation.COMPONENT_TYPE_COUNT) {
+			throw new IllegalArgumentException("Between one and " + LoadSimulation.COMPONENT_TYPE_COUNT + " component types can be simulated.");
+		}
+
+		this.componentMix = Arrays.copyOf(componentMix, componentMix.length);
+	}
+
+	/**
+	 * @return The fraction of entities replaced by new entities each tick.
+	 */
+	public double getChurnRate() {
+		return this.churnRate;
+	}
+
+	/**
+	 * @param churnRate The fraction of entities replaced by new entities each
+	 * tick.
+	 */
+	public void setChurnRate(double churnRate) {
+		if (churnRate < 0 || churnRate > 1) {
+			throw new IllegalArgumentException("The churn rate has to be between zero and one.");
+		}
+
+		this.churnRate = churnRate;
+	}
+
+	//// Systems and Queries ////
+
+	private int queryCount;
+	private int systemCount;
+
+	/**
+	 * @return The number of queries executed each tick besides those of the
+	 * systems.
+	 */
+	public int getQueryCount() {
+		return this.queryCount;
+	}
+
+	/**
+	 * @param queryCount The number of queries executed each tick besides those
+	 * of the systems.
+	 */
+	public void setQueryCount(int queryCount) {
+		if (queryCount < 0) {
+			throw new IllegalArgumentException("The number of queries cannot be negative.");
+		}
+
+		this.queryCount = queryCount;
+	}
+
+	/**
+	 * @return The number of systems updated each tick.
+	 */
+	public int getSystemCount() {
+		return this.systemCount;
+	}
+
+	/**
+	 * @param systemCount The number of systems updated each tick.
+	 */
+	public void setSystemCount(int systemCount) {
+		if (systemCount < 0) {
+			throw new IllegalArgumentException("The number of systems cannot be negative.");
+		}
+
+		this.systemCount = systemCount;
+	}
+
+	//// Time ////
+
+	/*
+	 * All durations are in simulated time, so that the number of ticks, and
+	 * therefore the work done, does not depend on the speed of the machine.
+	 */
+
+	private long tickDuration;
+	private long duration;
+	private long warmupDuration;
+	private long seed;
+
+	/**
+	 * @return The simulated time between ticks, in milliseconds.
+	 */
+	public long getTickDuration() {
+		return this.tickDuration;
+	}
+
+	/**
+	 * @param tickDuration The simulated time between ticks, in milliseconds.
+	 */
+	public void setTickDuration(long tickDuration) {
+		if (tickDuration <= 0) {
+			throw new IllegalArgumentException("The tick duration has to be positive.");
+		}
+
+		this.tickDuration = tickDuration;
+	}
+
+	/**
+	 * @return The simulated time which is measured, in milliseconds.
+	 */
+	public long getDuration() {
+		return this.duration;
+	}
+
+	/**
+	 * @param duration The simulated time which is measured, in milliseconds.
+	 */
+	public void setDuration(long duration) {
+		if (duration < 0) {
+			throw new IllegalArgumentException("The duration cannot be negative.");
+		}
+
+		this.duration = duration;
+	}
+
+	/**
+	 * @return The simulated time run before measuring, in milliseconds.
+	 */
+	public long getWarmupDuration() {
+		return this.warmupDuration;
+	}
+
+	/**
+	 * @param warmupDuration The simulated time run before measuring, to let
+	 * the virtual machine compile the code involved, in milliseconds.
+	 */
+	public void setWarmupDuration(long warmupDuration) {
+		if (warmupDuration < 0) {
+			throw new IllegalArgumentException("The warm-up duration cannot be negative.");
+		}
+
+		this.warmupDuration = warmupDuration;
+	}
+
+	/**
+	 * @return The seed of the random numbers driving the simulation.
+	 */
+	public long getSeed() {
+		return this.seed;
+	}
+
+	/**
+	 * @param seed The seed of the random numbers driving the simulation.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.elsewhere_games.lib.entity.load;
+
+// Java Utilities
+import java.util.Arrays;
+
+/**
+ * <p>The measurements taken during a {@link LoadSimulation}. Tick times are
+ * wall-clock times, in nanoseconds, of every measured tick.</p>
+ */
+public final class LoadReport {
+
+	/**
+	 * <p>Class constructor.</p>
+	 *
+	 * @param tickTimes The time taken by each measured tick, in nanoseconds.
+	 * @param gcCount The number of garbage collections during the measurement.
+	 * @param gcTime The time spent collecting garbage, in milliseconds.
+	 * @param allocatedBytes The bytes allocated during the measurement, or
+	 * a negative number if the virtual machine cannot tell.
+	 * @param entitiesProcessed The number of entities visited by the systems.
+	 */
+	public LoadReport(long[] tickTimes, long gcCount, long gcTime, long allocatedBytes, long entitiesProcessed) {
+		this.sortedTickTimes = Arrays.copyOf(tickTimes, tickTimes.length);
+		Arrays.sort(this.sortedTickTimes);
+
+		this.gcCount = gcCount;
+		this.gcTime = gcTime;
+		this.allocatedBytes = allocatedBytes;
+		this.entitiesProcessed = entitiesProcessed;
+	}
+
+	//// Ticks ////
+
+	private final long[] sortedTickTimes;
+
+	/**
+	 * @return The number of measured ticks.
+	 */
+	public int getTickCount() {
+		return this.sortedTickTimes.length;
+	}
+
+	/**
+	 * <p>Gets the time within which the specified fraction of ticks completed,
+	 * for instance 0.99 for the 99th percentile.</p>
+	 *
+	 * @param quantile The fraction of ticks, between zero and one.
+	 *
+	 * @return The tick time at the quantile, in nanoseconds, or zero if no
+	 * ticks were measured.
+	 */
+	public long getTickTimePercentile(double quantile) {
+		if (quantile < 0 || quantile > 1) {
+			throw new IllegalArgumentException("The quantile has to be between zero and one.");
+		}
+
+		if (this.sortedTickTimes.length == 0) {
+			return 0;
+		}
+
+		int rank = (int)Math.ceil(quantile * this.sortedTickTimes.length);
+		return this.sortedTickTimes[Math.max(rank - 1, 0)];
+	}
+
+	//// Memory ////
+
+	private final long gcCount;
+	private final long gcTime;
+	private final long allocatedBytes;
+
+	/**
+	 * @return The number of garbage collections during the measurement.
+	 */
+	public long getGcCount() {
+		return this.gcCount;
+	}
+
+	/**
+	 * @return The time spent collecting garbage during the measurement, in
+	 * milliseconds.
+	 */
+	public long getGcTime() {
+		return this.gcTime;
+	}
+
+	/**
+	 * @return The average number of bytes allocated per tick, or a negative
+	 * number if the virtual machine cannot measure allocation.
+	 */
+	public long getBytesAllocatedPerTick() {
+		if (this.allocatedBytes < 0) {
+			return -1;
+		}
+
+		return this.sortedTickTimes.length == 0 ? 0 : this.allocatedBytes / this.sortedTickTimes.length;
+	}
+
+	//// Work ////
+
+	private final long entitiesProcessed;
+
+	/**
+	 * <p>Gets the number of entities visited by the systems during the
+	 * measurement. Since the simulation is deterministic, this is the same on
+	 * every run of the same profile.</p>
+	 *
+	 * @return The number of entities visited.
+	 */
+	public long getEntitiesProcessed() {
+		return this.entitiesProcessed;
+	}
+
+	//// Object Overrides ////
+
+	@Override
+	public String toString() {
+		return "ticks: " + this.getTickCount() + "\n"
+			+ "tick p50: " + this.getTickTimePercentile(0.5) / 1000 + " us\n"
+			+ "tick p99: " + this.getTickTimePercentile(0.99) / 1000 + " us\n"
+			+ "tick p999: " + this.getTickTimePercentile(0.999) / 1000 + " us\n"
+			+ "gc count: " + this.gcCount + "\n"
+			+ "gc time: " + this.gcTime + " ms\n"
+			+ "allocated per tick: " + this.getBytesAllocatedPerTick() + " bytes\n"
+			+ "entities processed: " + this.entitiesProcessed;
+	}
+
+}
@@ -0,0 +1,344 @@
+package com.elsewhere_games.lib.entity.load;
+
+// Java Containers
+import java.util.ArrayList;
+import java.util.List;
+
+// Java Utilities
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+import java.util.UUID;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.Component;
+import com.elsewhere_games.lib.entity.Entity;
+import com.elsewhere_games.lib.entity.EntityManager;
+
+// Systems Elsewhere
+import com.elsewhere_games.lib.entity.system.AbstractCyclicalSystem;
+
+/**
+ * <p>Runs a simulated workload, described by a {@link LoadProfile}, against an
+ * entity manager and a number of cyclical systems, and measures how long each
+ * tick takes, how often garbage is collected, and how much memory is
+ * allocated per tick.</p>
+ *
+ * <p>The simulation is driven on the calling thread, rather than on the
+ * threads of the systems, and all random choices come from the seed of the
+ * profile, so that every run of the same profile does the same work. Only
+ * the measurements differ between runs.</p>
+ *
+ * <p>The simulation can be run from the command line, with the settings of
+ * the profile given as <code>name=value</code> arguments, for instance
+ * <code>entities=100000 churn=0.02 mix=1,0.5,0.5</code>.</p>
+ */
+public class LoadSimulation {
+
+	//// Life-Cycle ////
+
+	/**
+	 * <p>Class constructor.</p>
+	 *
+	 * @param profile The workload to simulate.
+	 */
+	public LoadSimulation(LoadProfile profile) {
+		this.profile = profile;
+	}
+
+	private final LoadProfile profile;
+
+	//// Simulation ////
+
+	private EntityManager manager;
+	private Random random;
+	private List<Entity> entities;			// Live entities, to pick from at random.
+	private List<LoadSystem> systems;
+	private List<UUID> queries;
+	private double pendingChurn;
+
+	/**
+	 * <p>Runs the simulation: first for the warm-up duration of the profile,
+	 * then for its duration while measuring every tick.</p>
+	 *
+	 * @return The measurements taken.
+	 */
+	public LoadReport run() {
+		this.setUp();
+
+		long tickDuration = this.profile.getTickDuration();
+		for (long time = 0; time < this.profile.getWarmupDuration(); time += tickDuration) {
+			this.tick();
+		}
+
+		for (LoadSystem system : this.systems) {
+			system.processed = 0;
+		}
+
+		int tickCount = (int)(this.profile.getDuration() / tickDuration);
+		long[] tickTimes = new long[tickCount];
+
+		long gcCountBefore = getGcCount();
+		long gcTimeBefore = getGcTime();
+		long allocatedBefore = getAllocatedBytes();
+
+		for (int tick = 0; tick < tickCount; tick++) {
+			long start = System.nanoTime();
+			this.tick();
+			tickTimes[tick] = System.nanoTime() - start;
+		}
+
+		long allocatedAfter = getAllocatedBytes();
+		long allocatedBytes = allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore;
+
+		long entitiesProcessed = 0;
+		for (LoadSystem system : this.systems) {
+			entitiesProcessed += system.processed;
+		}
+
+		return new LoadReport(tickTimes, getGcCount() - gcCountBefore, getGcTime() - gcTimeBefore, allocatedBytes, entitiesProcessed);
+	}
+
+	// Create the entities, systems and queries of the profile:
+	private void setUp() {
+		this.manager = new EntityManager();
+		this.random = new Random(this.profile.getSeed());
+		this.entities = new ArrayList<Entity>(this.profile.getEntityCount());
+		this.systems = new ArrayList<LoadSystem>();
+		this.queries = new ArrayList<UUID>();
+		this.pendingChurn = 0;
+
+		for (int count = 0; count < this.profile.getEntityCount(); count++) {
+			this.entities.add(this.createEntity());
+		}
+
+		int typeCount = this.profile.getComponentMix().length;
+		for (int count = 0; count < this.profile.getSystemCount(); count++) {
+			this.systems.add(new LoadSystem(this.manager, this.profile.getTickDuration(), this.pickSignatures(typeCount)));
+		}
+
+		for (int count = 0; count < this.profile.getQueryCount(); count++) {
+			this.queries.add(this.manager.createQuery(this.pickSignatures(typeCount)));
+		}
+	}
+
+	// Replace some entities, update all systems, and run the other queries:
+	private void tick() {
+		this.pendingChurn += this.entities.size() * this.profile.getChurnRate();
+		while (this.pendingChurn >= 1 && !this.entities.isEmpty()) {
+			int position = this.random.nextInt(this.entities.size());
+			int last = this.entities.size() - 1;
+
+			this.manager.destroyEntity(this.entities.get(position));
+			this.entities.set(position, this.entities.get(last));
+			this.entities.set(last, this.createEntity());
+
+			this.pendingChurn--;
+		}
+
+		for (LoadSystem system : this.systems) {
+			system.cycle(this.profile.getTickDuration());
+		}
+
+		for (UUID queryId : this.queries) {
+			this.manager.executeQuery(queryId);
+		}
+
+		this.manager.tick(this.profile.getTickDuration());
+	}
+
+	// Create an entity holding components according to the mix:
+	private Entity createEntity() {
+		Entity entity = this.manager.createEntity();
+
+		double[] componentMix = this.profile.getComponentMix();
+		for (int type = 0; type < componentMix.length; type++) {
+			if (this.random.nextDouble() < componentMix[type]) {
+				entity.addComponent(createComponent(type));
+			}
+		}
+
+		return entity;
+	}
+
+	// Pick one or two distinct component types:
+	private Class<?>[] pickSignatures(int typeCount) {
+		int first = this.random.nextInt(typeCount);
+		if (typeCount == 1 || this.random.nextBoolean()) {
+			return new Class<?>[] { COMPONENT_TYPES[first] };
+		}
+
+		int second = (first + 1 + this.random.nextInt(typeCount - 1)) % typeCount;
+		return new Class<?>[] { COMPONENT_TYPES[first], COMPONENT_TYPES[second] };
+	}
+
+	//// Measurement ////
+
+	// The total number of collections by all collectors:
+	private static long getGcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(collector.getCollectionCount(), 0);
+		}
+
+		return count;
+	}
+
+	// The total time spent collecting by all collectors:
+	private static long getGcTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			time += Math.max(collector.getCollectionTime(), 0);
+		}
+
+		return time;
+	}
+
+	// The bytes allocated by the current thread, or -1 if not supported:
+	private static long getAllocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean)threads;
+			if (allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled()) {
+				return allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+
+		return -1;
+	}
+
+	//// Systems ////
+
+	// A system touching every entity matching its query, driven by the simulation:
+	private static class LoadSystem extends AbstractCyclicalSystem {
+
+		public LoadSystem(EntityManager entities, long cycleDuration, Class<?>[] signatures) {
+			super(entities, cycleDuration);
+			this.signature = signatures[0].asSubclass(SimulatedComponent.class);
+			this.queryId = entities.createQuery(signatures);
+		}
+
+		private final Class<? extends SimulatedComponent> signature;
+		private final UUID queryId;
+		private long processed;
+
+		public void cycle(long delaySinceLastUpdate) {
+			this.update(delaySinceLastUpdate);
+		}
+
+		@Override
+		protected void update(long delaySinceLastUpdate) {
+			for (Entity entity : this.entities.executeQuery(this.queryId)) {
+				SimulatedComponent component = entity.getComponent(this.signature);
+				component.value += delaySinceLastUpdate;
+				this.processed++;
+			}
+		}
+
+	}
+
+	//// Components ////
+
+	/** <p>The number of component types which can be simulated.</p> */
+	public static final int COMPONENT_TYPE_COUNT = 8;
+
+	// A component holding a single value which the systems update:
+	private static abstract class SimulatedComponent implements Component {
+		private long value;
+	}
+
+	private static class Component0 extends SimulatedComponent {}
+	private static class Component1 extends SimulatedComponent {}
+	private static class Component2 extends SimulatedComponent {}
+	private static class Component3 extends SimulatedComponent {}
+	private static class Component4 extends SimulatedComponent {}
+	private static class Component5 extends SimulatedComponent {}
+	private static class Component6 extends SimulatedComponent {}
+	private static class Component7 extends SimulatedComponent {}
+
+	private static final Class<?>[] COMPONENT_TYPES = {
+		Component0.class, Component1.class, Component2.class, Component3.class,
+		Component4.class, Component5.class, Component6.class, Component7.class
+	};
+
+	// Create a component of the specified simulated type:
+	private static Component createComponent(int type) {
+		switch (type) {
+			case 0: return new Component0();
+			case 1: return new Component1();
+			case 2: return new Component2();
+			case 3: return new Component3();
+			case 4: return new Component4();
+			case 5: return new Component5();
+			case 6: return new Component6();
+			default: return new Component7();
+		}
+	}
+
+	//// Command Line ////
+
+	/**
+	 * <p>Runs a simulation of the profile given by the arguments, and prints
+	 * its report. Recognized arguments are <code>entities</code>,
+	 * <code>mix</code>, <code>churn</code>, <code>queries</code>,
+	 * <code>systems</code>, <code>tick</code>, <code>duration</code>,
+	 * <code>warmup</code> and <code>seed</code>; durations are in
+	 * milliseconds of simulated time.</p>
+	 *
+	 * @param arguments The settings of the profile, as <code>name=value</code>.
+	 */
+	public static void main(String[] arguments) {
+		LoadProfile profile = new LoadProfile();
+
+		for (String argument : arguments) {
+			int separator = argument.indexOf('=');
+			if (separator == -1) {
+				throw new IllegalArgumentException("Expected an argument of the form name=value: " + argument);
+			}
+
+			String name = argument.substring(0, separator);
+			String value = argument.substring(separator + 1);
+
+			if (name.equals("entities")) {
+				profile.setEntityCount(Integer.parseInt(value));
+			}
+			else if (name.equals("mix")) {
+				String[] chances = value.split(",");
+				double[] componentMix = new double[chances.length];
+				for (int type = 0; type < chances.length; type++) {
+					componentMix[type] = Double.parseDouble(chances[type]);
+				}
+
+				profile.setComponentMix(componentMix);
+			}
+			else if (name.equals("churn")) {
+				profile.setChurnRate(Double.parseDouble(value));
+			}
+			else if (name.equals("queries")) {
+				profile.setQueryCount(Integer.parseInt(value));
+			}
+			else if (name.equals("systems")) {
+				profile.setSystemCount(Integer.parseInt(value));
+			}
+			else if (name.equals("tick")) {
+				profile.setTickDuration(Long.parseLong(value));
+			}
+			else if (name.equals("duration")) {
+				profile.setDuration(Long.parseLong(value));
+			}
+			else if (name.equals("warmup")) {
+				profile.setWarmupDuration(Long.parseLong(value));
+			}
+			else if (name.equals("seed")) {
+				profile.setSeed(Long.parseLong(value));
+			}
+			else {
+				throw new IllegalArgumentException("Unknown argument: " + name);
+			}
+		}
+
+		System.out.println(new LoadSimulation(profile).run());
+	}
+
+}
@@ -0,0 +1,181 @@
+package com.elsewhere_games.lib.entity.memory;
+
+// Java Containers
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// Java Reflection
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * <p>Estimates the memory taken up by objects and arrays on the heap, based on
+ * the layout used by 64-bit HotSpot virtual machines: a header of twelve bytes
+ * per object and sixteen per array, four byte references when compressed
+ * pointers are in use, and every object aligned to eight bytes.</p>
+ *
+ * <p>Estimates are shallow: they cover the fields of an object, not the
+ * objects those fields refer to. The layout of each class is computed once,
+ * after which estimates take constant time.</p>
+ */
+public final class MemoryEstimator {
+
+	// Only static utilities:
+	private MemoryEstimator() {
+	}
+
+	//// Layout ////
+
+	private static final int OBJECT_HEADER_SIZE = 12;
+	private static final int ARRAY_HEADER_SIZE = 16;
+	private static final int ALIGNMENT = 8;
+
+	/**
+	 * <p>The size of a reference, in bytes.</p>
+	 */
+	public static final int REFERENCE_SIZE = detectReferenceSize();
+
+	// Compressed pointers are used for heaps below 32 gigabytes by default:
+	private static int detectReferenceSize() {
+		for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+			if (argument.equals("-XX:-UseCompressedOops")) {
+				return 8;
+			}
+		}
+
+		return Runtime.getRuntime().maxMemory() < 32L * 1024 * 1024 * 1024 ? 4 : 8;
+	}
+
+	/**
+	 * <p>The size of an entry in a <code>HashMap</code> or
+	 * <code>HashSet</code>, in bytes: a hash and references to the key, the
+	 * value and the next entry.</p>
+	 */
+	public static final long HASH_ENTRY_SIZE = align(OBJECT_HEADER_SIZE + 4 + 3 * REFERENCE_SIZE);
+
+	private static final ClassValue<Long> SHALLOW_SIZES = new ClassValue<Long>() {
+
+		@Override
+		protected Long computeValue(Class<?> type) {
+			long size = OBJECT_HEADER_SIZE;
+
+			for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+				for (Field field : current.getDeclaredFields()) {
+					if (!Modifier.isStatic(field.getModifiers())) {
+						size += fieldSize(field.getType());
+					}
+				}
+			}
+
+			return align(size);
+		}
+	};
+
+	//// Estimates ////
+
+	/**
+	 * <p>Estimates the shallow size of an instance of the specified class.</p>
+	 *
+	 * @param type The class of the instance.
+	 * @return The estimated size of an instance, in bytes.
+	 */
+	public static long shallowSizeOf(Class<?> type) {
+		return SHALLOW_SIZES.get(type);
+	}
+
+	/**
+	 * <p>Estimates the size of an array.</p>
+	 *
+	 * @param componentType The type of the elements of the array.
+	 * @param length The length of the array.
+	 * @return The estimated size of the array, in bytes.
+	 */
+	public static long arraySizeOf(Class<?> componentType, long length) {
+		return align(ARRAY_HEADER_SIZE + fieldSize(componentType) * length);
+	}
+
+	/**
+	 * <p>Estimates the size of a <code>HashMap</code> or
+	 * <code>HashSet</code>, including its table and entries, but not the
+	 * keys and values it holds.</p>
+	 *
+	 * @param size The number of entries in the map.
+	 * @return The estimated size of the map, in bytes.
+	 */
+	public static long hashMapSizeOf(int size) {
+		return hashMapSizeOf(size, size);
+	}
+
+	/**
+	 * <p>Estimates the size of a <code>HashMap</code> or
+	 * <code>HashSet</code> which once held more entries than it does now.
+	 * Its table never shrinks, so it is sized by the most entries held.</p>
+	 *
+	 * @param size The number of entries in the map.
+	 * @param peakSize The most entries the map has held.
+	 * @return The estimated size of the map, in bytes.
+	 */
+	public static long hashMapSizeOf(int size, int peakSize) {
+		long bytes = shallowSizeOf(HashMap.class) + size * HASH_ENTRY_SIZE;
+
+		// Tables are allocated on first use, and doubled beyond a 0.75 load:
+		int tableSize = Math.max(size, peakSize);
+		if (tableSize > 0) {
+			int tableLength = 16;
+			while (tableLength * 3 / 4 < tableSize) {
+				tableLength *= 2;
+			}
+
+			bytes += arraySizeOf(Object.class, tableLength);
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * <p>Estimates the size of an <code>ArrayList</code>, but not the
+	 * elements it holds. Lists keep their array as they are cleared, so
+	 * the capacity is the most elements the list has held, unless it was
+	 * trimmed.</p>
+	 *
+	 * @param size The capacity of the list.
+	 * @return The estimated size of the list, in bytes.
+	 */
+	public static long arrayListSizeOf(int size) {
+		long bytes = shallowSizeOf(ArrayList.class);
+
+		// Empty lists share a single empty array:
+		if (size > 0) {
+			bytes += arraySizeOf(Object.class, size);
+		}
+
+		return bytes;
+	}
+
+	// The size of a field or array element of the specified type:
+	private static long fieldSize(Class<?> type) {
+		if (!type.isPrimitive()) {
+			return REFERENCE_SIZE;
+		}
+
+		if (type == long.class || type == double.class) {
+			return 8;
+		}
+
+		if (type == int.class || type == float.class) {
+			return 4;
+		}
+
+		if (type == short.class || type == char.class) {
+			return 2;
+		}
+
+		return 1;
+	}
+
+	private static long align(long size) {
+		return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+
+}
@@ -0,0 +1,179 @@
+package com.elsewhere_games.lib.entity.memory;
+
+// Java Containers
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>An estimate of the memory held by an
+ * {@link com.elsewhere_games.lib.entity.EntityManager}, broken down by what it
+ * is held for. All figures are in bytes, and are estimates based on the
+ * sizes of the backing collections rather than a walk of the heap.</p>
+ *
+ * @see {@link MemoryEstimator}
+ */
+public final class MemoryUsage {
+
+	/**
+	 * <p>Class constructor.</p>
+	 *
+	 * @param entityCount The number of entities in the manager.
+	 * @param entityBytes The memory held for the entities themselves.
+	 * @param componentBytes The memory held per component type.
+	 * @param queryCacheBytes The memory held per cached query result, by the
+	 * signatures of the query.
+	 * @param journalBytes The memory held by the rollback journal.
+	 * @param changeStreamBytes The memory held by the change streams.
+	 * @param prefabBytes The memory held by the registered prefabs.
+	 * @param otherBytes The memory held for everything else.
+	 */
+	public MemoryUsage(int entityCount, long entityBytes, Map<Class<?>, Long> componentBytes, Map<List<Class<?>>, Long> queryCacheBytes, long journalBytes, long changeStreamBytes, long prefabBytes, long otherBytes) {
+		this.entityCount = entityCount;
+		this.entityBytes = entityBytes;
+		this.componentBytes = Collections.unmodifiableMap(componentBytes);
+		this.queryCacheBytes = Collections.unmodifiableMap(queryCacheBytes);
+		this.journalBytes = journalBytes;
+		this.changeStreamBytes = changeStreamBytes;
+		this.prefabBytes = prefabBytes;
+		this.otherBytes = otherBytes;
+	}
+
+	//// Entities ////
+
+	private final int entityCount;
+	private final long entityBytes;
+
+	/**
+	 * <p>Gets the memory held for the entities, excluding their components:
+	 * their identifiers, component arrays and listener lists, and their entry
+	 * in the manager. The table of the entity set keeps the size it grew to
+	 * for the most entities held, until the manager is compacted.</p>
+	 *
+	 * @return The memory held for all entities.
+	 */
+	public long getEntityBytes() {
+		return this.entityBytes;
+	}
+
+	/**
+	 * @return The average memory held per entity, excluding components.
+	 */
+	public long getBytesPerEntity() {
+		return this.entityCount == 0 ? 0 : this.entityBytes / this.entityCount;
+	}
+
+	//// Components ////
+
+	private final Map<Class<?>, Long> componentBytes;
+
+	/**
+	 * <p>Gets the memory held per component type: the components themselves
+	 * and the storage of the type in the manager. The slots of the type in the
+	 * component arrays of the entities are counted with the entities.</p>
+	 *
+	 * @return The memory held by class signature of the components.
+	 */
+	public Map<Class<?>, Long> getComponentBytes() {
+		return this.componentBytes;
+	}
+
+	//// Queries ////
+
+	private final Map<List<Class<?>>, Long> queryCacheBytes;
+
+	/**
+	 * <p>Gets the memory held by the cached result of each shared query.
+	 * Query identifiers with the same set of signatures share a single
+	 * result, which is counted once. A reused result keeps the capacity of
+	 * its largest rebuild. Queries whose result is not cached, including
+	 * those evicted by the query cache capacity, are not included.</p>
+	 *
+	 * @return The memory held by the signatures of the shared query.
+	 */
+	public Map<List<Class<?>>, Long> getQueryCacheBytes() {
+		return this.queryCacheBytes;
+	}
+
+	//// Rollback ////
+
+	private final long journalBytes;
+
+	/**
+	 * <p>Gets the memory held for rolling back to checkpoints: the journal of
+	 * changes, which keeps the capacity of its longest run, and the saved
+	 * copies of edited components.</p>
+	 *
+	 * @return The memory held by the rollback journal.
+	 */
+	public long getJournalBytes() {
+		return this.journalBytes;
+	}
+
+	//// Change Streams ////
+
+	private final long changeStreamBytes;
+
+	/**
+	 * <p>Gets the memory held by the change streams: the ring buffer of
+	 * every subscriber, whether full or not, and the events buffered in
+	 * them.</p>
+	 *
+	 * @return The memory held by all change streams.
+	 */
+	public long getChangeStreamBytes() {
+		return this.changeStreamBytes;
+	}
+
+	//// Prefabs ////
+
+	private final long prefabBytes;
+
+	/**
+	 * <p>Gets the memory held by the registered prefabs, including their
+	 * template components.</p>
+	 *
+	 * @return The memory held by all prefabs.
+	 */
+	public long getPrefabBytes() {
+		return this.prefabBytes;
+	}
+
+	//// Totals ////
+
+	private final long otherBytes;
+
+	/**
+	 * <p>Gets the memory held for everything not covered by the other
+	 * figures, such as query identifiers, the signatures of the shared
+	 * queries, observers and times to live.</p>
+	 *
+	 * @return The memory held for the remainder of the manager.
+	 */
+	public long getOtherBytes() {
+		return this.otherBytes;
+	}
+
+	/**
+	 * @return The memory held by the manager in total.
+	 */
+	public long getTotalBytes() {
+		long total = this.entityBytes + this.journalBytes + this.changeStreamBytes + this.prefabBytes + this.otherBytes;
+
+		for (Long bytes : this.componentBytes.values()) {
+			total += bytes;
+		}
+
+		for (Long bytes : this.queryCacheBytes.values()) {
+			total += bytes;
+		}
+
+		return total;
+	}
+
+	@Override
+	public String toString() {
+		return "MemoryUsage[total=" + this.getTotalBytes() + ", entities=" + this.entityBytes + ", components=" + this.componentBytes.size() + " types, queryCaches=" + this.queryCacheBytes.size() + "]";
+	}
+
+}
@@ -0,0 +1,354 @@
+package com.elsewhere_games.lib.entity.replay;
+
+// Java Containers
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+// Java Utilities
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.UUID;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.Component;
+import com.elsewhere_games.lib.entity.Entity;
+import com.elsewhere_games.lib.entity.EntityManager;
+
+// Events Elsewhere
+import com.elsewhere_games.lib.entity.event.StructuralChangeListener;
+
+/**
+ * <p>Records every structural change of an {@link EntityManager} into a
+ * compact binary log, with a marker for every tick, so that the session can
+ * be replayed against another manager by a {@link ChangeReplayer}. The
+ * recording starts with the entities, components and queries the manager
+ * already holds.</p>
+ *
+ * <p>Only the structure of the world is recorded: which entities hold which
+ * types of components, and which queries are created and executed. The state
+ * of the components themselves is not.</p>
+ *
+ * <p>Writing the log must not interrupt the simulation, so a failure to write
+ * stops the recording, and is only reported by {@link #flush()} and
+ * {@link #close()}. So does a change to an entity or query the recorder
+ * never saw, such as one notified directly rather than by the manager.</p>
+ */
+public class ChangeRecorder implements StructuralChangeListener, Closeable {
+
+	//// Life-Cycle ////
+
+	/**
+	 * <p>Starts recording the changes of a manager. The recorder registers
+	 * itself as a structural change listener of the manager until it is
+	 * closed.</p>
+	 *
+	 * @param manager The manager to record the changes of.
+	 * @param out The stream to write the recording to.
+	 *
+	 * @throws IOException If the header of the recording cannot be written.
+	 */
+	public ChangeRecorder(EntityManager manager, OutputStream out) throws IOException {
+		this.manager = manager;
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		this.out.writeInt(RecordingFormat.MAGIC);
+		this.out.writeInt(RecordingFormat.FORMAT_VERSION);
+
+		this.entityNumbers = new IdentityHashMap<Entity, Integer>();
+		this.freeEntityNumbers = new int[16];
+		this.queryNumbers = new HashMap<UUID, Integer>();
+		this.freeQueryNumbers = new int[16];
+		this.typeNumbers = new HashMap<Class<?>, Integer>();
+
+		this.manager.addStructuralChangeListener(this);
+	}
+
+	private final EntityManager manager;
+	private final DataOutputStream out;
+	private IOException failure;		// The first failure to write, if any.
+	private boolean closed;
+
+	/**
+	 * <p>Writes everything recorded so far to the underlying stream.</p>
+	 *
+	 * @throws IOException If the recording failed at any point.
+	 */
+	public void flush() throws IOException {
+		if (this.failure == null && !this.closed) {
+			try {
+				this.out.flush();
+			} catch (IOException exception) {
+				this.failure = exception;
+			}
+		}
+
+		if (this.failure != null) {
+			throw this.failure;
+		}
+	}
+
+	/**
+	 * <p>Stops recording, and writes and closes the recording. Has no effect
+	 * if the recorder was already closed.</p>
+	 *
+	 * @throws IOException If the recording failed at any point.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+
+		this.manager.removeStructuralChangeListener(this);
+		try {
+			this.flush();
+		} finally {
+			this.closed = true;
+			this.out.close();
+		}
+	}
+
+	//// Statistics ////
+
+	private long operationCount;
+	private long tickCount;
+
+	/**
+	 * @return The number of operations recorded so far, including ticks.
+	 */
+	public long getOperationCount() {
+		return this.operationCount;
+	}
+
+	/**
+	 * @return The number of ticks recorded so far.
+	 */
+	public long getTickCount() {
+		return this.tickCount;
+	}
+
+	//// Numbering ////
+
+	private final Map<Entity, Integer> entityNumbers;
+	private int[] freeEntityNumbers;
+	private int freeEntityNumberCount;
+	private int nextEntityNumber;
+
+	private final Map<UUID, Integer> queryNumbers;
+	private int[] freeQueryNumbers;
+	private int freeQueryNumberCount;
+	private int nextQueryNumber;
+
+	private final Map<Class<?>, Integer> typeNumbers;
+
+	// Number a new entity, reusing the number of a destroyed one if possible:
+	private int numberEntity(Entity entity) {
+		int number = this.freeEntityNumberCount > 0 ? this.freeEntityNumbers[--this.freeEntityNumberCount] : this.nextEntityNumber++;
+		this.entityNumbers.put(entity, number);
+
+		return number;
+	}
+
+	// The number of a recorded entity:
+	private int entityNumber(Entity entity) throws IOException {
+		Integer number = this.entityNumbers.get(entity);
+		if (number == null) {
+			throw new IOException("The entity " + entity.getId() + " was never recorded.");
+		}
+
+		return number;
+	}
+
+	// Give the number of a destroyed entity back:
+	private int releaseEntity(Entity entity) throws IOException {
+		int number = this.entityNumber(entity);
+		this.entityNumbers.remove(entity);
+		if (this.freeEntityNumberCount == this.freeEntityNumbers.length) {
+			this.freeEntityNumbers = Arrays.copyOf(this.freeEntityNumbers, this.freeEntityNumbers.length * 2);
+		}
+
+		this.freeEntityNumbers[this.freeEntityNumberCount++] = number;
+		return number;
+	}
+
+	// Number a new query, reusing the number of a disposed one if possible:
+	private int numberQuery(UUID queryId) {
+		int number = this.freeQueryNumberCount > 0 ? this.freeQueryNumbers[--this.freeQueryNumberCount] : this.nextQueryNumber++;
+		this.queryNumbers.put(queryId, number);
+
+		return number;
+	}
+
+	// The number of a recorded query:
+	private int queryNumber(UUID queryId) throws IOException {
+		Integer number = this.queryNumbers.get(queryId);
+		if (number == null) {
+			throw new IOException("The query " + queryId + " was never recorded.");
+		}
+
+		return number;
+	}
+
+	// Give the number of a disposed query back:
+	private int releaseQuery(UUID queryId) throws IOException {
+		int number = this.queryNumber(queryId);
+		this.queryNumbers.remove(queryId);
+		if (this.freeQueryNumberCount == this.freeQueryNumbers.length) {
+			this.freeQueryNumbers = Arrays.copyOf(this.freeQueryNumbers, this.freeQueryNumbers.length * 2);
+		}
+
+		this.freeQueryNumbers[this.freeQueryNumberCount++] = number;
+		return number;
+	}
+
+	// The number of a component type, naming it in the recording the first time:
+	private int numberType(Class<?> type) throws IOException {
+		Integer number = this.typeNumbers.get(type);
+		if (number == null) {
+			number = this.typeNumbers.size();
+			this.typeNumbers.put(type, number);
+
+			this.out.writeByte(RecordingFormat.DEFINE_TYPE);
+			RecordingFormat.writeVarLong(this.out, number);
+			this.out.writeUTF(type.getName());
+		}
+
+		return number;
+	}
+
+	//// Recording ////
+
+	// Whether operations are still being written:
+	private boolean isRecording() {
+		return this.failure == null && !this.closed;
+	}
+
+	@Override
+	public void onEntityAdded(Entity entity) {
+		if (this.isRecording()) {
+			try {
+				this.writeOperation(RecordingFormat.ADD_ENTITY, this.numberEntity(entity));
+			} catch (IOException exception) {
+				this.failure = exception;
+			}
+		}
+	}
+
+	@Override
+	public void onEntityDestroyed(Entity entity) {
+		if (this.isRecording()) {
+			try {
+				this.writeOperation(RecordingFormat.DESTROY_ENTITY, this.releaseEntity(entity));
+			} catch (IOException exception) {
+				this.failure = exception;
+			}
+		}
+	}
+
+	@Override
+	public void onComponentAdded(Entity entity, Component component) {
+		this.writeComponentChange(RecordingFormat.ADD_COMPONENT, entity, component);
+	}
+
+	@Override
+	public void onComponentRemoved(Entity entity, Component component) {
+		this.writeComponentChange(RecordingFormat.REMOVE_COMPONENT, entity, component);
+	}
+
+	@Override
+	public void onQueryCreated(UUID queryId, List<Class<?>> signatures) {
+		if (this.isRecording()) {
+			try {
+				this.writeQuery(RecordingFormat.CREATE_QUERY, this.numberQuery(queryId), signatures);
+			} catch (IOException exception) {
+				this.failure = exception;
+			}
+		}
+	}
+
+	@Override
+	public void onQueryUpdated(UUID queryId, List<Class<?>> signatures) {
+		if (this.isRecording()) {
+			try {
+				this.writeQuery(RecordingFormat.UPDATE_QUERY, this.queryNumber(queryId), signatures);
+			} catch (IOException exception) {
+				this.failure = exception;
+			}
+		}
+	}
+
+	@Override
+	public void onQueryDisposed(UUID queryId) {
+		if (this.isRecording()) {
+			try {
+				this.writeOperation(RecordingFormat.DISPOSE_QUERY, this.releaseQuery(queryId));
+			} catch (IOException exception) {
+				this.failure = exception;
+			}
+		}
+	}
+
+	@Override
+	public void onQueryExecuted(UUID queryId) {
+		if (this.isRecording()) {
+			try {
+				this.writeOperation(RecordingFormat.EXECUTE_QUERY, this.queryNumber(queryId));
+			} catch (IOException exception) {
+				this.failure = exception;
+			}
+		}
+	}
+
+	@Override
+	public void onTick(long elapsed) {
+		if (this.isRecording()) {
+			try {
+				this.writeOperation(RecordingFormat.TICK, elapsed);
+				this.tickCount++;
+			} catch (IOException exception) {
+				this.failure = exception;
+			}
+		}
+	}
+
+	// Write an operation with a single operand:
+	private void writeOperation(int operation, long operand) throws IOException {
+		this.out.writeByte(operation);
+		RecordingFormat.writeVarLong(this.out, operand);
+		this.operationCount++;
+	}
+
+	// Write the addition or removal of a component:
+	private void writeComponentChange(int operation, Entity entity, Component component) {
+		if (this.isRecording()) {
+			try {
+				int number = this.entityNumber(entity);
+				int type = this.numberType(component.getClass());
+				this.writeOperation(operation, number);
+				RecordingFormat.writeVarLong(this.out, type);
+			} catch (IOException exception) {
+				this.failure = exception;
+			}
+		}
+	}
+
+	// Write the creation or update of a query with its signatures:
+	private void writeQuery(int operation, int number, List<Class<?>> signatures) throws IOException {
+		int[] types = new int[signatures.size()];
+		for (int position = 0; position < types.length; position++) {
+			types[position] = this.numberType(signatures.get(position));
+		}
+
+		this.writeOperation(operation, number);
+		RecordingFormat.writeVarLong(this.out, types.length);
+		for (int position = 0; position < types.length; position++) {
+			RecordingFormat.writeVarLong(this.out, types[position]);
+		}
+	}
+
+}
@@ -0,0 +1,347 @@
+package com.elsewhere_games.lib.entity.replay;
+
+// Java Containers
+import java.util.Arrays;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+
+// Java Utilities
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.util.UUID;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.Component;
+import com.elsewhere_games.lib.entity.ComponentCopier;
+import com.elsewhere_games.lib.entity.Entity;
+import com.elsewhere_games.lib.entity.EntityManager;
+
+/**
+ * <p>Replays a recording made by a {@link ChangeRecorder} against another
+ * {@link EntityManager}, usually a fresh one. The recording can be replayed
+ * all at once, as fast as possible, or one tick at a time, for instance to
+ * profile a particular frame.</p>
+ *
+ * <p>Every tick marker in the recording ticks the manager with the recorded
+ * elapsed time. Expiries are not recorded as such, but as the destruction or
+ * removal they caused, just before the marker of the tick in which they
+ * happened, so the replayed manager should not be given any time to live
+ * of its own.</p>
+ *
+ * <p>Components are created with the no-argument constructor of their class,
+ * unless a template is set for their type using
+ * {@link #setComponentTemplate(Class, Component, ComponentCopier)}.</p>
+ *
+ * <p>An entity added together with its components, such as an instance of a
+ * prefab, is recorded as the addition of the entity followed by the addition
+ * of each component, and is replayed the same way: by creating an empty entity
+ * and adding its components one at a time. The replayed manager therefore
+ * passes through the intermediate structures, matching queries and notifying
+ * listeners for each of them, where the recorded manager made a single batched
+ * addition. Profiles of a replay overstate the cost of such additions.</p>
+ */
+public class ChangeReplayer implements Closeable {
+
+	//// Life-Cycle ////
+
+	/**
+	 * <p>Opens a recording to replay against a manager.</p>
+	 *
+	 * @param manager The manager to replay the recording against.
+	 * @param in The stream to read the recording from.
+	 *
+	 * @throws IOException If the header of the recording cannot be read.
+	 * @throws IllegalArgumentException If the stream does not hold a
+	 * recording of a supported version.
+	 */
+	public ChangeReplayer(EntityManager manager, InputStream in) throws IOException {
+		this.manager = manager;
+		this.in = new DataInputStream(new BufferedInputStream(in));
+
+		if (this.in.readInt() != RecordingFormat.MAGIC) {
+			throw new IllegalArgumentException("The specified stream does not hold a recording.");
+		}
+
+		if (this.in.readInt() != RecordingFormat.FORMAT_VERSION) {
+			throw new IllegalArgumentException("The specified recording has an unsupported format version.");
+		}
+
+		this.entities = new Entity[16];
+		this.queries = new UUID[16];
+		this.types = new ArrayList<ComponentType>();
+		this.templates = new HashMap<Class<?>, ComponentType>();
+	}
+
+	private final EntityManager manager;
+	private final DataInputStream in;
+	private boolean finished;
+
+	/**
+	 * <p>Closes the recording. The entities and queries replayed so far are
+	 * left in the manager.</p>
+	 *
+	 * @throws IOException If the recording cannot be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		this.finished = true;
+		this.in.close();
+	}
+
+	//// Component Templates ////
+
+	private final Map<Class<?>, ComponentType> templates;
+
+	/**
+	 * <p>Sets how replayed components of a type are created, for types which
+	 * have no no-argument constructor, or which need a particular state to
+	 * behave like the recorded ones.</p>
+	 *
+	 * @param signature The type of component.
+	 * @param template The component to copy for every replayed component.
+	 * @param copier Copies the template.
+	 */
+	public <C extends Component> void setComponentTemplate(Class<C> signature, C template, ComponentCopier<C> copier) {
+		this.templates.put(signature, new ComponentType(signature, template, copier));
+	}
+
+	//// Replay ////
+
+	private Entity[] entities;				// By recorded number.
+	private UUID[] queries;					// By recorded number.
+	private final List<ComponentType> types;	// By recorded number.
+
+	private long operationCount;
+	private long tickCount;
+
+	/**
+	 * <p>Replays the recording up to and including the next tick marker.</p>
+	 *
+	 * @return True if a tick was replayed, false if the recording ended
+	 * before the next tick marker.
+	 *
+	 * @throws IOException If the recording cannot be read, or is malformed.
+	 */
+	public boolean replayTick() throws IOException {
+		while (!this.finished) {
+			int operation = this.in.read();
+			if (operation < 0) {
+				this.finished = true;
+				break;
+			}
+
+			try {
+				if (this.replay(operation)) {
+					return true;
+				}
+			} catch (EOFException exception) {
+				throw new IOException("The recording ends in the middle of an operation.", exception);
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * <p>Replays the rest of the recording.</p>
+	 *
+	 * @return The number of ticks replayed.
+	 *
+	 * @throws IOException If the recording cannot be read, or is malformed.
+	 */
+	public long replayAll() throws IOException {
+		long ticks = 0;
+		while (this.replayTick()) {
+			ticks++;
+		}
+
+		return ticks;
+	}
+
+	/**
+	 * @return The number of operations replayed so far, including ticks.
+	 */
+	public long getOperationCount() {
+		return this.operationCount;
+	}
+
+	/**
+	 * @return The number of ticks replayed so far.
+	 */
+	public long getTickCount() {
+		return this.tickCount;
+	}
+
+	// Replay a single operation, returning whether it was a tick:
+	private boolean replay(int operation) throws IOException {
+		if (operation != RecordingFormat.DEFINE_TYPE) {
+			this.operationCount++;		// Naming a type is not a change of the manager.
+		}
+
+		switch (operation) {
+			case RecordingFormat.TICK:
+				this.manager.tick(RecordingFormat.readVarLong(this.in));
+				this.tickCount++;
+				return true;
+
+			case RecordingFormat.DEFINE_TYPE:
+				this.defineType(RecordingFormat.readVarInt(this.in), this.in.readUTF());
+				return false;
+
+			case RecordingFormat.ADD_ENTITY: {
+				int number = RecordingFormat.readVarInt(this.in);
+				if (number >= this.entities.length) {
+					this.entities = Arrays.copyOf(this.entities, Math.max(number + 1, this.entities.length * 2));
+				}
+
+				this.entities[number] = this.manager.createEntity();
+				return false;
+			}
+
+			case RecordingFormat.DESTROY_ENTITY: {
+				int number = RecordingFormat.readVarInt(this.in);
+				this.manager.destroyEntity(this.getEntity(number));
+				this.entities[number] = null;
+				return false;
+			}
+
+			case RecordingFormat.ADD_COMPONENT: {
+				Entity entity = this.getEntity(RecordingFormat.readVarInt(this.in));
+				entity.addComponent(this.getType(RecordingFormat.readVarInt(this.in)).create());
+				return false;
+			}
+
+			case RecordingFormat.REMOVE_COMPONENT: {
+				Entity entity = this.getEntity(RecordingFormat.readVarInt(this.in));
+				entity.removeComponent(this.getType(RecordingFormat.readVarInt(this.in)).signature);
+				return false;
+			}
+
+			case RecordingFormat.CREATE_QUERY: {
+				int number = RecordingFormat.readVarInt(this.in);
+				if (number >= this.queries.length) {
+					this.queries = Arrays.copyOf(this.queries, Math.max(number + 1, this.queries.length * 2));
+				}
+
+				this.queries[number] = this.manager.createQuery(this.readSignatures());
+				return false;
+			}
+
+			case RecordingFormat.UPDATE_QUERY: {
+				UUID queryId = this.getQuery(RecordingFormat.readVarInt(this.in));
+				this.manager.updateQuery(queryId, this.readSignatures());
+				return false;
+			}
+
+			case RecordingFormat.DISPOSE_QUERY: {
+				int number = RecordingFormat.readVarInt(this.in);
+				this.manager.disposeQuery(this.getQuery(number));
+				this.queries[number] = null;
+				return false;
+			}
+
+			case RecordingFormat.EXECUTE_QUERY:
+				this.manager.executeQuery(this.getQuery(RecordingFormat.readVarInt(this.in)));
+				return false;
+
+			default:
+				throw new IOException("The recording contains an unknown operation: " + operation + ".");
+		}
+	}
+
+	// The entity replayed with a recorded number:
+	private Entity getEntity(int number) throws IOException {
+		if (number >= this.entities.length || this.entities[number] == null) {
+			throw new IOException("The recording refers to an entity which does not exist: " + number + ".");
+		}
+
+		return this.entities[number];
+	}
+
+	// The query replayed with a recorded number:
+	private UUID getQuery(int number) throws IOException {
+		if (number >= this.queries.length || this.queries[number] == null) {
+			throw new IOException("The recording refers to a query which does not exist: " + number + ".");
+		}
+
+		return this.queries[number];
+	}
+
+	// The component type with a recorded number:
+	private ComponentType getType(int number) throws IOException {
+		if (number >= this.types.size()) {
+			throw new IOException("The recording refers to a component type which was not defined: " + number + ".");
+		}
+
+		return this.types.get(number);
+	}
+
+	// Read the signatures of a query:
+	private Class<?>[] readSignatures() throws IOException {
+		Class<?>[] signatures = new Class<?>[RecordingFormat.readVarInt(this.in)];
+		for (int position = 0; position < signatures.length; position++) {
+			signatures[position] = this.getType(RecordingFormat.readVarInt(this.in)).signature;
+		}
+
+		return signatures;
+	}
+
+	// Look up the class of a component type named in the recording:
+	private void defineType(int number, String name) throws IOException {
+		if (number != this.types.size()) {
+			throw new IOException("The recording defines component types out of order.");
+		}
+
+		Class<?> signature;
+		try {
+			signature = Class.forName(name, false, Thread.currentThread().getContextClassLoader());
+		} catch (ClassNotFoundException exception) {
+			throw new IOException("The recorded component type cannot be found: " + name + ".", exception);
+		}
+
+		ComponentType type = this.templates.get(signature);
+		this.types.add(type != null ? type : new ComponentType(signature, null, null));
+	}
+
+	// How to create the replayed components of a type:
+	private static class ComponentType {
+
+		public ComponentType(Class<?> signature, Component template, ComponentCopier<?> copier) {
+			this.signature = signature;
+			this.template = template;
+			this.copier = copier;
+		}
+
+		private final Class<?> signature;
+		private final Component template;
+		private final ComponentCopier<?> copier;
+		private Constructor<?> constructor;		// Looked up when first needed.
+
+		@SuppressWarnings("unchecked")
+		public Component create() {
+			if (this.copier != null) {
+				return ((ComponentCopier<Component>)this.copier).copy(this.template);
+			}
+
+			try {
+				if (this.constructor == null) {
+					this.constructor = this.signature.getDeclaredConstructor();
+					this.constructor.setAccessible(true);
+				}
+
+				return (Component)this.constructor.newInstance();
+			} catch (ReflectiveOperationException exception) {
+				throw new IllegalStateException("The component type " + this.signature.getName() + " cannot be instantiated; set a template for it.", exception);
+			}
+		}
+
+	}
+
+}
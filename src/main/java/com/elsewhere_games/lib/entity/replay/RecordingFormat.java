@@ -0,0 +1,76 @@
+package com.elsewhere_games.lib.entity.replay;
+
+// Java Utilities
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * <p>The format of a recording, shared by the recorder and the replayer. A
+ * recording is a header followed by a stream of operations, each a single
+ * byte followed by its operands.</p>
+ *
+ * <p>Entities, queries and component types are referred to by small numbers
+ * instead of their identifiers. Numbers of destroyed entities and disposed
+ * queries are handed out again, and a component type is named once, the
+ * first time it is used. All numbers are written as variable-length
+ * integers, so most operations take two or three bytes.</p>
+ */
+final class RecordingFormat {
+
+	private RecordingFormat() {
+	}
+
+	//// Header ////
+
+	static final int MAGIC = 0x45435352;
+	static final int FORMAT_VERSION = 1;
+
+	//// Operations ////
+
+	static final int TICK = 1;				// Elapsed time.
+	static final int DEFINE_TYPE = 2;		// Type number, class name.
+	static final int ADD_ENTITY = 3;		// Entity number.
+	static final int DESTROY_ENTITY = 4;	// Entity number.
+	static final int ADD_COMPONENT = 5;		// Entity number, type number.
+	static final int REMOVE_COMPONENT = 6;	// Entity number, type number.
+	static final int CREATE_QUERY = 7;		// Query number, type count, type numbers.
+	static final int UPDATE_QUERY = 8;		// Query number, type count, type numbers.
+	static final int DISPOSE_QUERY = 9;		// Query number.
+	static final int EXECUTE_QUERY = 10;	// Query number.
+
+	//// Variable-Length Integers ////
+
+	// Seven bits per byte, lowest first, with the high bit set on all but the last:
+	static void writeVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int)(value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+
+		out.writeByte((int)value);
+	}
+
+	static long readVarLong(DataInput in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int part = in.readUnsignedByte();
+			value |= (long)(part & 0x7F) << shift;
+			if ((part & 0x80) == 0) {
+				return value;
+			}
+		}
+
+		throw new IOException("The recording contains a malformed number.");
+	}
+
+	static int readVarInt(DataInput in) throws IOException {
+		long value = readVarLong(in);
+		if (value < 0 || value > Integer.MAX_VALUE) {
+			throw new IOException("The recording contains a number out of range.");
+		}
+
+		return (int)value;
+	}
+
+}
@@ -0,0 +1,21 @@
+package com.elsewhere_games.lib.entity.shard;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.EntityManager;
+
+/**
+ * <p>The work done on each shard of a {@link ShardedWorld} during a tick. The
+ * task is called concurrently for all shards, each on the worker thread owning
+ * that shard, so it may only access the shard it is handed.</p>
+ */
+public interface ShardTask {
+
+	/**
+	 * <p>Called once per tick for each shard.</p>
+	 *
+	 * @param shard The manager holding the entities of the shard.
+	 * @param shardIndex The index of the shard in the world.
+	 */
+	public void update(EntityManager shard, int shardIndex);
+
+}
@@ -0,0 +1,360 @@
+package com.elsewhere_games.lib.entity.shard;
+
+// Java Containers
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+// Java Concurrency
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+// Java Utilities
+import java.util.UUID;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.Entity;
+import com.elsewhere_games.lib.entity.EntityManager;
+
+/**
+ * <p>A single logical world split over several entity managers, the shards,
+ * each of which is updated by its own worker thread. How entities are divided
+ * over the shards, for instance by spatial region, is up to the user of the
+ * world.</p>
+ *
+ * <p>The world is driven by calling {@link #tick(ShardTask)}, which updates all
+ * shards in parallel and returns once all of them have finished. Between
+ * ticks, the world is quiescent: entities requested to move to another shard
+ * are migrated, and queries can be executed across all shards.</p>
+ *
+ * <p>During a tick, each shard may only be accessed from its own worker
+ * thread, with the exception of {@link #requestMigration(Entity, int)}, which
+ * is safe to call from any thread. All other methods of this world must only be
+ * called between ticks, from the thread driving the world.</p>
+ */
+public class ShardedWorld {
+
+	//// Life-Cycle ////
+
+	/**
+	 * <p>Class constructor. Creates a world with the specified number of
+	 * empty shards, and starts a worker thread for each of them.</p>
+	 *
+	 * @param shardCount The number of shards to split the world in.
+	 *
+	 * @throws IllegalArgumentException If the number of shards is less than
+	 * one.
+	 */
+	public ShardedWorld(int shardCount) {
+		if (shardCount < 1) {
+			throw new IllegalArgumentException("A world requires at least one shard.");
+		}
+
+		this.shards = new EntityManager[shardCount];
+		this.workers = new ExecutorService[shardCount];
+
+		for (int shardIndex = 0; shardIndex < shardCount; shardIndex++) {
+			this.shards[shardIndex] = new EntityManager();
+			this.workers[shardIndex] = Executors.newSingleThreadExecutor(new WorkerFactory(shardIndex));
+		}
+
+		this.pendingMigrations = new ConcurrentLinkedQueue<Migration>();
+		this.queries = new HashMap<UUID, UUID[]>();
+	}
+
+	/**
+	 * <p>Stops the worker threads of this world. The world can no longer be
+	 * ticked afterwards, but its shards remain accessible.</p>
+	 */
+	public void shutdown() {
+		for (ExecutorService worker : this.workers) {
+			worker.shutdown();
+		}
+	}
+
+	//// Shards ////
+
+	private final EntityManager[] shards;
+
+	/**
+	 * @return The number of shards in this world.
+	 */
+	public int getShardCount() {
+		return this.shards.length;
+	}
+
+	/**
+	 * <p>Gets the manager holding the entities of a shard.</p>
+	 *
+	 * @param shardIndex The index of the shard.
+	 * @return The manager of the shard.
+	 */
+	public EntityManager getShard(int shardIndex) {
+		return this.shards[shardIndex];
+	}
+
+	/**
+	 * <p>Finds the shard holding the specified entity.</p>
+	 *
+	 * @param entity The entity to look for.
+	 * @return The index of the shard holding the entity, or <code>-1</code>
+	 * if no shard of this world holds it.
+	 */
+	public int getShardOf(Entity entity) {
+		for (int shardIndex = 0; shardIndex < this.shards.length; shardIndex++) {
+			if (this.shards[shardIndex].hasEntity(entity)) {
+				return shardIndex;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * <p>Counts the entities across all shards.</p>
+	 *
+	 * @return The total number of entities in this world.
+	 */
+	public int getEntityCount() {
+		int count = 0;
+		for (EntityManager shard : this.shards) {
+			count += shard.getEntityCount();
+		}
+
+		return count;
+	}
+
+	//// Ticks ////
+
+	private final ExecutorService[] workers;
+
+	/**
+	 * <p>Runs the <code>task</code> for every shard, each on the worker thread
+	 * of that shard, and waits for all of them to complete. Once they have,
+	 * all migrations requested during the tick are applied.</p>
+	 *
+	 * @param task The work to do on each shard.
+	 *
+	 * @throws IllegalStateException If the task failed on any of the shards;
+	 * migrations are not applied in that case.
+	 */
+	public void tick(final ShardTask task) {
+		List<Future<?>> updates = new ArrayList<Future<?>>(this.shards.length);
+
+		for (int shardIndex = 0; shardIndex < this.shards.length; shardIndex++) {
+			final EntityManager shard = this.shards[shardIndex];
+			final int index = shardIndex;
+
+			updates.add
+			(
+				this.workers[shardIndex].submit
+				(
+					new Runnable() {
+
+						@Override
+						public void run() {
+							task.update(shard, index);
+						}
+					}
+				)
+			);
+		}
+
+		// Wait for all shards, even if one of them fails:
+		Throwable failure = null;
+		for (Future<?> update : updates) {
+			try {
+				update.get();
+			}
+
+			catch (ExecutionException executionException) {
+				if (failure == null) {
+					failure = executionException.getCause();
+				}
+			}
+
+			catch (InterruptedException interruptedException) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for the shards to update.", interruptedException);
+			}
+		}
+
+		if (failure != null) {
+			throw new IllegalStateException("A shard failed to update.", failure);
+		}
+
+		this.applyMigrations();
+	}
+
+	// Name the worker threads after their shard, and let them die with the VM:
+	private static class WorkerFactory implements ThreadFactory {
+
+		public WorkerFactory(int shardIndex) {
+			this.shardIndex = shardIndex;
+		}
+
+		private final int shardIndex;
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "shard-" + this.shardIndex);
+			thread.setDaemon(true);
+
+			return thread;
+		}
+
+	}
+
+	//// Migration ////
+
+	/*
+	 * Entities cannot move between shards while the shards are updating, as
+	 * that would require both of them to be locked. Instead, migrations are
+	 * queued and applied once all shards have finished their tick.
+	 */
+
+	private final Queue<Migration> pendingMigrations;
+
+	/**
+	 * <p>Requests the <code>entity</code> to be moved to another shard. The
+	 * entity is moved, together with its components and listeners, at the end
+	 * of the current tick, or at the end of the next tick if none is in
+	 * progress. Only the last request for an entity in a tick has effect.</p>
+	 *
+	 * <p>This method may be called from any thread.</p>
+	 *
+	 * @param entity The entity to move.
+	 * @param targetShard The index of the shard to move the entity to.
+	 *
+	 * @throws IndexOutOfBoundsException If there is no shard with the
+	 * specified index.
+	 */
+	public void requestMigration(Entity entity, int targetShard) {
+		if (targetShard < 0 || targetShard >= this.shards.length) {
+			throw new IndexOutOfBoundsException("There is no shard with index " + targetShard + ".");
+		}
+
+		this.pendingMigrations.add(new Migration(entity, targetShard));
+	}
+
+	/**
+	 * <p>Moves all entities for which a migration was requested to their
+	 * target shard. This is done at the end of every tick, but can be called
+	 * between ticks to apply migrations requested outside of one. Requests for
+	 * entities no longer held by any shard are ignored.</p>
+	 */
+	public void applyMigrations() {
+		Map<Entity, Integer> targets = new LinkedHashMap<Entity, Integer>();
+
+		Migration migration;
+		while ((migration = this.pendingMigrations.poll()) != null) {
+			targets.put(migration.entity, migration.targetShard);
+		}
+
+		for (Map.Entry<Entity, Integer> target : targets.entrySet()) {
+			Entity entity = target.getKey();
+			int sourceShard = this.getShardOf(entity);
+
+			if (sourceShard != -1 && sourceShard != target.getValue()) {
+				this.shards[sourceShard].destroyEntity(entity);
+				this.shards[target.getValue()].addEntity(entity);
+			}
+		}
+	}
+
+	// A request to move an entity to another shard:
+	private static class Migration {
+
+		public Migration(Entity entity, int targetShard) {
+			this.entity = entity;
+			this.targetShard = targetShard;
+		}
+
+		private final Entity entity;
+		private final int targetShard;
+
+	}
+
+	//// Queries ////
+
+	/*
+	 * A query of the world is a query of each of its shards, so that every
+	 * shard can maintain its own cached results.
+	 */
+
+	private final Map<UUID, UUID[]> queries;
+
+	/**
+	 * <p>Creates a query into all shards of this world which, when executed,
+	 * will return all entities which hold all components with the specified
+	 * <code>signatures</code>.</p>
+	 *
+	 * @param signatures When the query is executed, all included entities will
+	 * all components specified here.
+	 *
+	 * @return An identifier with which the query can be executed against this
+	 * world.
+	 */
+	public UUID createQuery(Class<?>... signatures) {
+		UUID[] shardQueries = new UUID[this.shards.length];
+		for (int shardIndex = 0; shardIndex < this.shards.length; shardIndex++) {
+			shardQueries[shardIndex] = this.shards[shardIndex].createQuery(signatures);
+		}
+
+		UUID queryId = UUID.randomUUID();
+		this.queries.put(queryId, shardQueries);
+
+		return queryId;
+	}
+
+	/**
+	 * <p>Executes the query with <code>queryId</code> against a single shard.
+	 * This can be used from the worker thread of that shard during a tick.</p>
+	 *
+	 * @param queryId The identifier of the query to execute.
+	 * @param shardIndex The index of the shard to execute the query against.
+	 *
+	 * @return A list of all entities in the shard which meet the specifications
+	 * of the query.
+	 */
+	public List<Entity> executeQuery(UUID queryId, int shardIndex) {
+		return this.shards[shardIndex].executeQuery(this.queries.get(queryId)[shardIndex]);
+	}
+
+	/**
+	 * <p>Executes the query with <code>queryId</code> against all shards of
+	 * this world, and combines their results.</p>
+	 *
+	 * @param queryId The identifier of the query to execute.
+	 *
+	 * @return A new list of all entities in this world which meet the
+	 * specifications of the query, grouped by shard.
+	 */
+	public List<Entity> executeQuery(UUID queryId) {
+		UUID[] shardQueries = this.queries.get(queryId);
+
+		List<List<Entity>> shardResults = new ArrayList<List<Entity>>(this.shards.length);
+		int resultCount = 0;
+
+		for (int shardIndex = 0; shardIndex < this.shards.length; shardIndex++) {
+			List<Entity> shardResult = this.shards[shardIndex].executeQuery(shardQueries[shardIndex]);
+			shardResults.add(shardResult);
+			resultCount += shardResult.size();
+		}
+
+		List<Entity> results = new ArrayList<Entity>(resultCount);
+		for (List<Entity> shardResult : shardResults) {
+			results.addAll(shardResult);
+		}
+
+		return results;
+	}
+
+}
@@ -0,0 +1,270 @@
+package com.elsewhere_games.lib.entity.storage;
+
+// Java Utilities
+import java.util.Arrays;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.Component;
+import com.elsewhere_games.lib.entity.Entity;
+
+/**
+ * <p>Stores all components of a single type held by the entities of a
+ * manager. Components are kept in packed arrays, so that they can be iterated
+ * by position, and are indexed by the slot the manager assigned to the entity
+ * holding them, so that they can be looked up without hashing.</p>
+ *
+ * <p>Storages are not thread-safe, and are only meant to be modified by the
+ * manager which owns them.</p>
+ *
+ * @see {@link StorageStrategy}
+ */
+public abstract class ComponentStorage {
+
+	//// Life-Cycle ////
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * <p>Class constructor. Creates an empty storage.</p>
+	 */
+	protected ComponentStorage() {
+		this.sparse = new int[INITIAL_CAPACITY];
+		Arrays.fill(this.sparse, ABSENT);
+
+		this.indices = new int[INITIAL_CAPACITY];
+		this.entities = new Entity[INITIAL_CAPACITY];
+		this.components = new Component[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * @return The strategy this storage implements.
+	 */
+	public abstract StorageStrategy getStrategy();
+
+	//// Storage ////
+
+	/*
+	 * The sparse array maps an entity slot to the position of its component in
+	 * the packed arrays, or ABSENT if the entity has no such component. The
+	 * packed arrays hold, per position, the slot, the entity and the component.
+	 */
+
+	/** <p>Marks a slot in the sparse array which has no component.</p> */
+	protected static final int ABSENT = -1;
+
+	protected int[] sparse;
+	protected int[] indices;
+	protected Entity[] entities;
+	protected Component[] components;
+	protected int size;
+
+	/**
+	 * <p>Stores the <code>component</code> of the <code>entity</code> in the
+	 * specified slot, replacing any component already stored there.</p>
+	 *
+	 * @param index The slot of the entity in its manager.
+	 * @param entity The entity holding the component.
+	 * @param component The component to store.
+	 */
+	public abstract void put(int index, Entity entity, Component component);
+
+	/**
+	 * <p>Removes the component stored in the specified slot, if any.</p>
+	 *
+	 * @param index The slot of the entity in its manager.
+	 * @return The removed component, or <code>null</code> if there was none.
+	 */
+	public abstract Component remove(int index);
+
+	/**
+	 * <p>Moves the component stored in one slot to another, unoccupied,
+	 * slot. Used by the manager when it renumbers its entities.</p>
+	 *
+	 * @param fromIndex The slot the component is stored in.
+	 * @param toIndex The slot to store the component in.
+	 */
+	public void move(int fromIndex, int toIndex) {
+		Entity entity = this.entities[this.sparse[fromIndex]];
+		this.put(toIndex, entity, this.remove(fromIndex));
+	}
+
+	/**
+	 * <p>Check to see if a component is stored for the specified slot.</p>
+	 *
+	 * @param index The slot of the entity in its manager.
+	 * @return <code>true</code> if a component is stored for the slot,
+	 * <code>false</code> otherwise.
+	 */
+	public boolean contains(int index) {
+		return index >= 0 && index < this.sparse.length && this.sparse[index] != ABSENT;
+	}
+
+	/**
+	 * <p>Gets the component stored for the specified slot.</p>
+	 *
+	 * @param index The slot of the entity in its manager.
+	 * @return The stored component, or <code>null</code> if there is none.
+	 */
+	public Component get(int index) {
+		if (!this.contains(index)) {
+			return null;
+		}
+
+		return this.components[this.sparse[index]];
+	}
+
+	/**
+	 * @return The number of components in this storage.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return The number of components this storage can hold before its
+	 * packed arrays have to grow.
+	 */
+	public int capacity() {
+		return this.components.length;
+	}
+
+	/**
+	 * <p>Grows the arrays of this storage, if needed, so that it can hold the
+	 * specified number of components, and components for every slot below
+	 * the specified slot, without growing again.</p>
+	 *
+	 * @param capacity The number of components to make room for.
+	 * @param maxIndex The highest slot to make room for.
+	 */
+	public void ensureCapacity(int capacity, int maxIndex) {
+		this.ensureSparseCapacity(maxIndex);
+
+		if (capacity > this.components.length) {
+			this.indices = Arrays.copyOf(this.indices, capacity);
+			this.entities = Arrays.copyOf(this.entities, capacity);
+			this.components = Arrays.copyOf(this.components, capacity);
+		}
+	}
+
+	/**
+	 * @return The number of slots the sparse array of this storage covers.
+	 */
+	public int sparseCapacity() {
+		return this.sparse.length;
+	}
+
+	/**
+	 * <p>Gets the entity at the specified <code>position</code> of the packed
+	 * arrays, which ranges from zero up to the size of this storage.</p>
+	 *
+	 * @param position The position in the packed arrays.
+	 * @return The entity stored at that position.
+	 */
+	public Entity getEntity(int position) {
+		return this.entities[position];
+	}
+
+	/**
+	 * <p>Gets the component at the specified <code>position</code> of the
+	 * packed arrays, which ranges from zero up to the size of this storage.</p>
+	 *
+	 * @param position The position in the packed arrays.
+	 * @return The component stored at that position.
+	 */
+	public Component getComponent(int position) {
+		return this.components[position];
+	}
+
+	/**
+	 * <p>Removes all components from this storage.</p>
+	 */
+	public void clear() {
+		for (int position = 0; position < this.size; position++) {
+			this.sparse[this.indices[position]] = ABSENT;
+			this.entities[position] = null;
+			this.components[position] = null;
+		}
+
+		this.size = 0;
+	}
+
+	/**
+	 * <p>Shrinks the arrays of this storage to fit its contents, and puts the
+	 * packed arrays back in slot order, so that iterating several storages
+	 * visits the entities in the same order again.</p>
+	 */
+	public void compact() {
+		// Restore slot order, if it was lost:
+		boolean sorted = true;
+		int maxIndex = -1;
+		for (int position = 0; position < this.size; position++) {
+			if (this.indices[position] < maxIndex) {
+				sorted = false;
+			}
+
+			maxIndex = Math.max(maxIndex, this.indices[position]);
+		}
+
+		int capacity = Math.max(INITIAL_CAPACITY, this.size);
+		int[] compactIndices = new int[capacity];
+		Entity[] compactEntities = new Entity[capacity];
+		Component[] compactComponents = new Component[capacity];
+
+		if (sorted) {
+			System.arraycopy(this.indices, 0, compactIndices, 0, this.size);
+			System.arraycopy(this.entities, 0, compactEntities, 0, this.size);
+			System.arraycopy(this.components, 0, compactComponents, 0, this.size);
+		}
+		else {
+			// Sort the slots together with their current positions:
+			long[] order = new long[this.size];
+			for (int position = 0; position < this.size; position++) {
+				order[position] = ((long)this.indices[position] << 32) | position;
+			}
+
+			Arrays.sort(order);
+
+			for (int position = 0; position < this.size; position++) {
+				int from = (int)order[position];
+				compactIndices[position] = this.indices[from];
+				compactEntities[position] = this.entities[from];
+				compactComponents[position] = this.components[from];
+			}
+		}
+
+		this.indices = compactIndices;
+		this.entities = compactEntities;
+		this.components = compactComponents;
+
+		this.sparse = new int[Math.max(INITIAL_CAPACITY, maxIndex + 1)];
+		Arrays.fill(this.sparse, ABSENT);
+		for (int position = 0; position < this.size; position++) {
+			this.sparse[this.indices[position]] = position;
+		}
+	}
+
+	// Make sure the sparse array can hold the specified slot:
+	protected void ensureSparseCapacity(int index) {
+		if (index < this.sparse.length) {
+			return;
+		}
+
+		int oldLength = this.sparse.length;
+		this.sparse = Arrays.copyOf(this.sparse, Math.max(index + 1, oldLength * 2));
+		Arrays.fill(this.sparse, oldLength, this.sparse.length, ABSENT);
+	}
+
+	// Make sure the packed arrays can hold one more component:
+	protected void ensurePackedCapacity() {
+		if (this.size < this.components.length) {
+			return;
+		}
+
+		int capacity = this.components.length * 2;
+		this.indices = Arrays.copyOf(this.indices, capacity);
+		this.entities = Arrays.copyOf(this.entities, capacity);
+		this.components = Arrays.copyOf(this.components, capacity);
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.elsewhere_games.lib.entity.storage;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.Component;
+import com.elsewhere_games.lib.entity.Entity;
+
+/**
+ * <p>A storage which keeps its packed arrays ordered by entity slot. Since the
+ * manager hands out slots in ascending order, appending components for new
+ * entities is cheap, while adding or removing components of older entities
+ * shifts every component after them. In return, iteration order is stable and
+ * identical across all dense storages of the same manager.</p>
+ *
+ * @see {@link StorageStrategy#DENSE}
+ */
+public class DenseStorage extends ComponentStorage {
+
+	@Override
+	public StorageStrategy getStrategy() {
+		return StorageStrategy.DENSE;
+	}
+
+	@Override
+	public void put(int index, Entity entity, Component component) {
+		if (this.contains(index)) {
+			this.components[this.sparse[index]] = component;
+			return;
+		}
+
+		this.ensureSparseCapacity(index);
+		this.ensurePackedCapacity();
+
+		// Find the position which keeps the slots in ascending order:
+		int position = this.size;
+		if (position > 0 && this.indices[position - 1] > index) {
+			position = this.findInsertionPoint(index);
+			this.shift(position, position + 1, this.size - position);
+		}
+
+		this.indices[position] = index;
+		this.entities[position] = entity;
+		this.components[position] = component;
+		this.sparse[index] = position;
+		this.size++;
+	}
+
+	@Override
+	public Component remove(int index) {
+		if (!this.contains(index)) {
+			return null;
+		}
+
+		int position = this.sparse[index];
+		Component removed = this.components[position];
+
+		this.shift(position + 1, position, this.size - position - 1);
+		this.size--;
+
+		this.entities[this.size] = null;
+		this.components[this.size] = null;
+		this.sparse[index] = ABSENT;
+
+		return removed;
+	}
+
+	// Binary search for the first position holding a slot above the index:
+	private int findInsertionPoint(int index) {
+		int low = 0;
+		int high = this.size;
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (this.indices[middle] < index) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	// Move a run of packed entries and update the sparse array to match:
+	private void shift(int from, int to, int length) {
+		System.arraycopy(this.indices, from, this.indices, to, length);
+		System.arraycopy(this.entities, from, this.entities, to, length);
+		System.arraycopy(this.components, from, this.components, to, length);
+
+		for (int position = to; position < to + length; position++) {
+			this.sparse[this.indices[position]] = position;
+		}
+	}
+
+}
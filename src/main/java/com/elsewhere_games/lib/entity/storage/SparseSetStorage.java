@@ -0,0 +1,73 @@
+package com.elsewhere_games.lib.entity.storage;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.Component;
+import com.elsewhere_games.lib.entity.Entity;
+
+/**
+ * <p>A storage which appends new components to the end of its packed arrays
+ * and fills the gap left by a removed component with the last component. Both
+ * operations take constant time, but the order of iteration is not stable.</p>
+ *
+ * @see {@link StorageStrategy#SPARSE_SET}
+ */
+public class SparseSetStorage extends ComponentStorage {
+
+	@Override
+	public StorageStrategy getStrategy() {
+		return StorageStrategy.SPARSE_SET;
+	}
+
+	@Override
+	public void put(int index, Entity entity, Component component) {
+		if (this.contains(index)) {
+			this.components[this.sparse[index]] = component;
+			return;
+		}
+
+		this.ensureSparseCapacity(index);
+		this.ensurePackedCapacity();
+
+		int position = this.size++;
+		this.indices[position] = index;
+		this.entities[position] = entity;
+		this.components[position] = component;
+		this.sparse[index] = position;
+	}
+
+	@Override
+	public void move(int fromIndex, int toIndex) {
+		this.ensureSparseCapacity(toIndex);
+
+		int position = this.sparse[fromIndex];
+		this.indices[position] = toIndex;
+		this.sparse[toIndex] = position;
+		this.sparse[fromIndex] = ABSENT;
+	}
+
+	@Override
+	public Component remove(int index) {
+		if (!this.contains(index)) {
+			return null;
+		}
+
+		int position = this.sparse[index];
+		Component removed = this.components[position];
+
+		// Move the last component into the gap:
+		int last = --this.size;
+		if (position != last) {
+			this.indices[position] = this.indices[last];
+			this.entities[position] = this.entities[last];
+			this.components[position] = this.components[last];
+			this.sparse[this.indices[position]] = position;
+		}
+
+		this.entities[last] = null;
+		this.components[last] = null;
+		this.sparse[index] = ABSENT;
+
+		return removed;
+	}
+
+}
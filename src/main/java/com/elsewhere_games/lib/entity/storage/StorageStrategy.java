@@ -0,0 +1,41 @@
+package com.elsewhere_games.lib.entity.storage;
+
+/**
+ * <p>Describes the layouts an {@link com.elsewhere_games.lib.entity.EntityManager}
+ * can use to store the components of a single type. The strategy can be chosen
+ * per component type, trading the cost of adding and removing components for
+ * the order in which they are iterated.</p>
+ */
+public enum StorageStrategy {
+
+	/**
+	 * <p>A sparse set: a packed array of components with a sparse index from
+	 * entity to position. Adding and removing a component are both constant
+	 * time, at the expense of iteration order changing on every removal. Best
+	 * for component types which are added and removed frequently.</p>
+	 */
+	SPARSE_SET,
+
+	/**
+	 * <p>A packed array of components kept in entity order. Iterating several
+	 * dense storages visits entities in the same order, but adding or removing
+	 * a component in the middle of the array shifts all components after it.
+	 * Best for component types which, once added, are rarely removed.</p>
+	 */
+	DENSE;
+
+	/**
+	 * <p>Creates a new, empty storage using this strategy.</p>
+	 *
+	 * @return An empty component storage.
+	 */
+	public ComponentStorage createStorage() {
+		switch (this) {
+			case DENSE:
+				return new DenseStorage();
+			default:
+				return new SparseSetStorage();
+		}
+	}
+
+}
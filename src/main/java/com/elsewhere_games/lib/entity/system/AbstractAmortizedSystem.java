@@ -0,0 +1,284 @@
+package com.elsewhere_games.lib.entity.system;
+
+// Java Containers
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Java Utilities
+import java.util.UUID;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.Entity;
+import com.elsewhere_games.lib.entity.EntityManager;
+
+// Events Elsewhere
+import com.elsewhere_games.lib.entity.event.QueryObserver;
+
+/**
+ * <p>A cyclical system which spreads the processing of the entities matching
+ * a query over several cycles, for work which does not have to touch every
+ * entity on every cycle, such as re-planning or visibility checks.</p>
+ *
+ * <p>The matching entities are divided into a number of slices, one of which
+ * is processed per update, so that each entity is processed once every so
+ * many updates. An entity is assigned to a slice by its identifier, so its
+ * slice does not change as other entities come and go. Updates themselves can
+ * also be limited to one in every so many cycles, and staggered against the
+ * updates of other systems.</p>
+ *
+ * <p>The entities of each slice are kept up to date by observing the query,
+ * so an update only visits the entities of its own slice. Each update first
+ * takes in the entities which started or stopped matching since the last,
+ * whether or not the manager was ticked in between.</p>
+ *
+ * <p>As the manager has to be synchronized externally, updates synchronize
+ * on the manager itself, and so should other threads changing it while this
+ * system is running. A system which is no longer used has to be disposed,
+ * to release its query.</p>
+ */
+public abstract class AbstractAmortizedSystem extends AbstractCyclicalSystem {
+
+	/*
+	 * Constructors
+	 */
+
+	/**
+	 * <p>Class constructor that allows the <code>entities</code> controlled by
+	 * this system to be specified, as well as the delay between each cycle and
+	 * the components of the entities to process. Initially, all entities are
+	 * processed on every cycle.</p>
+	 *
+	 * @param entities The entities controlled by this system.
+	 * @param cycleDuration How long between each cycle, in milliseconds.
+	 * @param signatures The components an entity has to hold to be processed.
+	 */
+	public AbstractAmortizedSystem(final EntityManager entities, final long cycleDuration, final Class<?>... signatures) {
+		super(entities, cycleDuration);
+
+		this.setSliceCount(1);
+		this.setUpdateInterval(1, 0);
+
+		// The entities matching already are reported by the first update:
+		synchronized (entities) {
+			this.queryId = entities.createQuery(signatures);
+			entities.addQueryObserver(this.queryId, this.membership);
+		}
+	}
+
+	private final UUID queryId;
+	private final SliceMembership membership = new SliceMembership();
+
+	/**
+	 * <p>Stops following the query of this system, and disposes it. To be
+	 * called once this system is stopped, or if it was never started; later
+	 * updates process no entities.</p>
+	 */
+	public void dispose() {
+		synchronized (this.entities) {
+			this.entities.removeQueryObserver(this.queryId, this.membership);
+			this.entities.disposeQuery(this.queryId);
+
+			this.positions.clear();
+			for (List<Entity> slice : this.slices) {
+				slice.clear();
+			}
+		}
+	}
+
+	/*
+	 * Slices
+	 */
+
+	private int sliceCount;
+	private int currentSlice;
+	private long[] sliceDelays;			// Time passed since each slice was last processed.
+	private List<List<Entity>> slices;		// The matching entities of each slice.
+
+	// The position of each matching entity in the list of its slice:
+	private final Map<Entity, Integer> positions = new HashMap<Entity, Integer>();
+
+	/**
+	 * <p>Divides the entities into the specified number of slices, so that
+	 * each entity is processed once every <code>sliceCount</code> updates.</p>
+	 *
+	 * @param sliceCount The number of slices.
+	 *
+	 * @throws IllegalArgumentException If the slice count is not positive.
+	 */
+	public void setSliceCount(int sliceCount) {
+		if (sliceCount <= 0) {
+			throw new IllegalArgumentException("The number of slices has to be positive.");
+		}
+
+		synchronized (this.entities) {
+			this.sliceCount = sliceCount;
+			this.currentSlice = 0;
+			this.sliceDelays = new long[sliceCount];
+
+			this.slices = new ArrayList<List<Entity>>(sliceCount);
+			for (int slice = 0; slice < sliceCount; slice++) {
+				this.slices.add(new ArrayList<Entity>());
+			}
+
+			// Redistribute the matching entities over the new slices:
+			List<Entity> matches = new ArrayList<Entity>(this.positions.keySet());
+			this.positions.clear();
+			for (Entity entity : matches) {
+				this.addToSlice(entity);
+			}
+		}
+	}
+
+	/**
+	 * @return The number of slices the entities are divided into.
+	 */
+	public int getSliceCount() {
+		return this.sliceCount;
+	}
+
+	/**
+	 * <p>Gets the slice an entity belongs to, which only depends on the
+	 * identifier of the entity and the number of slices.</p>
+	 *
+	 * @param entity The entity to get the slice of.
+	 * @return The slice, from zero up to the number of slices.
+	 */
+	public int getSliceOf(Entity entity) {
+		int hash = entity.getId().hashCode();
+		hash ^= hash >>> 16;
+
+		return (hash & Integer.MAX_VALUE) % this.sliceCount;
+	}
+
+	// Adds a matching entity to its slice:
+	private void addToSlice(Entity entity) {
+		List<Entity> slice = this.slices.get(this.getSliceOf(entity));
+		this.positions.put(entity, slice.size());
+		slice.add(entity);
+	}
+
+	// Removes an entity from its slice, moving the last entity of the slice into its place:
+	private void removeFromSlice(Entity entity) {
+		Integer position = this.positions.remove(entity);
+		if (position == null) {
+			return;
+		}
+
+		List<Entity> slice = this.slices.get(this.getSliceOf(entity));
+		Entity last = slice.remove(slice.size() - 1);
+		if (last != entity) {
+			slice.set(position, last);
+			this.positions.put(last, position);
+		}
+	}
+
+	// Keeps the slices up to date as entities start and stop matching, under
+	// the same lock as the updates, whichever thread delivers the changes:
+	private class SliceMembership implements QueryObserver {
+
+		@Override
+		public void onEnter(List<Entity> entered) {
+			synchronized (entities) {
+				for (int position = 0; position < entered.size(); position++) {
+					addToSlice(entered.get(position));
+				}
+			}
+		}
+
+		@Override
+		public void onExit(List<Entity> exited) {
+			synchronized (entities) {
+				for (int position = 0; position < exited.size(); position++) {
+					removeFromSlice(exited.get(position));
+				}
+			}
+		}
+
+	}
+
+	/*
+	 * Update Rate
+	 */
+
+	private int updateInterval;
+	private int cyclesUntilUpdate;
+	private long pendingDelay;				// Time passed in cycles without an update.
+
+	/**
+	 * <p>Limits this system to updating once every <code>interval</code>
+	 * cycles, starting after <code>phase</code> cycles. Systems with the same
+	 * interval but different phases update on different cycles, so that their
+	 * work does not pile up on the same cycle.</p>
+	 *
+	 * @param interval The number of cycles between updates.
+	 * @param phase The number of cycles to skip before the first update.
+	 *
+	 * @throws IllegalArgumentException If the interval is not positive or the
+	 * phase is negative.
+	 */
+	public void setUpdateInterval(int interval, int phase) {
+		if (interval <= 0 || phase < 0) {
+			throw new IllegalArgumentException("The update interval has to be positive and the phase cannot be negative.");
+		}
+
+		this.updateInterval = interval;
+		this.cyclesUntilUpdate = phase % interval;
+	}
+
+	/**
+	 * @return The number of cycles between updates.
+	 */
+	public int getUpdateInterval() {
+		return this.updateInterval;
+	}
+
+	/*
+	 * Cycles
+	 */
+
+	@Override
+	protected void update(long delaySinceLastUpdate) {
+		this.pendingDelay += delaySinceLastUpdate;
+		if (this.cyclesUntilUpdate > 0) {
+			this.cyclesUntilUpdate--;
+			return;
+		}
+
+		this.cyclesUntilUpdate = this.updateInterval - 1;
+
+		synchronized (this.entities) {
+			for (int slice = 0; slice < this.sliceCount; slice++) {
+				this.sliceDelays[slice] += this.pendingDelay;
+			}
+
+			this.pendingDelay = 0;
+
+			// Take in the changes since the last update, without waiting for a tick:
+			this.entities.dispatchQueryEvents(this.queryId);
+
+			// Process the entities of the current slice only:
+			long sliceDelay = this.sliceDelays[this.currentSlice];
+			List<Entity> slice = this.slices.get(this.currentSlice);
+			for (int position = 0; position < slice.size(); position++) {
+				this.updateEntity(slice.get(position), sliceDelay);
+			}
+
+			this.sliceDelays[this.currentSlice] = 0;
+			this.currentSlice = (this.currentSlice + 1) % this.sliceCount;
+		}
+	}
+
+	/**
+	 * <p>Called for each entity in the slice processed by an update. The
+	 * matching entities must not be destroyed, nor may their components of
+	 * the processed types be removed, while they are being processed.</p>
+	 *
+	 * @param entity The entity to process.
+	 * @param delaySinceLastUpdate The time passed since the slice of the
+	 * entity was last processed, in milliseconds.
+	 */
+	protected abstract void updateEntity(Entity entity, long delaySinceLastUpdate);
+
+}
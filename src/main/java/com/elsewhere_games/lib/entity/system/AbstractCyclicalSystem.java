@@ -2,6 +2,7 @@ package com.elsewhere_games.lib.entity.system;
 
 import com.elsewhere_games.lib.entity.AbstractSystem;
 import com.elsewhere_games.lib.entity.EntityManager;
+import com.elsewhere_games.lib.entity.jfr.SystemUpdateEvent;
 
 public abstract class AbstractCyclicalSystem extends AbstractSystem {
 
@@ -106,8 +107,17 @@ public abstract class AbstractCyclicalSystem extends AbstractSystem {
 		@Override
 		public void run() {
 			while (!this.isInterrupted()) {
-				// Update the parent class:
+				// Update the parent class, recording it if enabled:
+				SystemUpdateEvent event = new SystemUpdateEvent();
+				event.begin();
+
 				update(this.cycleDuration);
+
+				if (event.shouldCommit()) {
+					event.setSystem(AbstractCyclicalSystem.this.getClass().getName());
+					event.setDelta(this.cycleDuration);
+					event.commit();
+				}
 				
 				// Sleep for the specified amount of time:
 				// TODO Calculate sleep time based on how long the update takes
@@ -117,7 +127,8 @@ public abstract class AbstractCyclicalSystem extends AbstractSystem {
 				
 				// If the sleep is interrupted by someone interrupting this thread:
 				catch (InterruptedException interruptedException) {
-					// Do nothing, thread will stop running.
+					// Restore the flag cleared by the sleep, so the thread stops running:
+					this.interrupt();
 				}
 				
 			}
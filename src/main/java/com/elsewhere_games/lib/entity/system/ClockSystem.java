@@ -0,0 +1,37 @@
+package com.elsewhere_games.lib.entity.system;
+
+import com.elsewhere_games.lib.entity.EntityManager;
+
+/**
+ * <p>A cyclical system which advances the clock of a manager once every cycle,
+ * expiring the entities and components whose time to live has run out.</p>
+ *
+ * @see {@link EntityManager#tick(long)}
+ */
+public class ClockSystem extends AbstractCyclicalSystem {
+
+	/*
+	 * Constructors
+	 */
+	
+	/**
+	 * <p>Class constructor that allows the <code>entities</code> whose clock
+	 * is advanced to be specified, as well as the delay between each cycle.</p>
+	 * 
+	 * @param entities The entities whose clock this system advances.
+	 * @param cycleDuration How long between each cycle, in milliseconds.
+	 */
+	public ClockSystem(final EntityManager entities, final long cycleDuration) {
+		super(entities, cycleDuration);
+	}
+	
+	/*
+	 * Cycles
+	 */
+	
+	@Override
+	protected void update(long delaySinceLastUpdate) {
+		this.entities.tick(delaySinceLastUpdate);
+	}
+	
+}
@@ -0,0 +1,308 @@
+package com.elsewhere_games.lib.entity.time;
+
+/**
+ * <p>A hierarchical timing wheel, which schedules payloads to expire after a
+ * delay. Scheduling and cancelling take constant time, and advancing the clock
+ * costs time proportional to the number of expiring payloads rather than the
+ * number of scheduled ones.</p>
+ *
+ * <p>The wheel measures time in ticks of a fixed resolution. The lowest level
+ * holds one slot per tick for the next {@value #SLOTS} ticks, and every level
+ * above it covers {@value #SLOTS} slots of the level below. When the clock
+ * reaches a slot of a higher level, its payloads are redistributed over the
+ * levels below, until they end up in the lowest level and expire. Payloads
+ * further away than the highest level can hold are parked in its last slot
+ * and redistributed until they fit.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @param <T> The type of payload scheduled.
+ */
+public class TimingWheel<T> {
+
+	//// Life-Cycle ////
+
+	/**
+	 * <p>Class constructor.</p>
+	 *
+	 * @param resolution The duration of a single tick of this wheel, in
+	 * milliseconds. Delays are rounded up to a whole number of ticks.
+	 *
+	 * @throws IllegalArgumentException If the resolution is not positive.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public TimingWheel(long resolution) {
+		if (resolution <= 0) {
+			throw new IllegalArgumentException("The resolution of a timing wheel must be positive.");
+		}
+
+		this.resolution = resolution;
+		this.slots = new Timeout[LEVELS][SLOTS];
+		this.levelSizes = new int[LEVELS];
+	}
+
+	//// Clock ////
+
+	private final long resolution;
+
+	private long now;			// Current tick.
+	private long remainder;		// Milliseconds elapsed since the current tick.
+
+	/**
+	 * @return The time elapsed since this wheel was created, in milliseconds.
+	 */
+	public long getTime() {
+		return this.now * this.resolution + this.remainder;
+	}
+
+	/**
+	 * <p>Advances the clock of this wheel, and passes every payload whose
+	 * delay has passed to the <code>handler</code>, tick by tick. The handler
+	 * may schedule and cancel timeouts, including those about to expire.</p>
+	 *
+	 * @param elapsed The time elapsed since the last advance, in milliseconds.
+	 * @param handler Receives the expired payloads.
+	 *
+	 * @return The number of payloads which expired.
+	 */
+	public int advance(long elapsed, ExpiryHandler<? super T> handler) {
+		this.remainder += elapsed;
+
+		long target = this.now + this.remainder / this.resolution;
+		this.remainder %= this.resolution;
+
+		int expiredCount = 0;
+		while (this.now < target) {
+			// Nothing can expire, jump straight to the target:
+			if (this.size == 0) {
+				this.now = target;
+				break;
+			}
+
+			// Nothing can expire before the next cascade, skip ahead to it:
+			if (this.levelSizes[0] == 0) {
+				long lastBeforeCascade = this.now | SLOT_MASK;
+				if (lastBeforeCascade > this.now) {
+					this.now = Math.min(lastBeforeCascade, target);
+					continue;
+				}
+			}
+
+			expiredCount += this.step(handler);
+		}
+
+		return expiredCount;
+	}
+
+	// Advance a single tick, and expire everything in its slot:
+	private int step(ExpiryHandler<? super T> handler) {
+		this.now++;
+
+		// Cascade the highest level first, so payloads can fall multiple levels:
+		int cascadeLevel = 0;
+		while (cascadeLevel + 1 < LEVELS && (this.now & ((1L << (SLOT_BITS * (cascadeLevel + 1))) - 1)) == 0) {
+			cascadeLevel++;
+		}
+
+		for (int level = cascadeLevel; level > 0; level--) {
+			this.cascade(level);
+		}
+
+		// Expire one at a time, since the handler may cancel other timeouts:
+		int slot = (int)(this.now & SLOT_MASK);
+		int expiredCount = 0;
+
+		Timeout<T> timeout;
+		while ((timeout = this.slots[0][slot]) != null) {
+			this.unlink(timeout);
+			timeout.expired = true;
+			expiredCount++;
+
+			handler.onExpiry(timeout.payload);
+		}
+
+		return expiredCount;
+	}
+
+	// Move all timeouts in the current slot of a level to the levels below:
+	private void cascade(int level) {
+		int slot = (int)((this.now >>> (SLOT_BITS * level)) & SLOT_MASK);
+
+		Timeout<T> timeout;
+		while ((timeout = this.slots[level][slot]) != null) {
+			this.unlink(timeout);
+			this.link(timeout);
+		}
+	}
+
+	//// Scheduling ////
+
+	private static final int LEVELS = 4;
+	private static final int SLOT_BITS = 6;
+	private static final int SLOTS = 1 << SLOT_BITS;
+	private static final long SLOT_MASK = SLOTS - 1;
+
+	private final Timeout<T>[][] slots;	// Heads of doubly linked lists.
+	private final int[] levelSizes;
+	private int size;
+
+	/**
+	 * @return The number of payloads scheduled and not yet expired or
+	 * cancelled.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * <p>Schedules the <code>payload</code> to expire once the specified
+	 * <code>delay</code> has passed. A payload always expires at the earliest
+	 * on the next tick.</p>
+	 *
+	 * @param payload The payload to expire.
+	 * @param delay The delay after which the payload expires, in milliseconds.
+	 *
+	 * @return A handle with which the timeout can be cancelled.
+	 */
+	public Timeout<T> schedule(T payload, long delay) {
+		long ticks = (this.remainder + Math.max(delay, 0) + this.resolution - 1) / this.resolution;
+
+		Timeout<T> timeout = new Timeout<T>(this, payload, this.now + Math.max(ticks, 1));
+		this.link(timeout);
+
+		return timeout;
+	}
+
+	// Insert a timeout in the lowest level which can hold it:
+	private void link(Timeout<T> timeout) {
+		int level = 0;
+		while (level < LEVELS - 1 && (timeout.deadline >>> (SLOT_BITS * level)) - (this.now >>> (SLOT_BITS * level)) >= SLOTS) {
+			level++;
+		}
+
+		long slotTick = timeout.deadline >>> (SLOT_BITS * level);
+		long currentTick = this.now >>> (SLOT_BITS * level);
+
+		// Too far out for the highest level, park it in its last slot:
+		if (slotTick - currentTick >= SLOTS) {
+			slotTick = currentTick + SLOTS - 1;
+		}
+
+		int slot = (int)(slotTick & SLOT_MASK);
+
+		timeout.level = level;
+		timeout.slot = slot;
+		timeout.previous = null;
+		timeout.next = this.slots[level][slot];
+		if (timeout.next != null) {
+			timeout.next.previous = timeout;
+		}
+
+		this.slots[level][slot] = timeout;
+		this.levelSizes[level]++;
+		this.size++;
+	}
+
+	// Remove a timeout from the list it is in:
+	private void unlink(Timeout<T> timeout) {
+		if (timeout.previous != null) {
+			timeout.previous.next = timeout.next;
+		}
+		else {
+			this.slots[timeout.level][timeout.slot] = timeout.next;
+		}
+
+		if (timeout.next != null) {
+			timeout.next.previous = timeout.previous;
+		}
+
+		timeout.previous = null;
+		timeout.next = null;
+
+		this.levelSizes[timeout.level]--;
+		this.size--;
+	}
+
+	//// Timeouts ////
+
+	/**
+	 * <p>A call-back which receives the payloads of a wheel as they expire.</p>
+	 *
+	 * @param <T> The type of payload received.
+	 */
+	public interface ExpiryHandler<T> {
+
+		/**
+		 * <p>Called when the delay of a payload has passed.</p>
+		 *
+		 * @param payload The expired payload.
+		 */
+		public void onExpiry(T payload);
+
+	}
+
+	/**
+	 * <p>A handle to a payload scheduled in a timing wheel.</p>
+	 *
+	 * @param <T> The type of payload scheduled.
+	 */
+	public static class Timeout<T> {
+
+		// Timeouts can only be created by scheduling them:
+		private Timeout(TimingWheel<T> wheel, T payload, long deadline) {
+			this.wheel = wheel;
+			this.payload = payload;
+			this.deadline = deadline;
+		}
+
+		private final TimingWheel<T> wheel;
+		private final T payload;
+		private final long deadline;	// In ticks.
+
+		private int level;
+		private int slot;
+		private Timeout<T> previous;
+		private Timeout<T> next;
+
+		private boolean expired;
+		private boolean cancelled;
+
+		/**
+		 * @return The payload which was scheduled.
+		 */
+		public T getPayload() {
+			return this.payload;
+		}
+
+		/**
+		 * @return <code>true</code> if the payload has expired,
+		 * <code>false</code> otherwise.
+		 */
+		public boolean isExpired() {
+			return this.expired;
+		}
+
+		/**
+		 * @return <code>true</code> if the timeout has been cancelled,
+		 * <code>false</code> otherwise.
+		 */
+		public boolean isCancelled() {
+			return this.cancelled;
+		}
+
+		/**
+		 * <p>Prevents the payload from expiring. Has no effect if it has
+		 * already expired or been cancelled.</p>
+		 */
+		public void cancel() {
+			if (this.expired || this.cancelled) {
+				return;
+			}
+
+			this.cancelled = true;
+			this.wheel.unlink(this);
+		}
+
+	}
+
+}
@@ -4,13 +4,32 @@ package com.elsewhere_games.lib.entity;
 import org.junit.Assert;
 import org.junit.Test;
 
+// Java Management
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
 // Java Utilities
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+
+// Events Elsewhere
+import com.elsewhere_games.lib.entity.event.ComponentChangeType;
+import com.elsewhere_games.lib.entity.event.OverflowPolicy;
+
+// Memory Elsewhere
+import com.elsewhere_games.lib.entity.memory.MemoryUsage;
+
+// Storage Elsewhere
+import com.elsewhere_games.lib.entity.storage.StorageStrategy;
 
 // Testing Elsewhere
 import com.elsewhere_games.lib.entity.mock.MockComponent;
 import com.elsewhere_games.lib.entity.mock.AnotherMockComponent;
+import com.elsewhere_games.lib.entity.mock.MockComponentListener;
+import com.elsewhere_games.lib.entity.mock.MockQueryObserver;
 
 /**
  * <p>Test case for the entity manager.</p>
@@ -206,4 +225,993 @@ public class EntityManagerTestCase {
 		Assert.assertFalse(updatedQueryResults.isEmpty());
 	}
 
+	@Test
+	public void queriesWithTheSameSignaturesShareTheirResults() {
+		EntityManager manager = new EntityManager();
+		Entity entity = manager.createEntity();
+		entity.addComponent(new MockComponent());
+		entity.addComponent(new AnotherMockComponent());
+
+		UUID queryId = manager.createQuery(MockComponent.class, AnotherMockComponent.class);
+		UUID sameQueryId = manager.createQuery(AnotherMockComponent.class, MockComponent.class);
+
+		Assert.assertNotEquals(queryId, sameQueryId);
+		Assert.assertSame(manager.executeQuery(queryId), manager.executeQuery(sameQueryId));
+		Assert.assertEquals(1, manager.estimateMemoryUsage().getQueryCacheBytes().size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void disposedQueriesCanNoLongerBeExecuted() {
+		EntityManager manager = new EntityManager();
+		manager.createEntity().addComponent(new MockComponent());
+
+		UUID queryId = manager.createQuery(MockComponent.class);
+		UUID sameQueryId = manager.createQuery(MockComponent.class);
+		manager.executeQuery(queryId);
+
+		manager.disposeQuery(queryId);
+		Assert.assertEquals(1, manager.executeQuery(sameQueryId).size());
+
+		manager.disposeQuery(sameQueryId);
+		Assert.assertTrue(manager.estimateMemoryUsage().getQueryCacheBytes().isEmpty());
+
+		manager.executeQuery(queryId);
+	}
+
+	@Test
+	public void leastRecentlyExecutedQueryResultsAreEvicted() {
+		EntityManager manager = new EntityManager();
+		Entity entity = manager.createEntity();
+		entity.addComponent(new MockComponent());
+		entity.addComponent(new AnotherMockComponent());
+		manager.setQueryCacheCapacity(1);
+
+		UUID queryId = manager.createQuery(MockComponent.class);
+		UUID anotherQueryId = manager.createQuery(AnotherMockComponent.class);
+
+		List<Entity> results = manager.executeQuery(queryId);
+		manager.executeQuery(anotherQueryId);
+
+		Assert.assertEquals(1, manager.estimateMemoryUsage().getQueryCacheBytes().size());
+		Assert.assertNotSame(results, manager.executeQuery(queryId));
+		Assert.assertEquals(results, manager.executeQuery(queryId));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void queryCachesCannotBeEmpty() {
+		EntityManager manager = new EntityManager();
+		manager.setQueryCacheCapacity(0);
+	}
+
+	@Test
+	public void alternatingQueriesAreRebuiltWithinTheCapacity() {
+		EntityManager manager = new EntityManager();
+		manager.createEntity().addComponent(new MockComponent());
+		manager.setQueryCacheCapacity(1);
+
+		UUID queryId = manager.createQuery(MockComponent.class);
+		UUID anotherQueryId = manager.createQuery(AnotherMockComponent.class);
+
+		for (int round = 0; round < 3; round++) {
+			Assert.assertEquals(1, manager.executeQuery(queryId).size());
+			Assert.assertTrue(manager.executeQuery(anotherQueryId).isEmpty());
+			Assert.assertEquals(1, manager.estimateMemoryUsage().getQueryCacheBytes().size());
+		}
+	}
+
+	//// Prefabs ////
+
+	private static final ComponentCopier<MockComponent> MOCK_COPIER = new ComponentCopier<MockComponent>() {
+
+		@Override
+		public MockComponent copy(MockComponent template) {
+			return new MockComponent();
+		}
+	};
+
+	private static final ComponentCopier<AnotherMockComponent> ANOTHER_MOCK_COPIER = new ComponentCopier<AnotherMockComponent>() {
+
+		@Override
+		public AnotherMockComponent copy(AnotherMockComponent template) {
+			return new AnotherMockComponent();
+		}
+	};
+
+	@Test
+	public void prefabsCanBeInstantiatedInBulk() {
+		EntityManager manager = new EntityManager();
+		UUID queryId = manager.createQuery(MockComponent.class, AnotherMockComponent.class);
+		Assert.assertTrue(manager.executeQuery(queryId).isEmpty());
+
+		Prefab prefab = new Prefab()
+			.addComponent(new MockComponent(), MOCK_COPIER)
+			.addComponent(new AnotherMockComponent(), ANOTHER_MOCK_COPIER);
+		UUID prefabId = manager.registerPrefab(prefab);
+
+		List<Entity> entities = manager.instantiatePrefab(prefabId, 100);
+
+		Assert.assertEquals(100, entities.size());
+		Assert.assertEquals(100, manager.getEntityCount());
+		Assert.assertEquals(100, manager.executeQuery(queryId).size());
+		Assert.assertNotSame(entities.get(0).getComponent(MockComponent.class), entities.get(1).getComponent(MockComponent.class));
+		Assert.assertSame(entities.get(0), manager.getStorage(MockComponent.class).getEntity(0));
+	}
+
+	@Test
+	public void instantiatedPrefabsAreReportedToObservers() {
+		EntityManager manager = new EntityManager();
+		UUID queryId = manager.createQuery(MockComponent.class);
+		MockQueryObserver observer = new MockQueryObserver();
+		manager.addQueryObserver(queryId, observer);
+
+		UUID prefabId = manager.registerPrefab(new Prefab().addComponent(new MockComponent(), MOCK_COPIER));
+		Entity entity = manager.instantiatePrefab(prefabId);
+		manager.instantiatePrefab(prefabId, 2);
+		manager.dispatchQueryEvents();
+
+		Assert.assertEquals(3, observer.getEntered().size());
+		Assert.assertTrue(observer.getEntered().contains(entity));
+
+		entity.removeComponent(MockComponent.class);
+		Assert.assertEquals(2, manager.executeQuery(queryId).size());
+	}
+
+	@Test
+	public void registeredPrefabsAreNotAffectedByLaterChanges() {
+		EntityManager manager = new EntityManager();
+		Prefab prefab = new Prefab().addComponent(new MockComponent(), MOCK_COPIER);
+		UUID prefabId = manager.registerPrefab(prefab);
+
+		prefab.addComponent(new AnotherMockComponent(), ANOTHER_MOCK_COPIER);
+		Entity entity = manager.instantiatePrefab(prefabId);
+
+		Assert.assertTrue(entity.hasComponent(MockComponent.class));
+		Assert.assertFalse(entity.hasComponent(AnotherMockComponent.class));
+	}
+
+	// A copier which breaks its contract by returning another class:
+	private static final ComponentCopier<Component> WRONG_COPIER = new ComponentCopier<Component>() {
+
+		@Override
+		public Component copy(Component template) {
+			return new AnotherMockComponent();
+		}
+	};
+
+	@Test(expected = IllegalStateException.class)
+	public void prefabCopiesMustHaveTheClassOfTheirTemplate() {
+		EntityManager manager = new EntityManager();
+		UUID prefabId = manager.registerPrefab(new Prefab().addComponent((Component)new MockComponent(), WRONG_COPIER));
+		manager.instantiatePrefab(prefabId);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void savedCopiesMustHaveTheClassOfTheirComponent() {
+		EntityManager manager = new EntityManager();
+		Entity entity = manager.createEntity();
+		entity.addComponent(new MockComponent());
+
+		manager.setComponentCopier(MockComponent.class, new ComponentCopier<MockComponent>() {
+
+			@Override
+			public MockComponent copy(MockComponent template) {
+				return null;
+			}
+		});
+
+		manager.checkpoint();
+		manager.editComponent(entity, MockComponent.class);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void failingCopiersLeavePrefabBatchesUninstantiated() {
+		EntityManager manager = new EntityManager();
+		UUID queryId = manager.createQuery(MockComponent.class);
+		Assert.assertTrue(manager.executeQuery(queryId).isEmpty());
+
+		// Only the fifth copy breaks the contract:
+		ComponentCopier<Component> copier = new ComponentCopier<Component>() {
+
+			private int copyCount;
+
+			@Override
+			public Component copy(Component template) {
+				return ++this.copyCount == 5 ? new AnotherMockComponent() : new MockComponent();
+			}
+		};
+
+		UUID prefabId = manager.registerPrefab(new Prefab().addComponent((Component)new MockComponent(), copier));
+		try {
+			manager.instantiatePrefab(prefabId, 10);
+		} finally {
+			Assert.assertEquals(0, manager.getEntityCount());
+			Assert.assertTrue(manager.executeQuery(queryId).isEmpty());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unregisteredPrefabsCannotBeInstantiated() {
+		EntityManager manager = new EntityManager();
+		UUID prefabId = manager.registerPrefab(new Prefab().addComponent(new MockComponent(), MOCK_COPIER));
+
+		manager.unregisterPrefab(prefabId);
+		manager.instantiatePrefab(prefabId);
+	}
+
+	//// Bulk Changes ////
+
+	@Test
+	public void componentsCanBeAddedToAllMatches() {
+		EntityManager manager = new EntityManager();
+		for (int count = 0; count < 10; count++) {
+			manager.createEntity().addComponent(new MockComponent());
+		}
+
+		Entity holder = manager.executeQuery(manager.createQuery(MockComponent.class)).get(0);
+		AnotherMockComponent held = new AnotherMockComponent();
+		holder.addComponent(held);
+
+		MockComponentListener listener = new MockComponentListener();
+		Entity listened = manager.executeQuery(manager.createQuery(MockComponent.class)).get(1);
+		listened.addComponentChangeListener(listener);
+
+		UUID queryId = manager.createQuery(MockComponent.class);
+		UUID anotherQueryId = manager.createQuery(AnotherMockComponent.class);
+		Assert.assertEquals(1, manager.executeQuery(anotherQueryId).size());
+
+		Assert.assertEquals(9, manager.addComponents(queryId, new AnotherMockComponent(), ANOTHER_MOCK_COPIER));
+
+		Assert.assertEquals(10, manager.executeQuery(anotherQueryId).size());
+		Assert.assertSame(held, holder.getComponent(AnotherMockComponent.class));
+		Assert.assertEquals(ComponentChangeType.COMPONENT_ADDED, listener.getLastTypeReceived());
+		Assert.assertSame(listened.getComponent(AnotherMockComponent.class), listener.getLastComponentReceived());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void failingCopiersLeaveBulkChangesUnapplied() {
+		EntityManager manager = new EntityManager();
+		for (int count = 0; count < 10; count++) {
+			manager.createEntity();
+		}
+
+		// Only the fifth copy breaks the contract:
+		ComponentCopier<Component> copier = new ComponentCopier<Component>() {
+
+			private int copyCount;
+
+			@Override
+			public Component copy(Component template) {
+				return ++this.copyCount == 5 ? new AnotherMockComponent() : new MockComponent();
+			}
+		};
+
+		try {
+			manager.addComponents(manager.createQuery(), (Component)new MockComponent(), copier);
+		} finally {
+			Assert.assertTrue(manager.executeQuery(manager.createQuery(MockComponent.class)).isEmpty());
+			Assert.assertTrue(manager.executeQuery(manager.createQuery(AnotherMockComponent.class)).isEmpty());
+		}
+	}
+
+	@Test
+	public void componentsCanBeReplacedOnAllMatches() {
+		EntityManager manager = new EntityManager();
+		Entity entity = manager.createEntity();
+		entity.addComponent(new MockComponent());
+		AnotherMockComponent original = new AnotherMockComponent();
+		entity.addComponent(original);
+		manager.createEntity().addComponent(new MockComponent());
+
+		UUID queryId = manager.createQuery(MockComponent.class);
+		Assert.assertEquals(2, manager.replaceComponents(queryId, new AnotherMockComponent(), ANOTHER_MOCK_COPIER));
+
+		Assert.assertNotSame(original, entity.getComponent(AnotherMockComponent.class));
+		Assert.assertSame(entity.getComponent(AnotherMockComponent.class), manager.getStorage(AnotherMockComponent.class).get(entity.index));
+		Assert.assertEquals(2, manager.executeQuery(manager.createQuery(AnotherMockComponent.class)).size());
+	}
+
+	@Test
+	public void componentsCanBeRemovedFromAllMatches() {
+		EntityManager manager = new EntityManager();
+		for (int count = 0; count < 10; count++) {
+			Entity entity = manager.createEntity();
+			entity.addComponent(new MockComponent());
+			entity.addComponent(new AnotherMockComponent());
+		}
+
+		UUID queryId = manager.createQuery(MockComponent.class, AnotherMockComponent.class);
+		UUID anotherQueryId = manager.createQuery(AnotherMockComponent.class);
+		Assert.assertEquals(10, manager.executeQuery(queryId).size());
+
+		Checkpoint checkpoint = manager.checkpoint();
+		Assert.assertEquals(10, manager.removeComponents(queryId, AnotherMockComponent.class));
+
+		Assert.assertTrue(manager.executeQuery(queryId).isEmpty());
+		Assert.assertTrue(manager.executeQuery(anotherQueryId).isEmpty());
+		Assert.assertEquals(0, manager.getStorage(AnotherMockComponent.class).size());
+
+		manager.rollback(checkpoint);
+		Assert.assertEquals(10, manager.executeQuery(queryId).size());
+	}
+
+	//// Rollback ////
+
+	@Test
+	public void rollbackUndoesStructuralChanges() {
+		EntityManager manager = new EntityManager();
+		Entity kept = manager.createEntity();
+		kept.addComponent(new MockComponent());
+		Entity destroyed = manager.createEntity();
+		UUID queryId = manager.createQuery(MockComponent.class);
+
+		Checkpoint checkpoint = manager.checkpoint();
+		manager.createEntity().addComponent(new MockComponent());
+		kept.removeComponent(MockComponent.class);
+		kept.addComponent(new AnotherMockComponent());
+		manager.destroyEntity(destroyed);
+		Assert.assertEquals(1, manager.executeQuery(queryId).size());
+
+		manager.rollback(checkpoint);
+
+		Assert.assertEquals(2, manager.getEntityCount());
+		Assert.assertTrue(manager.hasEntity(destroyed));
+		Assert.assertTrue(kept.hasComponent(MockComponent.class));
+		Assert.assertFalse(kept.hasComponent(AnotherMockComponent.class));
+		Assert.assertEquals(1, manager.executeQuery(queryId).size());
+		Assert.assertTrue(manager.executeQuery(queryId).contains(kept));
+		Assert.assertEquals(0, manager.getJournalSize());
+	}
+
+	@Test
+	public void restoredComponentsTakeOverTheirTimeToLive() {
+		EntityManager manager = new EntityManager();
+		manager.setComponentCopier(MockComponent.class, MOCK_COPIER);
+		Entity entity = manager.createEntity();
+		entity.addComponent(new MockComponent());
+		manager.setTimeToLive(entity, MockComponent.class, 100);
+
+		Checkpoint checkpoint = manager.checkpoint();
+		manager.editComponent(entity, MockComponent.class);
+		manager.rollback(checkpoint);
+
+		// The time to live now belongs to the restored copy, so it can be cleared:
+		manager.clearTimeToLive(entity, MockComponent.class);
+		manager.tick(200);
+		Assert.assertTrue(entity.hasComponent(MockComponent.class));
+
+		// And it still runs out, if left alone:
+		checkpoint = manager.checkpoint();
+		manager.setTimeToLive(entity, MockComponent.class, 100);
+		manager.editComponent(entity, MockComponent.class);
+		manager.rollback(checkpoint);
+
+		manager.tick(50);
+		Assert.assertTrue(entity.hasComponent(MockComponent.class));
+		manager.tick(100);
+		Assert.assertFalse(entity.hasComponent(MockComponent.class));
+	}
+
+	@Test
+	public void rollbackRestoresEditedComponents() {
+		EntityManager manager = new EntityManager();
+		manager.setComponentCopier(MockComponent.class, MOCK_COPIER);
+		Entity entity = manager.createEntity();
+		MockComponent original = new MockComponent();
+		entity.addComponent(original);
+
+		Checkpoint checkpoint = manager.checkpoint();
+		Assert.assertSame(original, manager.editComponent(entity, MockComponent.class));
+		manager.editComponent(entity, MockComponent.class);
+		Assert.assertEquals(1, manager.getJournalSize());
+
+		manager.rollback(checkpoint);
+
+		MockComponent restored = entity.getComponent(MockComponent.class);
+		Assert.assertNotSame(original, restored);
+		Assert.assertSame(restored, manager.getStorage(MockComponent.class).get(entity.index));
+
+		// The checkpoint can be rolled back to again:
+		manager.editComponent(entity, MockComponent.class);
+		manager.rollback(checkpoint);
+		Assert.assertNotSame(restored, entity.getComponent(MockComponent.class));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void editingWithoutCopierFailsOnlyWhileCheckpointed() {
+		EntityManager manager = new EntityManager();
+		Entity entity = manager.createEntity();
+		entity.addComponent(new AnotherMockComponent());
+
+		Assert.assertNotNull(manager.editComponent(entity, AnotherMockComponent.class));
+
+		manager.checkpoint();
+		manager.editComponent(entity, AnotherMockComponent.class);
+	}
+
+	@Test
+	public void releasingCheckpointsDiscardsTheirChanges() {
+		EntityManager manager = new EntityManager();
+
+		Checkpoint first = manager.checkpoint();
+		manager.createEntity();
+		Checkpoint second = manager.checkpoint();
+		manager.createEntity();
+		Assert.assertEquals(2, manager.getJournalSize());
+
+		manager.releaseCheckpoint(first);
+		Assert.assertEquals(1, manager.getJournalSize());
+
+		manager.rollback(second);
+		Assert.assertEquals(1, manager.getEntityCount());
+
+		manager.releaseCheckpoint(second);
+		manager.createEntity();
+		Assert.assertEquals(0, manager.getJournalSize());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void releasedCheckpointsCannotBeRolledBackTo() {
+		EntityManager manager = new EntityManager();
+		Checkpoint checkpoint = manager.checkpoint();
+		manager.createEntity();
+
+		manager.releaseCheckpoint(checkpoint);
+		manager.rollback(checkpoint);
+	}
+
+	//// Storage ////
+
+	@Test
+	public void storageStrategyCanBeSelected() {
+		EntityManager manager = new EntityManager();
+
+		Assert.assertEquals(StorageStrategy.SPARSE_SET, manager.getStorageStrategy(MockComponent.class));
+
+		manager.setStorageStrategy(MockComponent.class, StorageStrategy.DENSE);
+
+		Assert.assertEquals(StorageStrategy.DENSE, manager.getStorageStrategy(MockComponent.class));
+	}
+
+	@Test
+	public void queriesSurviveStorageStrategyChanges() {
+		EntityManager manager = new EntityManager();
+
+		Entity entity = manager.createEntity();
+		entity.addComponent(new MockComponent());
+		entity.addComponent(new AnotherMockComponent());
+
+		UUID queryId = manager.createQuery(MockComponent.class, AnotherMockComponent.class);
+		Assert.assertTrue(manager.executeQuery(queryId).contains(entity));
+
+		manager.setStorageStrategy(MockComponent.class, StorageStrategy.DENSE);
+		entity.removeComponent(AnotherMockComponent.class);
+		Assert.assertTrue(manager.executeQuery(queryId).isEmpty());
+
+		entity.addComponent(new AnotherMockComponent());
+		Assert.assertTrue(manager.executeQuery(queryId).contains(entity));
+	}
+
+	@Test
+	public void destroyedEntitiesCanBeAddedAgain() {
+		EntityManager manager = new EntityManager();
+
+		Entity entity = manager.createEntity();
+		entity.addComponent(new MockComponent());
+
+		UUID queryId = manager.createQuery(MockComponent.class);
+		manager.destroyEntity(entity);
+		Assert.assertTrue(manager.executeQuery(queryId).isEmpty());
+
+		EntityManager otherManager = new EntityManager();
+		otherManager.addEntity(entity);
+
+		UUID otherQueryId = otherManager.createQuery(MockComponent.class);
+		Assert.assertTrue(otherManager.executeQuery(otherQueryId).contains(entity));
+	}
+
+	@Test
+	public void entitiesCannotBeSharedBetweenManagers() {
+		EntityManager manager = new EntityManager();
+		Entity entity = manager.createEntity();
+
+		try {
+			new EntityManager().addEntity(entity);
+			Assert.fail();
+		}
+
+		catch (IllegalArgumentException argumentException) {
+			// Do nothing, expected.
+		}
+	}
+
+	//// Expiry ////
+
+	@Test
+	public void entitiesExpireAfterTheirTimeToLive() {
+		EntityManager manager = new EntityManager();
+		Entity entity = manager.createEntity();
+
+		manager.setTimeToLive(entity, 50);
+
+		manager.tick(49);
+		Assert.assertTrue(manager.hasEntity(entity));
+
+		manager.tick(1);
+		Assert.assertFalse(manager.hasEntity(entity));
+		Assert.assertEquals(50, manager.getTime());
+	}
+
+	@Test
+	public void componentsExpireAfterTheirTimeToLive() {
+		EntityManager manager = new EntityManager();
+		Entity entity = manager.createEntity();
+		entity.addComponent(new MockComponent());
+
+		UUID queryId = manager.createQuery(MockComponent.class);
+		manager.setTimeToLive(entity, MockComponent.class, 16);
+
+		manager.tick(16);
+		Assert.assertTrue(manager.hasEntity(entity));
+		Assert.assertFalse(entity.hasComponent(MockComponent.class));
+		Assert.assertTrue(manager.executeQuery(queryId).isEmpty());
+	}
+
+	@Test
+	public void timeToLiveCanBeReplacedAndCleared() {
+		EntityManager manager = new EntityManager();
+		Entity entity = manager.createEntity();
+		entity.addComponent(new MockComponent());
+
+		manager.setTimeToLive(entity, 10);
+		manager.setTimeToLive(entity, 100);
+		manager.tick(50);
+		Assert.assertTrue(manager.hasEntity(entity));
+
+		manager.setTimeToLive(entity, MockComponent.class, 10);
+		manager.clearTimeToLive(entity, MockComponent.class);
+		manager.clearTimeToLive(entity);
+		manager.tick(1000);
+		Assert.assertTrue(manager.hasEntity(entity));
+		Assert.assertTrue(entity.hasComponent(MockComponent.class));
+	}
+
+	@Test
+	public void replacedComponentsDoNotInheritTimeToLive() {
+		EntityManager manager = new EntityManager();
+		Entity entity = manager.createEntity();
+		entity.addComponent(new MockComponent());
+
+		manager.setTimeToLive(entity, MockComponent.class, 10);
+		entity.removeComponent(MockComponent.class);
+		entity.addComponent(new MockComponent());
+
+		manager.tick(20);
+		Assert.assertTrue(entity.hasComponent(MockComponent.class));
+	}
+
+	//// Observers ////
+
+	@Test
+	public void observersAreNotifiedOfExistingMatches() {
+		EntityManager manager = new EntityManager();
+		Entity entity = manager.createEntity();
+		entity.addComponent(new MockComponent());
+
+		UUID queryId = manager.createQuery(MockComponent.class);
+		MockQueryObserver observer = new MockQueryObserver();
+		manager.addQueryObserver(queryId, observer);
+
+		Assert.assertTrue(observer.getEntered().isEmpty());
+
+		manager.tick(0);
+
+		Assert.assertEquals(1, observer.getEntered().size());
+		Assert.assertTrue(observer.getEntered().contains(entity));
+	}
+
+	@Test
+	public void lateObserversAreNotifiedOfExistingMatches() {
+		EntityManager manager = new EntityManager();
+		Entity entity = manager.createEntity();
+		entity.addComponent(new MockComponent());
+
+		UUID queryId = manager.createQuery(MockComponent.class);
+		MockQueryObserver observer = new MockQueryObserver();
+		manager.addQueryObserver(queryId, observer);
+		manager.tick(0);
+		observer.reset();
+
+		MockQueryObserver lateObserver = new MockQueryObserver();
+		manager.addQueryObserver(queryId, lateObserver);
+		manager.tick(0);
+
+		Assert.assertEquals(1, lateObserver.getEntered().size());
+		Assert.assertTrue(lateObserver.getEntered().contains(entity));
+		Assert.assertEquals(0, observer.getBatchCount());
+	}
+
+	@Test
+	public void observersAreNotifiedOncePerTick() {
+		EntityManager manager = new EntityManager();
+		UUID queryId = manager.createQuery(MockComponent.class, AnotherMockComponent.class);
+
+		MockQueryObserver observer = new MockQueryObserver();
+		manager.addQueryObserver(queryId, observer);
+
+		Entity entity = manager.createEntity();
+		entity.addComponent(new MockComponent());
+		Assert.assertTrue(observer.getEntered().isEmpty());
+
+		Entity otherEntity = manager.createEntity();
+		otherEntity.addComponent(new AnotherMockComponent());
+		otherEntity.addComponent(new MockComponent());
+		entity.addComponent(new AnotherMockComponent());
+
+		manager.tick(16);
+		Assert.assertEquals(1, observer.getBatchCount());
+		Assert.assertEquals(2, observer.getEntered().size());
+
+		observer.reset();
+		entity.removeComponent(MockComponent.class);
+		manager.destroyEntity(otherEntity);
+
+		manager.tick(16);
+		Assert.assertEquals(1, observer.getBatchCount());
+		Assert.assertEquals(2, observer.getExited().size());
+		Assert.assertTrue(observer.getEntered().isEmpty());
+	}
+
+	@Test
+	public void changesWithinATickCancelOut() {
+		EntityManager manager = new EntityManager();
+		Entity entity = manager.createEntity();
+		entity.addComponent(new MockComponent());
+
+		UUID queryId = manager.createQuery(MockComponent.class);
+		MockQueryObserver observer = new MockQueryObserver();
+		manager.addQueryObserver(queryId, observer);
+		manager.dispatchQueryEvents();
+		observer.reset();
+
+		entity.removeComponent(MockComponent.class);
+		entity.addComponent(new MockComponent());
+
+		Entity transientEntity = manager.createEntity();
+		transientEntity.addComponent(new MockComponent());
+		manager.destroyEntity(transientEntity);
+
+		manager.dispatchQueryEvents();
+		Assert.assertEquals(0, observer.getBatchCount());
+	}
+
+	@Test
+	public void observersAreNotifiedOfQueryUpdates() {
+		EntityManager manager = new EntityManager();
+		Entity entity = manager.createEntity();
+		entity.addComponent(new MockComponent());
+
+		UUID queryId = manager.createQuery(AnotherMockComponent.class);
+		MockQueryObserver observer = new MockQueryObserver();
+		manager.addQueryObserver(queryId, observer);
+
+		manager.updateQuery(queryId, MockComponent.class);
+		manager.dispatchQueryEvents();
+		Assert.assertTrue(observer.getEntered().contains(entity));
+
+		observer.reset();
+		manager.removeQueryObserver(queryId, observer);
+		entity.removeComponent(MockComponent.class);
+		manager.dispatchQueryEvents();
+		Assert.assertTrue(observer.getExited().isEmpty());
+	}
+
+	//// Memory ////
+
+	@Test
+	public void memoryUsageGrowsWithTheManager() {
+		EntityManager manager = new EntityManager();
+		MemoryUsage emptyUsage = manager.estimateMemoryUsage();
+
+		Assert.assertEquals(0, emptyUsage.getBytesPerEntity());
+		Assert.assertTrue(emptyUsage.getComponentBytes().isEmpty());
+
+		for (int count = 0; count < 100; count++) {
+			manager.createEntity().addComponent(new MockComponent());
+		}
+
+		UUID queryId = manager.createQuery(MockComponent.class);
+		manager.executeQuery(queryId);
+
+		MemoryUsage usage = manager.estimateMemoryUsage();
+		Assert.assertTrue(usage.getBytesPerEntity() > 0);
+		Assert.assertTrue(usage.getComponentBytes().get(MockComponent.class) > 0);
+		Assert.assertTrue(usage.getQueryCacheBytes().get(Arrays.<Class<?>>asList(MockComponent.class)) > 0);
+		Assert.assertTrue(usage.getTotalBytes() > emptyUsage.getTotalBytes() + usage.getEntityBytes());
+	}
+
+	@Test
+	public void memoryUsageShowsCapacityRetainedAfterAPeak() {
+		EntityManager manager = new EntityManager();
+		manager.setReuseQueryResults(true);
+		UUID queryId = manager.createQuery(MockComponent.class);
+
+		List<Entity> entities = new ArrayList<Entity>();
+		for (int count = 0; count < 1000; count++) {
+			Entity entity = manager.createEntity();
+			entity.addComponent(new MockComponent());
+			entities.add(entity);
+		}
+
+		manager.executeQuery(queryId);
+		for (Entity entity : entities.subList(10, 1000)) {
+			manager.destroyEntity(entity);
+		}
+
+		manager.executeQuery(queryId);
+
+		// A manager which never held more than ten entities:
+		EntityManager small = new EntityManager();
+		small.setReuseQueryResults(true);
+		UUID smallQueryId = small.createQuery(MockComponent.class);
+		for (int count = 0; count < 10; count++) {
+			small.createEntity().addComponent(new MockComponent());
+		}
+
+		small.executeQuery(smallQueryId);
+
+		List<Class<?>> signatures = Arrays.<Class<?>>asList(MockComponent.class);
+		MemoryUsage usage = manager.estimateMemoryUsage();
+		MemoryUsage smallUsage = small.estimateMemoryUsage();
+		Assert.assertTrue(usage.getEntityBytes() > smallUsage.getEntityBytes() + 1000);
+		Assert.assertTrue(usage.getQueryCacheBytes().get(signatures) > smallUsage.getQueryCacheBytes().get(signatures) + 1000);
+	}
+
+	@Test
+	public void memoryUsageCoversJournalChangeStreamsAndPrefabs() {
+		EntityManager manager = new EntityManager();
+		MemoryUsage emptyUsage = manager.estimateMemoryUsage();
+		Assert.assertEquals(0, emptyUsage.getChangeStreamBytes());
+
+		manager.setComponentCopier(MockComponent.class, MOCK_COPIER);
+		Entity entity = manager.createEntity();
+		entity.addComponent(new MockComponent());
+		manager.checkpoint();
+		manager.editComponent(entity, MockComponent.class);
+
+		manager.openChangeStream(64, 8, OverflowPolicy.DROP_NEWEST, new Executor() {
+
+			@Override
+			public void execute(Runnable task) {
+				task.run();
+			}
+		});
+
+		manager.registerPrefab(new Prefab().addComponent(new MockComponent(), MOCK_COPIER));
+
+		MemoryUsage usage = manager.estimateMemoryUsage();
+		Assert.assertTrue(usage.getJournalBytes() > emptyUsage.getJournalBytes());
+		Assert.assertTrue(usage.getChangeStreamBytes() > 0);
+		Assert.assertTrue(usage.getPrefabBytes() > emptyUsage.getPrefabBytes());
+	}
+
+	//// Allocation ////
+
+	// Looked up once, so that measuring does not allocate itself:
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	// The bytes allocated by the current thread so far, or -1 if unknown:
+	private static long getAllocatedBytes() {
+		if (THREADS instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean)THREADS).isThreadAllocatedMemorySupported()) {
+			return ((com.sun.management.ThreadMXBean)THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+
+		return -1;
+	}
+
+	private static final List<Class<?>> MOCK_SIGNATURES = Arrays.<Class<?>>asList(MockComponent.class, AnotherMockComponent.class);
+
+	private static final String[] STEADY_STATE_OPERATIONS = {"query", "iteration", "component access", "add/remove", "tick"};
+
+	// The operations of a tick, which executes queries, reads components and churns a component type:
+	private static Runnable[] createSteadyStateTick(final EntityManager manager, final UUID queryId, final UUID anotherQueryId) {
+		final int[] visited = new int[1];
+
+		return new Runnable[] {
+			new Runnable() {
+
+				@Override
+				public void run() {
+					manager.executeQuery(queryId);
+					manager.executeQuery(anotherQueryId);
+				}
+			},
+			new Runnable() {
+
+				@Override
+				public void run() {
+					List<Entity> results = manager.executeQuery(queryId);
+					for (int position = 0; position < results.size(); position++) {
+						if (results.get(position) != null) {
+							visited[0]++;
+						}
+					}
+				}
+			},
+			new Runnable() {
+
+				@Override
+				public void run() {
+					List<Entity> results = manager.executeQuery(queryId);
+					for (int position = 0; position < results.size(); position++) {
+						Entity entity = results.get(position);
+						if (entity.getComponent(MockComponent.class) != null || entity.hasComponents(MOCK_SIGNATURES)) {
+							visited[0]++;
+						}
+					}
+				}
+			},
+			new Runnable() {
+
+				@Override
+				public void run() {
+					Entity entity = manager.executeQuery(queryId).get(0);
+					if (entity.hasComponent(AnotherMockComponent.class)) {
+						AnotherMockComponent component = entity.getComponent(AnotherMockComponent.class);
+						entity.removeComponent(AnotherMockComponent.class);
+						entity.addComponent(component);
+					}
+				}
+			},
+			new Runnable() {
+
+				@Override
+				public void run() {
+					manager.tick(16);
+				}
+			}
+		};
+	}
+
+	@Test
+	public void steadyStateTicksDoNotAllocate() {
+		if (getAllocatedBytes() < 0) {
+			return;
+		}
+
+		EntityManager manager = new EntityManager();
+		manager.setReuseQueryResults(true);
+
+		for (int count = 0; count < 1000; count++) {
+			Entity entity = manager.createEntity();
+			entity.addComponent(new MockComponent());
+			if (count % 2 == 0) {
+				entity.addComponent(new AnotherMockComponent());
+			}
+		}
+
+		UUID queryId = manager.createQuery(MockComponent.class);
+		UUID anotherQueryId = manager.createQuery(MockComponent.class, AnotherMockComponent.class);
+		Runnable[] operations = createSteadyStateTick(manager, queryId, anotherQueryId);
+
+		// Let every list and array reach its steady-state size, and the code
+		// its compiled form:
+		for (int tick = 0; tick < 20000; tick++) {
+			for (Runnable operation : operations) {
+				operation.run();
+			}
+		}
+
+		long measuring = getAllocatedBytes();
+		measuring = getAllocatedBytes() - measuring;
+
+		long[] allocated = new long[operations.length];
+		for (int tick = 0; tick < 100; tick++) {
+			for (int position = 0; position < operations.length; position++) {
+				long before = getAllocatedBytes();
+				operations[position].run();
+				allocated[position] += getAllocatedBytes() - before - measuring;
+			}
+		}
+
+		for (int position = 0; position < operations.length; position++) {
+			Assert.assertEquals("Bytes allocated by " + STEADY_STATE_OPERATIONS[position], 0, allocated[position]);
+		}
+	}
+
+	@Test
+	public void reusedQueryResultsAreRefilled() {
+		EntityManager manager = new EntityManager();
+		manager.setReuseQueryResults(true);
+
+		Entity entity = manager.createEntity();
+		entity.addComponent(new MockComponent());
+
+		UUID queryId = manager.createQuery(MockComponent.class);
+		List<Entity> results = manager.executeQuery(queryId);
+		Assert.assertEquals(1, results.size());
+
+		manager.createEntity().addComponent(new MockComponent());
+		Assert.assertSame(results, manager.executeQuery(queryId));
+		Assert.assertEquals(2, results.size());
+	}
+
+	//// Compaction ////
+
+	@Test
+	public void compactionShrinksStoragesAndKeepsQueriesIntact() {
+		EntityManager manager = new EntityManager();
+		manager.setStorageStrategy(AnotherMockComponent.class, StorageStrategy.DENSE);
+
+		List<Entity> survivors = this.createAndDestroyMost(manager);
+		UUID queryId = manager.createQuery(MockComponent.class, AnotherMockComponent.class);
+		long usageBefore = manager.estimateMemoryUsage().getComponentBytes().get(MockComponent.class);
+
+		manager.compact();
+
+		Assert.assertFalse(manager.isCompacting());
+		Assert.assertTrue(manager.estimateMemoryUsage().getComponentBytes().get(MockComponent.class) < usageBefore);
+		Assert.assertEquals(survivors.size(), manager.executeQuery(queryId).size());
+		Assert.assertTrue(manager.executeQuery(queryId).containsAll(survivors));
+
+		// Entities keep working after being moved:
+		Entity survivor = survivors.get(0);
+		survivor.removeComponent(MockComponent.class);
+		Assert.assertFalse(manager.executeQuery(queryId).contains(survivor));
+
+		Entity newEntity = manager.createEntity();
+		newEntity.addComponent(new MockComponent());
+		newEntity.addComponent(new AnotherMockComponent());
+		Assert.assertTrue(manager.executeQuery(queryId).contains(newEntity));
+		Assert.assertEquals(survivors.size(), manager.executeQuery(queryId).size());
+	}
+
+	@Test
+	public void automaticCompactionIsSpreadOverTicks() {
+		EntityManager manager = new EntityManager();
+		manager.setAutoCompaction(1);
+
+		List<Entity> survivors = this.createAndDestroyMost(manager);
+		UUID queryId = manager.createQuery(MockComponent.class);
+
+		int ticks = 0;
+		do {
+			manager.tick(16);
+			ticks++;
+
+			// Changes in between steps must not upset the compaction:
+			Entity transientEntity = manager.createEntity();
+			transientEntity.addComponent(new MockComponent());
+			manager.destroyEntity(transientEntity);
+		}
+		while (manager.isCompacting());
+
+		Assert.assertTrue(ticks > 1);
+		Assert.assertEquals(survivors.size(), manager.executeQuery(queryId).size());
+		Assert.assertTrue(manager.executeQuery(queryId).containsAll(survivors));
+	}
+
+	// Create a thousand entities, and destroy all but every tenth:
+	private List<Entity> createAndDestroyMost(EntityManager manager) {
+		List<Entity> survivors = new ArrayList<Entity>();
+
+		List<Entity> created = new ArrayList<Entity>();
+		for (int count = 0; count < 1000; count++) {
+			Entity entity = manager.createEntity();
+			entity.addComponent(new MockComponent());
+			entity.addComponent(new AnotherMockComponent());
+			created.add(entity);
+		}
+
+		for (int count = 0; count < created.size(); count++) {
+			if (count % 10 == 3) {
+				survivors.add(created.get(count));
+			}
+			else {
+				manager.destroyEntity(created.get(count));
+			}
+		}
+
+		return survivors;
+	}
+
 }
@@ -119,4 +119,23 @@ public class EntityTestCase {
 		Assert.assertEquals(mockComponent, listener.getLastComponentReceived());
 	}
 
+	// A component type which is looked up, but never stored:
+	private static class UnstoredComponent implements Component {
+	}
+
+	@Test
+	public void lookingUpComponentsDoesNotGrowEntities() {
+		Entity entity = new Entity();
+		Assert.assertEquals(0, entity.getComponentTypeCapacity());
+
+		Assert.assertFalse(entity.hasComponent(UnstoredComponent.class));
+		Assert.assertNull(entity.getComponent(UnstoredComponent.class));
+		entity.removeComponent(UnstoredComponent.class);
+
+		Assert.assertEquals(-1, ComponentTypes.peekIdOf(UnstoredComponent.class));
+
+		entity.addComponent(new MockComponent());
+		Assert.assertEquals(ComponentTypes.idOf(MockComponent.class) + 1, entity.getComponentTypeCapacity());
+	}
+
 }
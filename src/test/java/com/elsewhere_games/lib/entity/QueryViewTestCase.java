@@ -0,0 +1,123 @@
+package com.elsewhere_games.lib.entity;
+
+// JUnit
+import org.junit.Assert;
+import org.junit.Test;
+
+// Java Utilities
+import java.util.ArrayList;
+import java.util.List;
+
+// Storage Elsewhere
+import com.elsewhere_games.lib.entity.storage.StorageStrategy;
+
+// Testing Elsewhere
+import com.elsewhere_games.lib.entity.mock.MockComponent;
+import com.elsewhere_games.lib.entity.mock.AnotherMockComponent;
+
+/**
+ * <p>Test case for the typed query views.</p>
+ */
+public class QueryViewTestCase {
+
+	//// Iteration ////
+
+	@Test
+	public void viewsOfUnknownComponentsAreEmpty() {
+		EntityManager manager = new EntityManager();
+		manager.createEntity();
+
+		final List<Entity> visited = new ArrayList<Entity>();
+		manager.createView(MockComponent.class).forEach
+		(
+			new QueryView1.Visitor<MockComponent>() {
+
+				@Override
+				public void visit(Entity entity, MockComponent component) {
+					visited.add(entity);
+				}
+			}
+		);
+
+		Assert.assertTrue(visited.isEmpty());
+	}
+
+	@Test
+	public void viewsVisitMatchingEntitiesWithTheirComponents() {
+		this.assertVisitsMatchingEntities(StorageStrategy.SPARSE_SET);
+	}
+
+	@Test
+	public void viewsVisitMatchingEntitiesInDenseStorage() {
+		this.assertVisitsMatchingEntities(StorageStrategy.DENSE);
+	}
+
+	@Test
+	public void viewsReflectChangesToTheManager() {
+		EntityManager manager = new EntityManager();
+		QueryView2<MockComponent, AnotherMockComponent> view = manager.createView(MockComponent.class, AnotherMockComponent.class);
+
+		Entity entity = manager.createEntity();
+		entity.addComponent(new MockComponent());
+		Assert.assertEquals(0, this.count(view));
+
+		entity.addComponent(new AnotherMockComponent());
+		Assert.assertEquals(1, this.count(view));
+
+		manager.destroyEntity(entity);
+		Assert.assertEquals(0, this.count(view));
+	}
+
+	//// Helpers ////
+
+	private void assertVisitsMatchingEntities(StorageStrategy strategy) {
+		EntityManager manager = new EntityManager();
+		manager.setStorageStrategy(MockComponent.class, strategy);
+		manager.setStorageStrategy(AnotherMockComponent.class, strategy);
+
+		final List<Entity> expected = new ArrayList<Entity>();
+		for (int count = 0; count < 10; count++) {
+			Entity entity = manager.createEntity();
+			entity.addComponent(new MockComponent());
+
+			if (count % 3 == 0) {
+				entity.addComponent(new AnotherMockComponent());
+				expected.add(entity);
+			}
+		}
+
+		final List<Entity> visited = new ArrayList<Entity>();
+		manager.createView(MockComponent.class, AnotherMockComponent.class).forEach
+		(
+			new QueryView2.Visitor<MockComponent, AnotherMockComponent>() {
+
+				@Override
+				public void visit(Entity entity, MockComponent component, AnotherMockComponent anotherComponent) {
+					Assert.assertSame(entity.getComponent(MockComponent.class), component);
+					Assert.assertSame(entity.getComponent(AnotherMockComponent.class), anotherComponent);
+					visited.add(entity);
+				}
+			}
+		);
+
+		Assert.assertEquals(expected.size(), visited.size());
+		Assert.assertTrue(visited.containsAll(expected));
+	}
+
+	private int count(QueryView2<MockComponent, AnotherMockComponent> view) {
+		final int[] count = { 0 };
+		view.forEach
+		(
+			new QueryView2.Visitor<MockComponent, AnotherMockComponent>() {
+
+				@Override
+				public void visit(Entity entity, MockComponent component, AnotherMockComponent anotherComponent) {
+					count[0]++;
+				}
+			}
+		);
+
+		return count[0];
+	}
+
+}
@@ -0,0 +1,358 @@
+package com.elsewhere_games.lib.entity.event;
+
+// JUnit
+import org.junit.Assert;
+import org.junit.Test;
+
+// Java Containers
+import java.util.ArrayList;
+import java.util.List;
+
+// Java Concurrency
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.Entity;
+import com.elsewhere_games.lib.entity.EntityManager;
+
+// Testing Elsewhere
+import com.elsewhere_games.lib.entity.mock.AnotherMockComponent;
+import com.elsewhere_games.lib.entity.mock.MockComponent;
+
+/**
+ * <p>Test case for the asynchronous component change stream.</p>
+ */
+public class ComponentChangePublisherTestCase {
+
+	// Runs delivery on the calling thread, so tests can observe it directly:
+	private static final Executor DIRECT = new Executor() {
+
+		@Override
+		public void execute(Runnable task) {
+			task.run();
+		}
+	};
+
+	//// Delivery ////
+
+	@Test
+	public void changesAreDeliveredInBatchesPerTick() {
+		EntityManager manager = new EntityManager();
+		ComponentChangePublisher changeStream = manager.openChangeStream(16, 8, OverflowPolicy.DROP_NEWEST, DIRECT);
+
+		Collector collector = new Collector(Long.MAX_VALUE);
+		changeStream.subscribe(collector);
+
+		Entity entity = manager.createEntity();
+		entity.addComponent(new MockComponent());
+		entity.removeComponent(MockComponent.class);
+
+		Assert.assertTrue(collector.batches.isEmpty());
+
+		manager.tick(16);
+
+		Assert.assertEquals(1, collector.batches.size());
+		Assert.assertEquals(2, collector.batches.get(0).size());
+		Assert.assertEquals(ComponentChangeType.COMPONENT_ADDED, collector.batches.get(0).get(0).getType());
+		Assert.assertEquals(ComponentChangeType.COMPONENT_REMOVED, collector.batches.get(0).get(1).getType());
+		Assert.assertSame(entity, collector.batches.get(0).get(1).getEntity());
+	}
+
+	@Test
+	public void batchesAreDeliveredOnDemand() {
+		EntityManager manager = new EntityManager();
+		ComponentChangePublisher changeStream = manager.openChangeStream(16, 2, OverflowPolicy.DROP_NEWEST, DIRECT);
+
+		Collector collector = new Collector(1);
+		changeStream.subscribe(collector);
+
+		this.change(manager, 3);
+		manager.tick(16);
+
+		Assert.assertEquals(1, collector.batches.size());
+		Assert.assertEquals(4, changeStream.getSubscriberMetrics().get(0).getLag());
+
+		collector.subscription.request(10);
+
+		Assert.assertEquals(3, collector.batches.size());
+		Assert.assertEquals(0, changeStream.getSubscriberMetrics().get(0).getLag());
+		Assert.assertEquals(6, changeStream.getSubscriberMetrics().get(0).getDeliveredCount());
+	}
+
+	@Test
+	public void closingCompletesSubscribers() {
+		EntityManager manager = new EntityManager();
+		ComponentChangePublisher changeStream = manager.openChangeStream(16, 8, OverflowPolicy.DROP_NEWEST, DIRECT);
+
+		Collector collector = new Collector(Long.MAX_VALUE);
+		changeStream.subscribe(collector);
+
+		this.change(manager, 1);
+		manager.closeChangeStream(changeStream);
+
+		Assert.assertEquals(1, collector.batches.size());
+		Assert.assertTrue(collector.completed);
+		Assert.assertFalse(changeStream.hasSubscribers());
+	}
+
+	@Test
+	public void streamsClosedDirectlyAreDropped() {
+		EntityManager manager = new EntityManager();
+		ComponentChangePublisher changeStream = manager.openChangeStream(16, 8, OverflowPolicy.DROP_NEWEST, new Executor() {
+
+			@Override
+			public void execute(Runnable task) {
+				// Never deliver, so the subscription is not completed.
+			}
+		});
+
+		changeStream.subscribe(new Collector(Long.MAX_VALUE));
+		changeStream.close();
+		Assert.assertTrue(changeStream.hasSubscribers());
+
+		this.change(manager, 1);
+		manager.tick(16);
+	}
+
+	@Test
+	public void destroyedEntitiesLoseTheirComponents() {
+		EntityManager manager = new EntityManager();
+		ComponentChangePublisher changeStream = manager.openChangeStream(16, 8, OverflowPolicy.DROP_NEWEST, DIRECT);
+
+		Collector collector = new Collector(Long.MAX_VALUE);
+		changeStream.subscribe(collector);
+
+		Entity entity = manager.createEntity();
+		entity.addComponent(new MockComponent());
+		entity.addComponent(new AnotherMockComponent());
+		manager.destroyEntity(entity);
+		manager.tick(16);
+
+		List<ComponentChangeEvent> changes = collector.batches.get(0);
+		Assert.assertEquals(4, changes.size());
+		Assert.assertEquals(ComponentChangeType.COMPONENT_REMOVED, changes.get(2).getType());
+		Assert.assertEquals(ComponentChangeType.COMPONENT_REMOVED, changes.get(3).getType());
+		Assert.assertSame(entity, changes.get(3).getEntity());
+	}
+
+	//// Overflow ////
+
+	@Test
+	public void overflowCanDropTheOldestChanges() {
+		List<ComponentChangeEvent> received = this.overflow(OverflowPolicy.DROP_OLDEST);
+
+		Assert.assertEquals(4, received.size());
+		Assert.assertEquals(ComponentChangeType.COMPONENT_ADDED, received.get(0).getType());
+	}
+
+	@Test
+	public void overflowCanDropTheNewestChanges() {
+		List<ComponentChangeEvent> received = this.overflow(OverflowPolicy.DROP_NEWEST);
+
+		Assert.assertEquals(4, received.size());
+		Assert.assertEquals(ComponentChangeType.COMPONENT_ADDED, received.get(0).getType());
+		Assert.assertEquals(ComponentChangeType.COMPONENT_REMOVED, received.get(3).getType());
+	}
+
+	@Test
+	public void overflowCanFailTheSubscriber() {
+		EntityManager manager = new EntityManager();
+		ComponentChangePublisher changeStream = manager.openChangeStream(4, 4, OverflowPolicy.FAIL, DIRECT);
+
+		Collector collector = new Collector(0);
+		changeStream.subscribe(collector);
+
+		this.change(manager, 3);
+		manager.tick(16);
+
+		Assert.assertTrue(collector.error instanceof IllegalStateException);
+		Assert.assertFalse(changeStream.hasSubscribers());
+	}
+
+	@Test
+	public void overflowCanBlockUntilTheSubscriberCatchesUp() throws InterruptedException {
+		EntityManager manager = new EntityManager();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		ComponentChangePublisher changeStream = manager.openChangeStream(4, 2, OverflowPolicy.BLOCK, executor);
+
+		final CountDownLatch received = new CountDownLatch(20);
+		changeStream.subscribe
+		(
+			new Collector(Long.MAX_VALUE) {
+
+				@Override
+				public void onNext(List<ComponentChangeEvent> batch) {
+					super.onNext(batch);
+					for (int index = 0; index < batch.size(); index++) {
+						received.countDown();
+					}
+				}
+			}
+		);
+
+		this.change(manager, 10);
+		manager.tick(16);
+
+		Assert.assertTrue(received.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals(0, changeStream.getSubscriberMetrics().get(0).getDroppedCount());
+
+		executor.shutdown();
+	}
+
+	@Test
+	public void blockingGivesUpOnSubscribersWhichNeverRequest() throws InterruptedException {
+		EntityManager manager = new EntityManager();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		ComponentChangePublisher changeStream = manager.openChangeStream(4, 2, OverflowPolicy.BLOCK, executor);
+		changeStream.setBlockTimeout(50);
+
+		final CountDownLatch failed = new CountDownLatch(1);
+		Collector collector = new Collector(0) {
+
+			@Override
+			public void onError(Throwable error) {
+				super.onError(error);
+				failed.countDown();
+			}
+		};
+		changeStream.subscribe(collector);
+
+		// Returns, though the subscriber never makes room:
+		this.change(manager, 10);
+		manager.tick(16);
+
+		Assert.assertTrue(failed.await(10, TimeUnit.SECONDS));
+		Assert.assertTrue(collector.error instanceof IllegalStateException);
+		Assert.assertFalse(changeStream.hasSubscribers());
+
+		executor.shutdown();
+	}
+
+	//// Failing Subscribers ////
+
+	@Test
+	public void subscribersThrowingFromOnNextAreCancelled() {
+		EntityManager manager = new EntityManager();
+		ComponentChangePublisher changeStream = manager.openChangeStream(16, 8, OverflowPolicy.DROP_NEWEST, DIRECT);
+
+		final IllegalStateException thrown = new IllegalStateException("Failing subscriber.");
+		Collector collector = new Collector(Long.MAX_VALUE) {
+
+			@Override
+			public void onNext(List<ComponentChangeEvent> batch) {
+				super.onNext(batch);
+				throw thrown;
+			}
+		};
+		changeStream.subscribe(collector);
+
+		this.change(manager, 1);
+		manager.tick(16);
+
+		Assert.assertSame(thrown, collector.error);
+		Assert.assertFalse(changeStream.hasSubscribers());
+
+		// Nothing is delivered after the failure:
+		this.change(manager, 1);
+		manager.tick(16);
+		Assert.assertEquals(1, collector.batches.size());
+	}
+
+	@Test
+	public void subscribersThrowingFromOnSubscribeAreCancelled() {
+		EntityManager manager = new EntityManager();
+		ComponentChangePublisher changeStream = manager.openChangeStream(16, 8, OverflowPolicy.DROP_NEWEST, DIRECT);
+
+		final IllegalStateException thrown = new IllegalStateException("Failing subscriber.");
+		Collector collector = new Collector(Long.MAX_VALUE) {
+
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				throw thrown;
+			}
+		};
+		changeStream.subscribe(collector);
+
+		Assert.assertSame(thrown, collector.error);
+		Assert.assertFalse(changeStream.hasSubscribers());
+
+		this.change(manager, 1);
+		manager.tick(16);
+		Assert.assertTrue(collector.batches.isEmpty());
+	}
+
+	//// Helpers ////
+
+	// Add and remove a component the specified number of times:
+	private void change(EntityManager manager, int count) {
+		Entity entity = manager.createEntity();
+		for (int index = 0; index < count; index++) {
+			entity.addComponent(new MockComponent());
+			entity.removeComponent(MockComponent.class);
+		}
+	}
+
+	// Publish more changes than fit in the buffer, then receive them all:
+	private List<ComponentChangeEvent> overflow(OverflowPolicy policy) {
+		EntityManager manager = new EntityManager();
+		ComponentChangePublisher changeStream = manager.openChangeStream(4, 4, policy, DIRECT);
+
+		Collector collector = new Collector(0);
+		changeStream.subscribe(collector);
+
+		this.change(manager, 2);
+		manager.tick(16);
+		this.change(manager, 1);
+		manager.tick(16);
+
+		Assert.assertEquals(2, changeStream.getSubscriberMetrics().get(0).getDroppedCount());
+
+		collector.subscription.request(1);
+		return collector.batches.get(0);
+	}
+
+	// Collects all batches it receives, after an initial request:
+	private static class Collector implements Flow.Subscriber<List<ComponentChangeEvent>> {
+
+		public Collector(long initialRequest) {
+			this.initialRequest = initialRequest;
+		}
+
+		private final long initialRequest;
+
+		private Flow.Subscription subscription;
+		private final List<List<ComponentChangeEvent>> batches = new ArrayList<List<ComponentChangeEvent>>();
+		private volatile boolean completed;
+		private volatile Throwable error;
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			if (this.initialRequest > 0) {
+				subscription.request(this.initialRequest);
+			}
+		}
+
+		@Override
+		public void onNext(List<ComponentChangeEvent> batch) {
+			this.batches.add(batch);
+		}
+
+		@Override
+		public void onError(Throwable error) {
+			this.error = error;
+		}
+
+		@Override
+		public void onComplete() {
+			this.completed = true;
+		}
+
+	}
+
+}
@@ -0,0 +1,231 @@
+package com.elsewhere_games.lib.entity.export;
+
+// JUnit
+import org.junit.Assert;
+import org.junit.Test;
+
+// Java Containers
+import java.util.Arrays;
+
+// Java Utilities
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.Component;
+import com.elsewhere_games.lib.entity.Entity;
+import com.elsewhere_games.lib.entity.EntityManager;
+import com.elsewhere_games.lib.entity.replay.ChangeRecorder;
+
+// Testing Elsewhere
+import com.elsewhere_games.lib.entity.mock.AnotherMockComponent;
+import com.elsewhere_games.lib.entity.mock.MockComponent;
+
+/**
+ * <p>Test case for exporting and reading worlds.</p>
+ */
+public class WorldExporterTestCase {
+
+	//// Mocks ////
+
+	// A component with a value to export:
+	private static class HealthComponent implements Component {
+		private double health;
+	}
+
+	private static final ComponentColumn<HealthComponent> HEALTH_COLUMN = new ComponentColumn<HealthComponent>() {
+
+		@Override
+		public double read(HealthComponent component) {
+			return component.health;
+		}
+	};
+
+	private static EntityManager createManager(int entityCount) {
+		EntityManager manager = new EntityManager();
+		for (int count = 0; count < entityCount; count++) {
+			Entity entity = manager.createEntity();
+			entity.addComponent(new MockComponent());
+
+			HealthComponent health = new HealthComponent();
+			health.health = count;
+			entity.addComponent(health);
+		}
+
+		return manager;
+	}
+
+	//// Export ////
+
+	@Test
+	public void exportedWorldsCanBeRead() throws IOException {
+		Path file = Files.createTempFile("world", ".export");
+		EntityManager manager = createManager(10);
+		Entity plain = manager.createEntity();
+
+		WorldExporter exporter = new WorldExporter(manager, file, 100);
+		exporter.exportComponentType(MockComponent.class);
+		exporter.exportComponentType(AnotherMockComponent.class);
+		exporter.exportColumn(HealthComponent.class, "health", HEALTH_COLUMN);
+		exporter.export();
+
+		WorldReader reader = new WorldReader(file);
+		WorldSnapshot snapshot = reader.read();
+
+		Assert.assertEquals(11, snapshot.getEntityCount());
+		Assert.assertEquals(2, snapshot.getSequence());
+		Assert.assertEquals(3, snapshot.getComponentTypes().size());
+
+		double healthSum = 0;
+		for (int entity = 0; entity < snapshot.getEntityCount(); entity++) {
+			Entity exported = manager.getEntity(snapshot.getEntityId(entity));
+			Assert.assertNotNull(exported);
+			Assert.assertEquals(exported.hasComponent(MockComponent.class), snapshot.hasComponent(entity, MockComponent.class.getName()));
+			Assert.assertFalse(snapshot.hasComponent(entity, AnotherMockComponent.class.getName()));
+
+			if (exported == plain) {
+				Assert.assertTrue(Double.isNaN(snapshot.getValue(entity, "health")));
+			}
+			else {
+				healthSum += snapshot.getValue(entity, "health");
+			}
+		}
+
+		Assert.assertEquals(45.0, healthSum, 0.0);
+
+		reader.close();
+		exporter.close();
+		Files.delete(file);
+	}
+
+	@Test
+	public void exportsAreTruncatedToTheCapacity() throws IOException {
+		Path file = Files.createTempFile("world", ".export");
+		WorldExporter exporter = new WorldExporter(createManager(10), file, 4);
+		exporter.export();
+
+		WorldReader reader = new WorldReader(file);
+		WorldSnapshot snapshot = reader.read();
+		Assert.assertEquals(4, snapshot.getEntityCount());
+		Assert.assertEquals(10, snapshot.getTotalEntityCount());
+
+		reader.close();
+		exporter.close();
+		Files.delete(file);
+	}
+
+	@Test
+	public void exportsAreNotRecordedAsStructuralChanges() throws IOException {
+		Path file = Files.createTempFile("world", ".export");
+		EntityManager manager = createManager(5);
+		ChangeRecorder recorder = new ChangeRecorder(manager, new ByteArrayOutputStream());
+		long operationCount = recorder.getOperationCount();
+
+		WorldExporter exporter = new WorldExporter(manager, file, 4);
+		exporter.export();
+		exporter.export();
+		exporter.close();
+
+		Assert.assertEquals(operationCount, recorder.getOperationCount());
+
+		recorder.close();
+		Files.delete(file);
+	}
+
+	@Test
+	public void columnsAddedBetweenExportsAreRead() throws IOException {
+		Path file = Files.createTempFile("world", ".export");
+		WorldExporter exporter = new WorldExporter(createManager(3), file, 4);
+		exporter.exportComponentType(MockComponent.class);
+		exporter.export();
+
+		WorldReader reader = new WorldReader(file);
+		Assert.assertTrue(reader.read().getColumns().isEmpty());
+
+		exporter.exportColumn(HealthComponent.class, "health", HEALTH_COLUMN);
+		exporter.export();
+
+		WorldSnapshot snapshot = reader.read();
+		Assert.assertEquals(Arrays.asList(MockComponent.class.getName(), HealthComponent.class.getName()), snapshot.getComponentTypes());
+		Assert.assertEquals(Arrays.asList("health"), snapshot.getColumns());
+
+		reader.close();
+		exporter.close();
+		Files.delete(file);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void capacitiesBeyondTheLargestFileAreRejected() throws IOException {
+		Path file = Files.createTempFile("world", ".export");
+		try {
+			new WorldExporter(new EntityManager(), file, ExportLayout.MAX_CAPACITY + 1);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void readersNeverSeeAPartialExport() throws Exception {
+		Path file = Files.createTempFile("world", ".export");
+		final EntityManager manager = createManager(200);
+		final WorldExporter exporter = new WorldExporter(manager, file, 200);
+		exporter.exportColumn(HealthComponent.class, "health", HEALTH_COLUMN);
+
+		// Every export sets all entities to the same health:
+		final UUID queryId = manager.createQuery(HealthComponent.class);
+		for (Entity entity : manager.executeQuery(queryId)) {
+			entity.getComponent(HealthComponent.class).health = -1;
+		}
+		exporter.export();
+
+		final AtomicBoolean running = new AtomicBoolean(true);
+		Thread exporting = new Thread() {
+
+			@Override
+			public void run() {
+				for (int round = 0; running.get(); round++) {
+					for (Entity entity : manager.executeQuery(queryId)) {
+						entity.getComponent(HealthComponent.class).health = round;
+					}
+
+					exporter.export();
+					Thread.yield();
+				}
+			}
+		};
+		exporting.start();
+
+		WorldReader reader = new WorldReader(file);
+		try {
+			for (int read = 0; read < 200; read++) {
+				WorldSnapshot snapshot = reader.read();
+				double health = snapshot.getValue(0, "health");
+				for (int entity = 1; entity < snapshot.getEntityCount(); entity++) {
+					Assert.assertEquals(health, snapshot.getValue(entity, "health"), 0.0);
+				}
+			}
+		} finally {
+			running.set(false);
+			exporting.join();
+		}
+
+		reader.close();
+		exporter.close();
+		Files.delete(file);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void otherFilesCannotBeRead() throws IOException {
+		Path file = Files.createTempFile("world", ".export");
+		try {
+			new WorldReader(file);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+package com.elsewhere_games.lib.entity.jfr;
+
+// JUnit
+import org.junit.Assert;
+import org.junit.Test;
+
+// Java Utilities
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Flight Recorder
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.ComponentCopier;
+import com.elsewhere_games.lib.entity.EntityManager;
+import com.elsewhere_games.lib.entity.Prefab;
+import com.elsewhere_games.lib.entity.system.AbstractCyclicalSystem;
+
+// Testing Elsewhere
+import com.elsewhere_games.lib.entity.mock.MockComponent;
+
+/**
+ * <p>Test case for the flight recorder events of the library.</p>
+ */
+public class FlightRecorderEventsTestCase {
+
+	//// Events ////
+
+	private static final ComponentCopier<MockComponent> MOCK_COPIER = new ComponentCopier<MockComponent>() {
+
+		@Override
+		public MockComponent copy(MockComponent template) {
+			return new MockComponent();
+		}
+	};
+
+	@Test
+	public void enabledEventsAreRecorded() throws IOException {
+		Path file = Files.createTempFile("entities", ".jfr");
+
+		Recording recording = new Recording();
+		recording.enable(QueryRebuildEvent.class).withoutThreshold();
+		recording.enable(StructuralChangeEvent.class).withoutThreshold();
+		recording.start();
+
+		EntityManager manager = new EntityManager();
+		UUID prefabId = manager.registerPrefab(new Prefab().addComponent(new MockComponent(), MOCK_COPIER));
+		manager.instantiatePrefab(prefabId, 10);
+		manager.executeQuery(manager.createQuery(MockComponent.class));
+
+		recording.stop();
+		recording.dump(file);
+		recording.close();
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+		Files.delete(file);
+
+		boolean rebuilt = false;
+		boolean instantiated = false;
+		for (RecordedEvent event : events) {
+			String name = event.getEventType().getName();
+			if (name.equals("com.elsewhere_games.entity.QueryRebuild")) {
+				rebuilt = event.getInt("scanned") == 10 && event.getInt("results") == 10;
+			}
+			else if (name.equals("com.elsewhere_games.entity.StructuralChange")) {
+				instantiated = event.getString("operation").equals("instantiatePrefab") && event.getInt("entities") == 10;
+			}
+		}
+
+		Assert.assertTrue(rebuilt);
+		Assert.assertTrue(instantiated);
+	}
+
+	// Counts its updates down:
+	private static class CountingSystem extends AbstractCyclicalSystem {
+
+		public CountingSystem(EntityManager entities, CountDownLatch updates) {
+			super(entities, 5);
+			this.updates = updates;
+		}
+
+		private final CountDownLatch updates;
+
+		@Override
+		protected void update(long delaySinceLastUpdate) {
+			this.updates.countDown();
+		}
+
+	}
+
+	@Test
+	public void systemUpdatesAreRecorded() throws Exception {
+		Path file = Files.createTempFile("entities", ".jfr");
+
+		Recording recording = new Recording();
+		recording.enable(SystemUpdateEvent.class).withoutThreshold();
+		recording.start();
+
+		// Every update but the last has been committed once the last starts:
+		CountDownLatch updates = new CountDownLatch(3);
+		CountingSystem system = new CountingSystem(new EntityManager(), updates);
+		system.start();
+		Assert.assertTrue(updates.await(10, TimeUnit.SECONDS));
+		system.stop();
+
+		recording.stop();
+		recording.dump(file);
+		recording.close();
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+		Files.delete(file);
+
+		int updated = 0;
+		for (RecordedEvent event : events) {
+			if (event.getEventType().getName().equals("com.elsewhere_games.entity.SystemUpdate")) {
+				Assert.assertEquals(CountingSystem.class.getName(), event.getString("system"));
+				Assert.assertEquals(5L, event.getDuration("delta").toMillis());
+				updated++;
+			}
+		}
+
+		Assert.assertTrue(updated >= 2);
+	}
+
+}
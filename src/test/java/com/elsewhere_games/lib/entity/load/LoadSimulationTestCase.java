@@ -0,0 +1,63 @@
+package com.elsewhere_games.lib.entity.load;
+
+// JUnit
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>Test case for the load simulation.</p>
+ */
+public class LoadSimulationTestCase {
+
+	//// Simulation ////
+
+	// A workload small enough to run quickly:
+	private static LoadProfile createSmallProfile() {
+		LoadProfile profile = new LoadProfile();
+		profile.setEntityCount(500);
+		profile.setChurnRate(0.05);
+		profile.setComponentMix(1.0, 0.5, 0.25);
+		profile.setTickDuration(10);
+		profile.setDuration(1000);
+		profile.setWarmupDuration(100);
+
+		return profile;
+	}
+
+	@Test
+	public void simulationMeasuresEveryTick() {
+		LoadReport report = new LoadSimulation(createSmallProfile()).run();
+
+		Assert.assertEquals(100, report.getTickCount());
+		Assert.assertTrue(report.getTickTimePercentile(0.5) > 0);
+		Assert.assertTrue(report.getTickTimePercentile(0.5) <= report.getTickTimePercentile(0.99));
+		Assert.assertTrue(report.getTickTimePercentile(0.99) <= report.getTickTimePercentile(0.999));
+		Assert.assertTrue(report.getEntitiesProcessed() > 0);
+	}
+
+	@Test
+	public void simulationsWithTheSameSeedDoTheSameWork() {
+		LoadProfile profile = createSmallProfile();
+
+		long processed = new LoadSimulation(profile).run().getEntitiesProcessed();
+		Assert.assertEquals(processed, new LoadSimulation(profile).run().getEntitiesProcessed());
+
+		profile.setSeed(2);
+		Assert.assertNotEquals(processed, new LoadSimulation(profile).run().getEntitiesProcessed());
+	}
+
+	@Test
+	public void percentilesAreTakenFromSortedTickTimes() {
+		long[] tickTimes = new long[1000];
+		for (int tick = 0; tick < tickTimes.length; tick++) {
+			tickTimes[tick] = tickTimes.length - tick;
+		}
+
+		LoadReport report = new LoadReport(tickTimes, 0, 0, 4000, 0);
+		Assert.assertEquals(500, report.getTickTimePercentile(0.5));
+		Assert.assertEquals(990, report.getTickTimePercentile(0.99));
+		Assert.assertEquals(999, report.getTickTimePercentile(0.999));
+		Assert.assertEquals(4, report.getBytesAllocatedPerTick());
+	}
+
+}
@@ -0,0 +1,64 @@
+package com.elsewhere_games.lib.entity.memory;
+
+// JUnit
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>Test case for the memory estimator.</p>
+ */
+public class MemoryEstimatorTestCase {
+
+	//// Objects ////
+
+	// A class with a known layout:
+	private static class Sample {
+		private long first;
+		private int second;
+		private Object third;
+	}
+
+	// Adds a field to the sample, to check inherited fields are counted:
+	private static class ExtendedSample extends Sample {
+		private byte fourth;
+	}
+
+	@Test
+	public void shallowSizesIncludeAllInstanceFields() {
+		long expected = 12 + 8 + 4 + MemoryEstimator.REFERENCE_SIZE;
+		Assert.assertEquals((expected + 7) / 8 * 8, MemoryEstimator.shallowSizeOf(Sample.class));
+
+		Assert.assertTrue(MemoryEstimator.shallowSizeOf(ExtendedSample.class) >= MemoryEstimator.shallowSizeOf(Sample.class));
+		Assert.assertEquals(0, MemoryEstimator.shallowSizeOf(ExtendedSample.class) % 8);
+	}
+
+	//// Arrays ////
+
+	@Test
+	public void arraySizesAreAligned() {
+		Assert.assertEquals(16, MemoryEstimator.arraySizeOf(int.class, 0));
+		Assert.assertEquals(24, MemoryEstimator.arraySizeOf(int.class, 1));
+		Assert.assertEquals(16 + 8 * 10, MemoryEstimator.arraySizeOf(long.class, 10));
+	}
+
+	//// Collections ////
+
+	@Test
+	public void hashMapsGrowWithTheirLoad() {
+		long empty = MemoryEstimator.hashMapSizeOf(0);
+		long twelve = MemoryEstimator.hashMapSizeOf(12);
+		long thirteen = MemoryEstimator.hashMapSizeOf(13);
+
+		Assert.assertTrue(empty < twelve);
+		Assert.assertTrue(thirteen - twelve > MemoryEstimator.HASH_ENTRY_SIZE);
+	}
+
+	@Test
+	public void hashMapTablesKeepTheirPeakSize() {
+		long drained = MemoryEstimator.hashMapSizeOf(0, 1000);
+
+		Assert.assertEquals(MemoryEstimator.hashMapSizeOf(1000) - 1000 * MemoryEstimator.HASH_ENTRY_SIZE, drained);
+		Assert.assertTrue(drained > MemoryEstimator.hashMapSizeOf(0));
+	}
+
+}
@@ -0,0 +1,69 @@
+package com.elsewhere_games.lib.entity.mock;
+
+// Java Containers
+import java.util.ArrayList;
+import java.util.List;
+
+// Elsewhere Entity/Component
+import com.elsewhere_games.lib.entity.Entity;
+import com.elsewhere_games.lib.entity.event.QueryObserver;
+
+/**
+ * <p>This mock query observer will store all entities it was notified about,
+ * and the number of batches it received them in.</p>
+ */
+public class MockQueryObserver implements QueryObserver {
+
+	//// Observing ////
+
+	@Override
+	public void onEnter(List<Entity> entities) {
+		this.entered.addAll(entities);
+		this.batchCount++;
+	}
+
+	@Override
+	public void onExit(List<Entity> entities) {
+		this.exited.addAll(entities);
+		this.batchCount++;
+	}
+
+	//// Received ////
+
+	private final List<Entity> entered = new ArrayList<Entity>();
+
+	/**
+	 * @return All entities which entered the query.
+	 */
+	public List<Entity> getEntered() {
+		return this.entered;
+	}
+
+	private final List<Entity> exited = new ArrayList<Entity>();
+
+	/**
+	 * @return All entities which exited the query.
+	 */
+	public List<Entity> getExited() {
+		return this.exited;
+	}
+
+	private int batchCount;
+
+	/**
+	 * @return The number of calls received.
+	 */
+	public int getBatchCount() {
+		return this.batchCount;
+	}
+
+	/**
+	 * <p>Forgets all received notifications.</p>
+	 */
+	public void reset() {
+		this.entered.clear();
+		this.exited.clear();
+		this.batchCount = 0;
+	}
+
+}
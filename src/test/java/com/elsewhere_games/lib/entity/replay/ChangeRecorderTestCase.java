@@ -0,0 +1,168 @@
+package com.elsewhere_games.lib.entity.replay;
+
+// JUnit
+import org.junit.Assert;
+import org.junit.Test;
+
+// Java Containers
+import java.util.List;
+import java.util.ArrayList;
+
+// Java Utilities
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.Entity;
+import com.elsewhere_games.lib.entity.EntityManager;
+
+// Testing Elsewhere
+import com.elsewhere_games.lib.entity.mock.AnotherMockComponent;
+import com.elsewhere_games.lib.entity.mock.MockComponent;
+
+/**
+ * <p>Test case for recording and replaying the changes of a manager.</p>
+ */
+public class ChangeRecorderTestCase {
+
+	//// Session ////
+
+	private static final int TICKS = 20;
+
+	// Play a session, returning the number of entities with each component after every tick:
+	private static List<int[]> playSession(EntityManager manager) {
+		List<int[]> counts = new ArrayList<int[]>();
+		UUID mocks = manager.createQuery(MockComponent.class);
+		UUID others = manager.createQuery(AnotherMockComponent.class);
+
+		List<Entity> entities = new ArrayList<Entity>();
+		for (int tick = 0; tick < TICKS; tick++) {
+			for (int count = 0; count < 10; count++) {
+				Entity entity = manager.createEntity();
+				entity.addComponent(new MockComponent());
+				if (count % 3 == 0) {
+					entity.addComponent(new AnotherMockComponent());
+					manager.setTimeToLive(entity, AnotherMockComponent.class, 25);
+				}
+
+				entities.add(entity);
+			}
+
+			// Destroy and strip some of the older entities:
+			if (entities.size() > 30) {
+				manager.destroyEntity(entities.remove(0));
+				entities.get(0).removeComponent(MockComponent.class);
+			}
+
+			if (tick == TICKS / 2) {
+				manager.updateQuery(others, MockComponent.class, AnotherMockComponent.class);
+			}
+
+			manager.tick(10);
+			counts.add(new int[] {manager.getEntityCount(), manager.executeQuery(mocks).size(), manager.executeQuery(others).size()});
+		}
+
+		return counts;
+	}
+
+	//// Replay ////
+
+	@Test
+	public void replaysReproduceTheRecordedSession() throws IOException {
+		EntityManager recorded = new EntityManager();
+		ByteArrayOutputStream recording = new ByteArrayOutputStream();
+		ChangeRecorder recorder = new ChangeRecorder(recorded, recording);
+		List<int[]> counts = playSession(recorded);
+		recorder.close();
+
+		Assert.assertEquals(TICKS, recorder.getTickCount());
+
+		// Replay tick by tick, checking the world after every tick:
+		EntityManager replayed = new EntityManager();
+		ChangeReplayer replayer = new ChangeReplayer(replayed, new ByteArrayInputStream(recording.toByteArray()));
+		UUID mocks = replayed.createQuery(MockComponent.class);
+		UUID others = replayed.createQuery(MockComponent.class, AnotherMockComponent.class);
+		UUID anothers = replayed.createQuery(AnotherMockComponent.class);
+
+		for (int tick = 0; tick < TICKS; tick++) {
+			Assert.assertTrue(replayer.replayTick());
+			Assert.assertEquals(counts.get(tick)[0], replayed.getEntityCount());
+			Assert.assertEquals(counts.get(tick)[1], replayed.executeQuery(mocks).size());
+			Assert.assertEquals(counts.get(tick)[2], replayed.executeQuery(tick < TICKS / 2 ? anothers : others).size());
+		}
+
+		Assert.assertFalse(replayer.replayTick());
+		Assert.assertEquals(TICKS, replayer.getTickCount());
+		Assert.assertEquals(recorder.getOperationCount(), replayer.getOperationCount());
+		replayer.close();
+	}
+
+	@Test
+	public void recordingsStartWithTheExistingWorld() throws IOException {
+		EntityManager recorded = new EntityManager();
+		for (int count = 0; count < 5; count++) {
+			recorded.createEntity().addComponent(new MockComponent());
+		}
+		recorded.createQuery(MockComponent.class);
+
+		ByteArrayOutputStream recording = new ByteArrayOutputStream();
+		ChangeRecorder recorder = new ChangeRecorder(recorded, recording);
+		recorded.createEntity();
+		recorded.tick(10);
+		recorder.close();
+
+		// Changes after closing are not recorded:
+		recorded.createEntity();
+
+		EntityManager replayed = new EntityManager();
+		ChangeReplayer replayer = new ChangeReplayer(replayed, new ByteArrayInputStream(recording.toByteArray()));
+		Assert.assertEquals(1, replayer.replayAll());
+		Assert.assertEquals(6, replayed.getEntityCount());
+		Assert.assertEquals(5, replayed.executeQuery(replayed.createQuery(MockComponent.class)).size());
+		replayer.close();
+	}
+
+	@Test
+	public void recordingsAreCompact() throws IOException {
+		EntityManager recorded = new EntityManager();
+		ByteArrayOutputStream recording = new ByteArrayOutputStream();
+		ChangeRecorder recorder = new ChangeRecorder(recorded, recording);
+		playSession(recorded);
+		recorder.close();
+
+		// Apart from naming the types, no operation takes more than a few bytes:
+		Assert.assertTrue(recording.size() < recorder.getOperationCount() * 4);
+	}
+
+	@Test
+	public void changesToUnknownEntitiesAndQueriesFailTheRecording() throws IOException {
+		EntityManager recorded = new EntityManager();
+		ChangeRecorder recorder = new ChangeRecorder(recorded, new ByteArrayOutputStream());
+
+		// None of these may throw into the manager:
+		Entity stranger = new EntityManager().createEntity();
+		recorder.onComponentAdded(stranger, new MockComponent());
+		recorder.onQueryExecuted(UUID.randomUUID());
+		recorder.onQueryUpdated(UUID.randomUUID(), new ArrayList<Class<?>>());
+		long operationCount = recorder.getOperationCount();
+
+		// Nothing else is recorded once the recording failed:
+		recorded.createEntity();
+		Assert.assertEquals(operationCount, recorder.getOperationCount());
+
+		try {
+			recorder.close();
+			Assert.fail("The recording did not fail.");
+		} catch (IOException expected) {
+			// The unknown entity is reported.
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void otherStreamsCannotBeReplayed() throws IOException {
+		new ChangeReplayer(new EntityManager(), new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}));
+	}
+
+}
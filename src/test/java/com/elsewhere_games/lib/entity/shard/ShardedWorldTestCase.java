@@ -0,0 +1,129 @@
+package com.elsewhere_games.lib.entity.shard;
+
+// JUnit
+import org.junit.Assert;
+import org.junit.Test;
+
+// Java Utilities
+import java.util.UUID;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.Entity;
+import com.elsewhere_games.lib.entity.EntityManager;
+
+// Testing Elsewhere
+import com.elsewhere_games.lib.entity.mock.MockComponent;
+
+/**
+ * <p>Test case for the sharded world.</p>
+ */
+public class ShardedWorldTestCase {
+
+	//// Ticks ////
+
+	@Test
+	public void shardsAreUpdatedOnTheirOwnThreads() {
+		ShardedWorld world = new ShardedWorld(3);
+		final String[] threadNames = new String[3];
+
+		world.tick
+		(
+			new ShardTask() {
+
+				@Override
+				public void update(EntityManager shard, int shardIndex) {
+					threadNames[shardIndex] = Thread.currentThread().getName();
+				}
+			}
+		);
+
+		Assert.assertEquals("shard-0", threadNames[0]);
+		Assert.assertEquals("shard-1", threadNames[1]);
+		Assert.assertEquals("shard-2", threadNames[2]);
+
+		world.shutdown();
+	}
+
+	@Test
+	public void failingShardsFailTheTick() {
+		ShardedWorld world = new ShardedWorld(2);
+
+		try {
+			world.tick
+			(
+				new ShardTask() {
+
+					@Override
+					public void update(EntityManager shard, int shardIndex) {
+						if (shardIndex == 1) {
+							throw new UnsupportedOperationException();
+						}
+					}
+				}
+			);
+
+			Assert.fail();
+		}
+
+		catch (IllegalStateException stateException) {
+			Assert.assertTrue(stateException.getCause() instanceof UnsupportedOperationException);
+		}
+
+		world.shutdown();
+	}
+
+	//// Migration ////
+
+	@Test
+	public void entitiesMigrateAtTheEndOfATick() {
+		final ShardedWorld world = new ShardedWorld(2);
+
+		Entity entity = world.getShard(0).createEntity();
+		entity.addComponent(new MockComponent());
+
+		world.tick
+		(
+			new ShardTask() {
+
+				@Override
+				public void update(EntityManager shard, int shardIndex) {
+					for (Entity shardEntity : shard.executeQuery(shard.createQuery(MockComponent.class))) {
+						world.requestMigration(shardEntity, 1);
+					}
+				}
+			}
+		);
+
+		Assert.assertEquals(1, world.getShardOf(entity));
+		Assert.assertFalse(world.getShard(0).hasEntity(entity));
+		Assert.assertTrue(entity.hasComponent(MockComponent.class));
+		Assert.assertEquals(1, world.getEntityCount());
+
+		world.shutdown();
+	}
+
+	//// Queries ////
+
+	@Test
+	public void queriesFanOutAcrossShards() {
+		ShardedWorld world = new ShardedWorld(4);
+		UUID queryId = world.createQuery(MockComponent.class);
+
+		for (int shardIndex = 0; shardIndex < world.getShardCount(); shardIndex++) {
+			world.getShard(shardIndex).createEntity().addComponent(new MockComponent());
+			world.getShard(shardIndex).createEntity();
+		}
+
+		Assert.assertEquals(4, world.executeQuery(queryId).size());
+		Assert.assertEquals(1, world.executeQuery(queryId, 2).size());
+
+		world.requestMigration(world.executeQuery(queryId, 2).get(0), 3);
+		world.applyMigrations();
+
+		Assert.assertEquals(0, world.executeQuery(queryId, 2).size());
+		Assert.assertEquals(2, world.executeQuery(queryId, 3).size());
+
+		world.shutdown();
+	}
+
+}
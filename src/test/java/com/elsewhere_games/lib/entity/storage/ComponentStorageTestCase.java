@@ -0,0 +1,121 @@
+package com.elsewhere_games.lib.entity.storage;
+
+// JUnit
+import org.junit.Assert;
+import org.junit.Test;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.Entity;
+import com.elsewhere_games.lib.entity.EntityManager;
+
+// Testing Elsewhere
+import com.elsewhere_games.lib.entity.mock.MockComponent;
+
+/**
+ * <p>Test case for the component storage strategies.</p>
+ */
+public class ComponentStorageTestCase {
+
+	//// Sparse Set ////
+
+	@Test
+	public void sparseSetStoresComponentsBySlot() {
+		this.assertStoresComponentsBySlot(StorageStrategy.SPARSE_SET);
+	}
+
+	@Test
+	public void sparseSetFillsGapsWithLastComponent() {
+		ComponentStorage storage = StorageStrategy.SPARSE_SET.createStorage();
+		Entity[] entities = this.fill(storage, 4);
+
+		storage.remove(0);
+
+		Assert.assertEquals(3, storage.size());
+		Assert.assertSame(entities[3], storage.getEntity(0));
+	}
+
+	@Test
+	public void sparseSetCompactionRestoresSlotOrder() {
+		ComponentStorage storage = StorageStrategy.SPARSE_SET.createStorage();
+		this.fill(storage, 100);
+
+		for (int slot = 0; slot < 90; slot++) {
+			storage.remove(slot);
+		}
+
+		storage.move(95, 2);
+		storage.compact();
+
+		Assert.assertEquals(10, storage.size());
+		Assert.assertTrue(storage.capacity() < 100);
+		Assert.assertTrue(storage.contains(2));
+		Assert.assertFalse(storage.contains(95));
+
+		Assert.assertSame(storage.get(2), storage.getComponent(0));
+		Assert.assertSame(storage.get(90), storage.getComponent(1));
+	}
+
+	//// Dense ////
+
+	@Test
+	public void denseStoresComponentsBySlot() {
+		this.assertStoresComponentsBySlot(StorageStrategy.DENSE);
+	}
+
+	@Test
+	public void denseKeepsSlotOrder() {
+		ComponentStorage storage = StorageStrategy.DENSE.createStorage();
+		EntityManager manager = new EntityManager();
+
+		int[] slots = { 7, 2, 40, 0, 5 };
+		for (int slot : slots) {
+			storage.put(slot, manager.createEntity(), new MockComponent());
+		}
+
+		storage.remove(5);
+
+		int[] expected = { 0, 2, 7, 40 };
+		Assert.assertEquals(expected.length, storage.size());
+		for (int position = 0; position < expected.length; position++) {
+			Assert.assertSame(storage.get(expected[position]), storage.getComponent(position));
+		}
+	}
+
+	//// Helpers ////
+
+	// Put one component per entity into the storage, using slots 0..count-1:
+	private Entity[] fill(ComponentStorage storage, int count) {
+		EntityManager manager = new EntityManager();
+		Entity[] entities = new Entity[count];
+
+		for (int slot = 0; slot < count; slot++) {
+			entities[slot] = manager.createEntity();
+			storage.put(slot, entities[slot], new MockComponent());
+		}
+
+		return entities;
+	}
+
+	private void assertStoresComponentsBySlot(StorageStrategy strategy) {
+		ComponentStorage storage = strategy.createStorage();
+		Assert.assertEquals(strategy, storage.getStrategy());
+
+		this.fill(storage, 100);
+		Assert.assertEquals(100, storage.size());
+
+		for (int slot = 0; slot < 100; slot += 2) {
+			Assert.assertNotNull(storage.remove(slot));
+		}
+
+		Assert.assertEquals(50, storage.size());
+		Assert.assertNull(storage.remove(0));
+
+		for (int slot = 0; slot < 100; slot++) {
+			Assert.assertEquals(slot % 2 == 1, storage.contains(slot));
+		}
+
+		Assert.assertFalse(storage.contains(1000));
+		Assert.assertNull(storage.get(1000));
+	}
+
+}
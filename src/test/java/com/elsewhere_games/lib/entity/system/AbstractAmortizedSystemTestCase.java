@@ -0,0 +1,196 @@
+package com.elsewhere_games.lib.entity.system;
+
+// JUnit
+import org.junit.Assert;
+import org.junit.Test;
+
+// Java Containers
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Entities Elsewhere
+import com.elsewhere_games.lib.entity.Entity;
+import com.elsewhere_games.lib.entity.EntityManager;
+
+// Testing Elsewhere
+import com.elsewhere_games.lib.entity.mock.MockComponent;
+
+/**
+ * <p>Test case for the amortized system.</p>
+ */
+public class AbstractAmortizedSystemTestCase {
+
+	//// Mocks ////
+
+	// Counts how often, and with which delay, each entity was processed:
+	private static class CountingSystem extends AbstractAmortizedSystem {
+
+		public CountingSystem(EntityManager entities) {
+			super(entities, 10, MockComponent.class);
+		}
+
+		private final Map<Entity, Integer> counts = new HashMap<Entity, Integer>();
+		private final Map<Entity, Long> delays = new HashMap<Entity, Long>();
+
+		@Override
+		protected void updateEntity(Entity entity, long delaySinceLastUpdate) {
+			Integer count = this.counts.get(entity);
+			this.counts.put(entity, count == null ? 1 : count + 1);
+			this.delays.put(entity, delaySinceLastUpdate);
+		}
+
+		public void cycle() {
+			this.update(10);
+		}
+
+	}
+
+	private static EntityManager createManager(int entityCount) {
+		EntityManager manager = new EntityManager();
+		for (int count = 0; count < entityCount; count++) {
+			manager.createEntity().addComponent(new MockComponent());
+		}
+
+		return manager;
+	}
+
+	//// Slices ////
+
+	@Test
+	public void everyEntityIsProcessedOncePerRotation() {
+		EntityManager manager = createManager(200);
+		CountingSystem system = new CountingSystem(manager);
+		system.setSliceCount(4);
+
+		for (int cycle = 0; cycle < 8; cycle++) {
+			system.cycle();
+		}
+
+		Assert.assertEquals(200, system.counts.size());
+		for (Entity entity : system.counts.keySet()) {
+			Assert.assertEquals(2, (int)system.counts.get(entity));
+			Assert.assertEquals(40L, (long)system.delays.get(entity));
+		}
+	}
+
+	@Test
+	public void slicesDoNotChangeAsEntitiesComeAndGo() {
+		EntityManager manager = createManager(100);
+		CountingSystem system = new CountingSystem(manager);
+		system.setSliceCount(8);
+
+		Map<Entity, Integer> slices = new HashMap<Entity, Integer>();
+		for (Entity entity : manager.executeQuery(manager.createQuery(MockComponent.class))) {
+			slices.put(entity, system.getSliceOf(entity));
+		}
+
+		for (int count = 0; count < 100; count++) {
+			manager.createEntity().addComponent(new MockComponent());
+		}
+
+		for (Entity entity : slices.keySet()) {
+			Assert.assertEquals((int)slices.get(entity), system.getSliceOf(entity));
+		}
+	}
+
+	@Test
+	public void slicesFollowEntitiesComingAndGoing() {
+		EntityManager manager = createManager(50);
+		CountingSystem system = new CountingSystem(manager);
+		system.setSliceCount(2);
+
+		List<Entity> destroyed = new ArrayList<Entity>(manager.executeQuery(manager.createQuery(MockComponent.class)).subList(0, 10));
+		for (Entity entity : destroyed) {
+			manager.destroyEntity(entity);
+		}
+
+		// Slices follow the entities without the manager being ticked:
+		system.cycle();
+		system.cycle();
+		Assert.assertEquals(40, system.counts.size());
+
+		for (int count = 0; count < 30; count++) {
+			manager.createEntity().addComponent(new MockComponent());
+		}
+
+		system.counts.clear();
+		system.cycle();
+		system.cycle();
+
+		Assert.assertEquals(70, system.counts.size());
+		for (Entity entity : destroyed) {
+			Assert.assertNull(system.counts.get(entity));
+		}
+	}
+
+	@Test
+	public void runningSystemsPickUpEntitiesAddedOnOtherThreads() throws InterruptedException {
+		EntityManager manager = createManager(10);
+		CountingSystem system = new CountingSystem(manager);
+		system.setSliceCount(2);
+		system.start();
+
+		for (int count = 0; count < 50; count++) {
+			synchronized (manager) {
+				manager.createEntity().addComponent(new MockComponent());
+			}
+
+			Thread.sleep(1);
+		}
+
+		// Every entity is processed, though nobody ticks the manager:
+		long deadline = System.currentTimeMillis() + 10000;
+		int processed = 0;
+		while (processed < 60 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+			synchronized (manager) {
+				processed = system.counts.size();
+			}
+		}
+
+		system.stop();
+		system.dispose();
+		Assert.assertEquals(60, processed);
+	}
+
+	@Test
+	public void disposedSystemsReleaseTheirQuery() {
+		EntityManager manager = createManager(10);
+		CountingSystem system = new CountingSystem(manager);
+		Assert.assertEquals(1, manager.estimateMemoryUsage().getQueryCacheBytes().size());
+
+		system.dispose();
+		Assert.assertTrue(manager.estimateMemoryUsage().getQueryCacheBytes().isEmpty());
+
+		manager.createEntity().addComponent(new MockComponent());
+		system.cycle();
+		Assert.assertTrue(system.counts.isEmpty());
+	}
+
+	//// Update Rate ////
+
+	@Test
+	public void updatesAreLimitedToTheInterval() {
+		EntityManager manager = createManager(1);
+		Entity entity = manager.executeQuery(manager.createQuery(MockComponent.class)).get(0);
+		CountingSystem system = new CountingSystem(manager);
+		system.setUpdateInterval(3, 1);
+
+		system.cycle();
+		Assert.assertNull(system.counts.get(entity));
+
+		system.cycle();
+		Assert.assertEquals(1, (int)system.counts.get(entity));
+		Assert.assertEquals(20L, (long)system.delays.get(entity));
+
+		for (int cycle = 0; cycle < 3; cycle++) {
+			system.cycle();
+		}
+
+		Assert.assertEquals(2, (int)system.counts.get(entity));
+		Assert.assertEquals(30L, (long)system.delays.get(entity));
+	}
+
+}
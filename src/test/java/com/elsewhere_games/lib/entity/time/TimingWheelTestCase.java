@@ -0,0 +1,154 @@
+package com.elsewhere_games.lib.entity.time;
+
+// JUnit
+import org.junit.Assert;
+import org.junit.Test;
+
+// Java Utilities
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * <p>Test case for the hierarchical timing wheel.</p>
+ */
+public class TimingWheelTestCase {
+
+	//// Expiry ////
+
+	@Test
+	public void payloadsExpireAfterTheirDelay() {
+		TimingWheel<String> wheel = new TimingWheel<String>(1);
+		Recorder recorder = new Recorder(wheel);
+
+		wheel.schedule("short", 10);
+		wheel.schedule("long", 100);
+
+		wheel.advance(9, recorder);
+		Assert.assertTrue(recorder.expired.isEmpty());
+
+		wheel.advance(1, recorder);
+		Assert.assertEquals(1, recorder.expired.size());
+		Assert.assertEquals(Long.valueOf(10), recorder.times.get(0));
+
+		wheel.advance(1000, recorder);
+		Assert.assertEquals(2, recorder.expired.size());
+		Assert.assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void payloadsExpireAtTheRightTickAcrossLevels() {
+		TimingWheel<Long> wheel = new TimingWheel<Long>(1);
+		Random random = new Random(42);
+
+		final List<Long> late = new ArrayList<Long>();
+		final long[] now = { 0 };
+
+		for (int count = 0; count < 2000; count++) {
+			long delay = 1 + (long)(random.nextDouble() * random.nextDouble() * 20000000L);
+			wheel.schedule(delay, delay);
+		}
+
+		TimingWheel.ExpiryHandler<Long> handler = new TimingWheel.ExpiryHandler<Long>() {
+
+			@Override
+			public void onExpiry(Long deadline) {
+				if (deadline.longValue() != now[0]) {
+					late.add(deadline);
+				}
+			}
+		};
+
+		// Advance in uneven steps, to check the clock from every offset:
+		while (wheel.size() > 0) {
+			long step = 1 + random.nextInt(7);
+			for (long tick = 0; tick < step; tick++) {
+				now[0]++;
+				wheel.advance(1, handler);
+			}
+		}
+
+		Assert.assertTrue(late.isEmpty());
+	}
+
+	@Test
+	public void delaysAreRoundedUpToTheResolution() {
+		TimingWheel<String> wheel = new TimingWheel<String>(16);
+		Recorder recorder = new Recorder(wheel);
+
+		wheel.schedule("payload", 20);
+
+		wheel.advance(16, recorder);
+		Assert.assertTrue(recorder.expired.isEmpty());
+
+		wheel.advance(16, recorder);
+		Assert.assertEquals(1, recorder.expired.size());
+	}
+
+	//// Cancellation ////
+
+	@Test
+	public void cancelledPayloadsDoNotExpire() {
+		TimingWheel<String> wheel = new TimingWheel<String>(1);
+		Recorder recorder = new Recorder(wheel);
+
+		TimingWheel.Timeout<String> timeout = wheel.schedule("payload", 5000);
+		timeout.cancel();
+
+		Assert.assertTrue(timeout.isCancelled());
+		Assert.assertEquals(0, wheel.size());
+
+		wheel.advance(10000, recorder);
+		Assert.assertTrue(recorder.expired.isEmpty());
+	}
+
+	@Test
+	public void handlersCanCancelPayloadsExpiringInTheSameTick() {
+		TimingWheel<String> wheel = new TimingWheel<String>(1);
+
+		final List<String> expired = new ArrayList<String>();
+		final List<TimingWheel.Timeout<String>> timeouts = new ArrayList<TimingWheel.Timeout<String>>();
+
+		timeouts.add(wheel.schedule("first", 3));
+		timeouts.add(wheel.schedule("second", 3));
+
+		wheel.advance
+		(
+			3,
+			new TimingWheel.ExpiryHandler<String>() {
+
+				@Override
+				public void onExpiry(String payload) {
+					expired.add(payload);
+					for (TimingWheel.Timeout<String> timeout : timeouts) {
+						timeout.cancel();
+					}
+				}
+			}
+		);
+
+		Assert.assertEquals(1, expired.size());
+	}
+
+	//// Helpers ////
+
+	// Records the payloads which expired, and when:
+	private static class Recorder implements TimingWheel.ExpiryHandler<String> {
+
+		public Recorder(TimingWheel<String> wheel) {
+			this.wheel = wheel;
+		}
+
+		private final TimingWheel<String> wheel;
+		private final List<String> expired = new ArrayList<String>();
+		private final List<Long> times = new ArrayList<Long>();
+
+		@Override
+		public void onExpiry(String payload) {
+			this.expired.add(payload);
+			this.times.add(this.wheel.getTime());
+		}
+
+	}
+
+}